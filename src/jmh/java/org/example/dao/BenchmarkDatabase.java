@@ -0,0 +1,199 @@
+package org.example.dao;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.cache.ReadThroughCache;
+import org.example.cache.StudentCache;
+import org.example.metrics.QueryStats;
+import org.example.model.Course;
+import org.example.model.Group;
+import org.example.model.Student;
+import org.example.runner.DbLoader;
+import org.example.runner.SeedOptions;
+import org.example.service.GeneratorConfig;
+import org.example.service.WorkloadProfile;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeded database and DAOs shared by every benchmark thread of a trial.
+ * <p>
+ * {@code database=h2} runs against an in-memory H2 in PostgreSQL mode. {@code database=postgresql} uses the
+ * server from {@code docker-compose.yml}, or {@code -Dbench.jdbcUrl}, {@code -Dbench.username} and
+ * {@code -Dbench.password} given to the forks through JMH's {@code -jvmArgs}; seeding replaces everything in
+ * that database. {@code wiring=plain} measures the
+ * bare SQL paths, {@code wiring=cached} the caches and in-memory indexes that {@code Main} wires in, and
+ * {@code wiring=instrumented} the bare SQL paths behind the query statistics and slow-query log of {@code Main}.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+	static final int POOL_SIZE = 10;
+	static final int STUDENTS_PER_GROUP = 30;
+	static final int COURSES = 100;
+	private static final int SAMPLE_SIZE = 1000;
+	private static final int SEED_PARTITIONS = 4;
+	private static final String H2_URL = "jdbc:h2:mem:benchmark;MODE=PostgreSQL;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1";
+	private static final String POSTGRESQL_URL = "jdbc:postgresql://localhost:15432/school_db";
+
+	@Param({"1000", "100000", "1000000"})
+	public int students;
+
+	@Param({"h2"})
+	public String database;
+
+	@Param({"plain"})
+	public String wiring;
+
+	HikariDataSource dataSource;
+	private SlowQueryLog slowQueries;
+	StudentDao studentDao;
+	GroupDao groupDao;
+	CourseDao courseDao;
+	int groups;
+	List<Group> groupList;
+	List<Course> courseList;
+	List<String> courseNames;
+	List<Student> sample;
+	private int nextStudentId;
+	private int nextGroupId;
+	private int nextCourseId;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		dataSource = new HikariDataSource(poolConfig());
+		groups = Math.max(1, students / STUDENTS_PER_GROUP);
+		DbLoader.load(dataSource, new SeedOptions(SEED_PARTITIONS, new GeneratorConfig(groups, COURSES, students,
+				GeneratorConfig.DEFAULT_MAX_COURSES_PER_STUDENT, GeneratorConfig.DEFAULT_RANDOM_SEED, WorkloadProfile.UNIFORM)));
+		switch (wiring) {
+			case "plain" -> {
+				studentDao = new StudentDao(dataSource);
+				groupDao = new GroupDao(dataSource);
+				courseDao = new CourseDao(dataSource);
+			}
+			case "cached" -> {
+				CourseStudentIndex courseIndex = CourseStudentIndex.load(dataSource);
+				GroupSizeIndex groupSizes = GroupSizeIndex.load(dataSource);
+				StudentCache studentCache = new StudentCache(16L * 1024 * 1024, Duration.ofMinutes(10));
+				studentDao = new StudentDao(dataSource, studentCache, courseIndex, groupSizes);
+				groupDao = new GroupDao(dataSource, new ReadThroughCache<>("groups", 10_000, Duration.ofMinutes(5)), groupSizes,
+						studentCache);
+				courseDao = new CourseDao(dataSource, new ReadThroughCache<>("courses", 10_000, Duration.ofMinutes(5)), courseIndex,
+						studentCache);
+			}
+			case "instrumented" -> {
+				slowQueries = new SlowQueryLog(dataSource, SlowQueryLog.Options.fromSystemProperties());
+				InstrumentedDataSource instrumented = new InstrumentedDataSource(dataSource,
+						QueryStats.namedAfterConstants(StudentDao.class, GroupDao.class, CourseDao.class), slowQueries);
+				studentDao = new StudentDao(instrumented);
+				groupDao = new GroupDao(instrumented);
+				courseDao = new CourseDao(instrumented);
+			}
+			default -> throw new IllegalArgumentException("Unknown wiring: " + wiring);
+		}
+		nextStudentId = students + 1;
+		nextGroupId = groups + 1;
+		nextCourseId = COURSES + 1;
+		groupList = groupDao.findAll();
+		courseList = courseDao.findAll();
+		courseNames = courseList.stream().map(Course::name).distinct().toList();
+		sample = new ArrayList<>();
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		while (sample.size() < Math.min(SAMPLE_SIZE, students)) {
+			studentDao.findByID(random.nextInt(1, students + 1))
+					.filter(student -> student.courseList().size() < COURSES)
+					.ifPresent(sample::add);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		if (slowQueries != null) {
+			slowQueries.close();
+		}
+		dataSource.close();
+	}
+
+	int randomStudentId() {
+		return ThreadLocalRandom.current().nextInt(1, students + 1);
+	}
+
+	int randomGroupId() {
+		return ThreadLocalRandom.current().nextInt(1, groups + 1);
+	}
+
+	int randomCourseId() {
+		return ThreadLocalRandom.current().nextInt(1, COURSES + 1);
+	}
+
+	String randomCourseName() {
+		return courseNames.get(ThreadLocalRandom.current().nextInt(courseNames.size()));
+	}
+
+	Student randomSampleStudent() {
+		return sample.get(ThreadLocalRandom.current().nextInt(sample.size()));
+	}
+
+	Course randomCourse() {
+		return courseList.get(ThreadLocalRandom.current().nextInt(courseList.size()));
+	}
+
+	Group randomGroup() {
+		return groupList.get(ThreadLocalRandom.current().nextInt(groupList.size()));
+	}
+
+	/**
+	 * The seeded ids are consecutive and the loader moves every sequence past them, so a single-threaded
+	 * benchmark knows the id the database hands to the row it saves and can delete that row again.
+	 */
+	int nextStudentId() {
+		return nextStudentId++;
+	}
+
+	int nextGroupId() {
+		return nextGroupId++;
+	}
+
+	int nextCourseId() {
+		return nextCourseId++;
+	}
+
+	/**
+	 * A course the student does not attend, so enrolling and unenrolling them leaves the data as it was.
+	 */
+	int courseNotAttendedBy(Student student) {
+		while (true) {
+			int courseId = randomCourseId();
+			if (student.courseList().stream().noneMatch(course -> course.id() == courseId)) {
+				return courseId;
+			}
+		}
+	}
+
+	private HikariConfig poolConfig() {
+		HikariConfig config = new HikariConfig();
+		switch (database) {
+			case "h2" -> {
+				config.setJdbcUrl(H2_URL);
+				config.setUsername("sa");
+				config.setPassword("");
+			}
+			case "postgresql" -> {
+				config.setJdbcUrl(System.getProperty("bench.jdbcUrl", POSTGRESQL_URL));
+				config.setUsername(System.getProperty("bench.username", "postgres"));
+				config.setPassword(System.getProperty("bench.password", "1234"));
+			}
+			default -> throw new IllegalArgumentException("Unknown database: " + database);
+		}
+		config.setMaximumPoolSize(POOL_SIZE);
+		return config;
+	}
+}
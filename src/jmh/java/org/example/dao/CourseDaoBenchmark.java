@@ -0,0 +1,64 @@
+package org.example.dao;
+
+import org.example.model.Course;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Single-threaded latency of every {@link CourseDao} method.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CourseDaoBenchmark {
+	private static final int PAGE_SIZE = 10;
+
+	@Benchmark
+	public Optional<Course> findByID(BenchmarkDatabase db) {
+		return db.courseDao.findByID(db.randomCourseId());
+	}
+
+	@Benchmark
+	public List<Course> findAll(BenchmarkDatabase db) {
+		return db.courseDao.findAll();
+	}
+
+	@Benchmark
+	public void streamAll(BenchmarkDatabase db, Blackhole blackhole) {
+		try (Stream<Course> courses = db.courseDao.streamAll()) {
+			courses.forEach(blackhole::consume);
+		}
+	}
+
+	@Benchmark
+	public Page<Course> findPage(BenchmarkDatabase db) {
+		return db.courseDao.findPage(db.randomCourseId() - 1, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public void update(BenchmarkDatabase db) {
+		db.courseDao.update(db.randomCourse());
+	}
+
+	/**
+	 * Saves a course nobody attends and deletes it again so the table keeps its size.
+	 */
+	@Benchmark
+	public void saveAndDelete(BenchmarkDatabase db) {
+		db.courseDao.save(new Course(0, "Benchmark", "Benchmark course"));
+		db.courseDao.delete(new Course(db.nextCourseId(), "Benchmark", "Benchmark course"));
+	}
+}
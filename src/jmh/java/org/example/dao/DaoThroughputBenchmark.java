@@ -0,0 +1,75 @@
+package org.example.dao;
+
+import org.example.model.Course;
+import org.example.model.Group;
+import org.example.model.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the common DAO calls with more threads than the pool has connections, so the numbers include
+ * waiting for a connection. Saves and deletes are left out because their ids are only predictable on one thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(2 * BenchmarkDatabase.POOL_SIZE)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DaoThroughputBenchmark {
+	private static final int PAGE_SIZE = 100;
+
+	@Benchmark
+	public Optional<Student> findStudentByID(BenchmarkDatabase db) {
+		return db.studentDao.findByID(db.randomStudentId());
+	}
+
+	@Benchmark
+	public Page<Student> findStudentPage(BenchmarkDatabase db) {
+		return db.studentDao.findPage(db.randomStudentId() - 1, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<Student> findStudentsByCourseName(BenchmarkDatabase db) {
+		return db.studentDao.findStudentsByCourseName(db.randomCourseName());
+	}
+
+	@Benchmark
+	public void updateStudent(BenchmarkDatabase db) {
+		db.studentDao.update(db.randomSampleStudent());
+	}
+
+	@Benchmark
+	public void addAndRemoveStudentFromCourse(BenchmarkDatabase db) {
+		Student student = db.randomSampleStudent();
+		int courseId = db.courseNotAttendedBy(student);
+		db.studentDao.addStudentToCourse(student, courseId);
+		db.studentDao.removeStudentFromCourse(student, courseId);
+	}
+
+	@Benchmark
+	public Optional<Group> findGroupByID(BenchmarkDatabase db) {
+		return db.groupDao.findByID(db.randomGroupId());
+	}
+
+	@Benchmark
+	public List<Group> findGroupsWithLessOrEqualStudents(BenchmarkDatabase db) throws SQLException {
+		return db.groupDao.findGroupsWithLessOrEqualStudents(BenchmarkDatabase.STUDENTS_PER_GROUP);
+	}
+
+	@Benchmark
+	public Optional<Course> findCourseByID(BenchmarkDatabase db) {
+		return db.courseDao.findByID(db.randomCourseId());
+	}
+}
@@ -0,0 +1,71 @@
+package org.example.dao;
+
+import org.example.model.Group;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Single-threaded latency of every {@link GroupDao} method.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class GroupDaoBenchmark {
+	private static final int PAGE_SIZE = 100;
+
+	@Benchmark
+	public Optional<Group> findByID(BenchmarkDatabase db) {
+		return db.groupDao.findByID(db.randomGroupId());
+	}
+
+	@Benchmark
+	public List<Group> findAll(BenchmarkDatabase db) {
+		return db.groupDao.findAll();
+	}
+
+	@Benchmark
+	public void streamAll(BenchmarkDatabase db, Blackhole blackhole) {
+		try (Stream<Group> groups = db.groupDao.streamAll()) {
+			groups.forEach(blackhole::consume);
+		}
+	}
+
+	@Benchmark
+	public Page<Group> findPage(BenchmarkDatabase db) {
+		return db.groupDao.findPage(db.randomGroupId() - 1, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<Group> findGroupsWithLessOrEqualStudents(BenchmarkDatabase db) throws SQLException {
+		return db.groupDao.findGroupsWithLessOrEqualStudents(BenchmarkDatabase.STUDENTS_PER_GROUP);
+	}
+
+	@Benchmark
+	public void update(BenchmarkDatabase db) {
+		db.groupDao.update(db.randomGroup());
+	}
+
+	/**
+	 * Saves an empty group and deletes it again so the table keeps its size.
+	 */
+	@Benchmark
+	public void saveAndDelete(BenchmarkDatabase db) {
+		Group group = new Group(db.nextGroupId(), "Benchmark");
+		db.groupDao.save(group);
+		db.groupDao.delete(group);
+	}
+}
@@ -0,0 +1,88 @@
+package org.example.dao;
+
+import org.example.model.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Single-threaded latency of every {@link StudentDao} method.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StudentDaoBenchmark {
+	private static final int PAGE_SIZE = 100;
+
+	@Benchmark
+	public Optional<Student> findByID(BenchmarkDatabase db) {
+		return db.studentDao.findByID(db.randomStudentId());
+	}
+
+	@Benchmark
+	public List<Student> findAll(BenchmarkDatabase db) {
+		return db.studentDao.findAll();
+	}
+
+	@Benchmark
+	public void streamAll(BenchmarkDatabase db, Blackhole blackhole) {
+		try (Stream<Student> students = db.studentDao.streamAll()) {
+			students.forEach(blackhole::consume);
+		}
+	}
+
+	@Benchmark
+	public Page<Student> findPage(BenchmarkDatabase db) {
+		return db.studentDao.findPage(db.randomStudentId() - 1, PAGE_SIZE);
+	}
+
+	@Benchmark
+	public List<Student> findStudentsByCourseName(BenchmarkDatabase db) {
+		return db.studentDao.findStudentsByCourseName(db.randomCourseName());
+	}
+
+	@Benchmark
+	public List<Student> findStudentsInAllCourses(BenchmarkDatabase db) {
+		return db.studentDao.findStudentsInAllCourses(List.of(db.randomCourseName(), db.randomCourseName()));
+	}
+
+	@Benchmark
+	public List<Student> findStudentsInAnyCourse(BenchmarkDatabase db) {
+		return db.studentDao.findStudentsInAnyCourse(List.of(db.randomCourseName(), db.randomCourseName()));
+	}
+
+	@Benchmark
+	public void update(BenchmarkDatabase db) {
+		db.studentDao.update(db.randomSampleStudent());
+	}
+
+	/**
+	 * Saves a student and deletes it again so the table keeps its size.
+	 */
+	@Benchmark
+	public void saveAndDelete(BenchmarkDatabase db) {
+		Student student = db.randomSampleStudent();
+		db.studentDao.save(student);
+		db.studentDao.delete(new Student(db.nextStudentId(), student.firstName(), student.lastName(), student.group(), List.of()));
+	}
+
+	@Benchmark
+	public void addAndRemoveStudentFromCourse(BenchmarkDatabase db) {
+		Student student = db.randomSampleStudent();
+		int courseId = db.courseNotAttendedBy(student);
+		db.studentDao.addStudentToCourse(student, courseId);
+		db.studentDao.removeStudentFromCourse(student, courseId);
+	}
+}
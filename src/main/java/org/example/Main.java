@@ -1,29 +1,151 @@
 package org.example;
 
 import com.zaxxer.hikari.HikariDataSource;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.cache.ReadThroughCache;
+import org.example.cache.StudentCache;
 import org.example.dao.CourseDao;
+import org.example.dao.CourseStudentIndex;
 import org.example.dao.GroupDao;
+import org.example.dao.GroupSizeIndex;
+import org.example.dao.InstrumentedDataSource;
+import org.example.dao.SlowQueryLog;
+import org.example.dao.StatementCachingDataSource;
 import org.example.dao.StudentDao;
+import org.example.dao.TransactionalDataSource;
+import org.example.metrics.Metrics;
+import org.example.metrics.PoolMetrics;
+import org.example.metrics.QueryStats;
+import org.example.model.Course;
+import org.example.model.Group;
+import org.example.runner.BatchRunner;
 import org.example.runner.DbLoader;
 import org.example.runner.Repl;
+import org.example.runner.SchemaMigrator;
+import org.example.runner.SeedOptions;
 import org.example.service.DatabaseManager;
 import org.example.service.ReportGenerator;
+import org.example.service.ReportSink;
 import org.example.utils.DbUtils;
 
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
 public class Main {
+	private static final Logger log = LogManager.getLogger(Main.class);
+	private static final int REFERENCE_CACHE_SIZE = 10_000;
+	private static final long REFERENCE_CACHE_TTL_SECONDS = 300;
+	private static final long STUDENT_CACHE_BYTES = 16L * 1024 * 1024;
+	private static final long STUDENT_CACHE_TTL_SECONDS = 600;
+	private static final long GROUP_SIZE_RECONCILE_SECONDS = 60;
+
 	public static void main(String[] args) {
-		try (HikariDataSource ds = DbUtils.createDataSource()) {
-			DbLoader.load(ds);
+		PoolMetrics poolMetrics = new PoolMetrics();
+		try (HikariDataSource ds = DbUtils.createDataSource(poolMetrics);
+			 ReportSink reportSink = reportSink();
+			 SlowQueryLog slowQueries = new SlowQueryLog(ds, SlowQueryLog.Options.fromSystemProperties())) {
+			SchemaMigrator.migrate(ds);
+			if (Boolean.getBoolean("seed")) {
+				DbLoader.load(ds, SeedOptions.fromSystemProperties());
+			}
 
-			StudentDao studentDao = new StudentDao(ds);
-			GroupDao groupDao = new GroupDao(ds);
-			CourseDao courseDao = new CourseDao(ds);
+			StudentCache studentCache = new StudentCache(
+					Long.getLong("cache.student.maxBytes", STUDENT_CACHE_BYTES),
+					Duration.ofSeconds(Long.getLong("cache.student.ttlSeconds", STUDENT_CACHE_TTL_SECONDS)));
+			CourseStudentIndex courseIndex = CourseStudentIndex.load(ds);
+			GroupSizeIndex groupSizes = GroupSizeIndex.load(ds);
+			ScheduledExecutorService reconciler = scheduleReconciliation(ds, groupSizes);
+			StatementCachingDataSource statementCache = new StatementCachingDataSource(ds,
+					Integer.getInteger("cache.statements.perConnection", StatementCachingDataSource.DEFAULT_STATEMENTS_PER_CONNECTION));
+			QueryStats queryStats = QueryStats.namedAfterConstants(StudentDao.class, GroupDao.class, CourseDao.class);
+			Metrics metrics = new Metrics(queryStats, poolMetrics);
+			metrics.register();
+			TransactionalDataSource transactions = new TransactionalDataSource(new InstrumentedDataSource(statementCache, queryStats, slowQueries));
+			StudentDao studentDao = new StudentDao(transactions, studentCache, courseIndex, groupSizes);
+			ReadThroughCache<Integer, Optional<Group>> groupCache = referenceCache("groups");
+			ReadThroughCache<Integer, Optional<Course>> courseCache = referenceCache("courses");
+			GroupDao groupDao = new GroupDao(transactions, groupCache, groupSizes, studentCache);
+			CourseDao courseDao = new CourseDao(transactions, courseCache, courseIndex, studentCache);
 
-			ReportGenerator reportGenerator = new ReportGenerator(studentDao, groupDao, courseDao);
-			DatabaseManager dbManager = new DatabaseManager(reportGenerator);
-			Repl repl = new Repl(dbManager);
+			ReportGenerator reportGenerator = new ReportGenerator(studentDao, groupDao, courseDao, reportSink, transactions, metrics);
+			String batch = System.getProperty("batch");
+			if (batch == null) {
+				new Repl(new DatabaseManager(reportGenerator)).run();
+			} else {
+				runBatch(batch, new DatabaseManager(reportGenerator, false));
+			}
+			reconciler.shutdownNow();
+			log.info("Reference cache {}", groupCache.stats());
+			log.info("Reference cache {}", courseCache.stats());
+			log.info("Student cache {}, {} of {} bytes", studentCache.stats(), studentCache.weightedSize(), studentCache.maximumWeight());
+			log.info("Statement cache {}", statementCache.stats());
+			log.info("Slow query log: {} statements, {} plans", slowQueries.logged(), slowQueries.explained());
+		}
+	}
 
-			repl.run();
+	/**
+	 * Reports go to the file named by {@code -Dreport.file}, or to the console.
+	 */
+	private static ReportSink reportSink() {
+		String file = System.getProperty("report.file");
+		if (file == null) {
+			return ReportSink.console();
 		}
+		try {
+			return ReportSink.file(Path.of(file));
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to open report file " + file, e);
+		}
+	}
+
+	/**
+	 * Runs the commands in the file named by {@code -Dbatch}, or on standard input for {@code -Dbatch=-}.
+	 */
+	private static void runBatch(String script, DatabaseManager dbManager) {
+		BatchRunner runner = new BatchRunner(dbManager);
+		if (script.equals("-")) {
+			runner.run(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+			return;
+		}
+		try (Reader reader = Files.newBufferedReader(Path.of(script))) {
+			runner.run(reader);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to read batch script " + script, e);
+		}
+	}
+
+	private static ScheduledExecutorService scheduleReconciliation(DataSource ds, GroupSizeIndex groupSizes) {
+		long period = Long.getLong("groups.reconcileSeconds", GROUP_SIZE_RECONCILE_SECONDS);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "group-size-reconciler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(() -> {
+			try {
+				groupSizes.reconcile(ds);
+			} catch (RuntimeException e) {
+				log.warn("Group size reconciliation failed: {}", e.getMessage());
+			}
+		}, period, period, TimeUnit.SECONDS);
+		return scheduler;
+	}
+
+	private static <V> ReadThroughCache<Integer, V> referenceCache(String name) {
+		return new ReadThroughCache<>(name,
+				Integer.getInteger("cache.reference.maxSize", REFERENCE_CACHE_SIZE),
+				Duration.ofSeconds(Long.getLong("cache.reference.ttlSeconds", REFERENCE_CACHE_TTL_SECONDS)));
 	}
 }
@@ -0,0 +1,23 @@
+package org.example.cache;
+
+/**
+ * Point-in-time counters of a cache.
+ *
+ * @param hits       lookups answered from the cache
+ * @param misses     lookups that had to wait for a load, including coalesced ones
+ * @param loads      loads actually run against the backing store
+ * @param evictions  entries dropped to stay within the size or memory budget
+ * @param size       entries currently held
+ */
+public record CacheStats(String name, long hits, long misses, long loads, long evictions, long size) {
+	public double hitRatio() {
+		long requests = hits + misses;
+		return requests == 0 ? 0 : (double) hits / requests;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: hits=%d, misses=%d, loads=%d, evictions=%d, size=%d, hit ratio=%.2f%%",
+				name, hits, misses, loads, evictions, size, hitRatio() * 100);
+	}
+}
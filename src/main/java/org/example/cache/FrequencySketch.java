@@ -0,0 +1,70 @@
+package org.example.cache;
+
+/**
+ * Count-min sketch of recent access frequencies, capped at 15 per key.
+ * <p>
+ * All counters are halved once the sketch has recorded ten times as many accesses as it has columns,
+ * so the estimate follows a shifting workload instead of remembering every key forever.
+ */
+final class FrequencySketch {
+	private static final int DEPTH = 4;
+	private static final int MAX_COUNT = 15;
+	private static final int[] SEEDS = {0x97CB3127, 0xB8BA1A01, 0x5F4A7C15, 0x2545F491};
+
+	private final byte[][] counters;
+	private final int mask;
+	private final int sampleSize;
+	private int additions;
+
+	FrequencySketch(int expectedEntries) {
+		int width = Integer.highestOneBit(Math.max(64, Math.min(expectedEntries, 1 << 24)) - 1) << 1;
+		this.counters = new byte[DEPTH][width];
+		this.mask = width - 1;
+		this.sampleSize = 10 * width;
+	}
+
+	void increment(Object key) {
+		int hash = spread(key.hashCode());
+		boolean added = false;
+		for (int row = 0; row < DEPTH; row++) {
+			int index = index(hash, row);
+			if (counters[row][index] < MAX_COUNT) {
+				counters[row][index]++;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	int frequency(Object key) {
+		int hash = spread(key.hashCode());
+		int frequency = MAX_COUNT;
+		for (int row = 0; row < DEPTH; row++) {
+			frequency = Math.min(frequency, counters[row][index(hash, row)]);
+		}
+		return frequency;
+	}
+
+	private void reset() {
+		for (byte[] row : counters) {
+			for (int i = 0; i < row.length; i++) {
+				row[i] >>>= 1;
+			}
+		}
+		additions /= 2;
+	}
+
+	private int index(int hash, int row) {
+		int h = (hash ^ SEEDS[row]) * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private static int spread(int hash) {
+		hash ^= hash >>> 17;
+		hash *= 0xED5AD4BB;
+		hash ^= hash >>> 11;
+		return hash;
+	}
+}
@@ -0,0 +1,174 @@
+package org.example.cache;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded read-through cache for small, read-mostly reference data.
+ * <p>
+ * Entries are evicted in least-recently-used order once {@code maximumSize} is exceeded and expire
+ * {@code timeToLive} after they were loaded. Concurrent misses for the same key share one load.
+ * A load that overlaps an invalidation is returned to its callers but not stored, so a write
+ * followed by {@link #invalidate} can never be shadowed by an older read. Loads made outside the cache do the
+ * same with {@link #stamp} and {@link #putIfUnchanged}.
+ */
+public class ReadThroughCache<K, V> {
+	private final String name;
+	private final int maximumSize;
+	private final long timeToLiveNanos;
+	private final LongSupplier ticker;
+	private final Map<K, Entry<V>> entries;
+	private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+	private final AtomicLong invalidations = new AtomicLong();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public ReadThroughCache(String name, int maximumSize, Duration timeToLive) {
+		this(name, maximumSize, timeToLive, System::nanoTime);
+	}
+
+	ReadThroughCache(String name, int maximumSize, Duration timeToLive, LongSupplier ticker) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+		}
+		this.name = name;
+		this.maximumSize = maximumSize;
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.ticker = ticker;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() > ReadThroughCache.this.maximumSize) {
+					evictions.increment();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		Objects.requireNonNull(key, "key");
+		V cached = lookup(key);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		CompletableFuture<V> load = new CompletableFuture<>();
+		CompletableFuture<V> running = loading.putIfAbsent(key, load);
+		if (running != null) {
+			return await(running);
+		}
+		long generation = invalidations.get();
+		try {
+			loads.increment();
+			V value = Objects.requireNonNull(loader.apply(key), "Cache loader returned null");
+			store(key, value, generation);
+			load.complete(value);
+			return value;
+		} catch (RuntimeException | Error e) {
+			load.completeExceptionally(e);
+			throw e;
+		} finally {
+			loading.remove(key, load);
+		}
+	}
+
+	public V getIfPresent(K key) {
+		V cached = lookup(key);
+		if (cached != null) {
+			hits.increment();
+		}
+		return cached;
+	}
+
+	public void put(K key, V value) {
+		store(key, Objects.requireNonNull(value, "value"), invalidations.get());
+	}
+
+	/**
+	 * The current invalidation count, to be taken before reading values that are later stored with
+	 * {@link #putIfUnchanged}.
+	 */
+	public long stamp() {
+		return invalidations.get();
+	}
+
+	/**
+	 * Stores a value read from the database unless an invalidation happened since {@code stamp} was taken,
+	 * in which case the value may be older than the write behind it.
+	 */
+	public void putIfUnchanged(K key, V value, long stamp) {
+		store(key, Objects.requireNonNull(value, "value"), stamp);
+	}
+
+	public void invalidate(K key) {
+		invalidations.incrementAndGet();
+		synchronized (entries) {
+			entries.remove(key);
+		}
+	}
+
+	public void invalidateAll() {
+		invalidations.incrementAndGet();
+		synchronized (entries) {
+			entries.clear();
+		}
+	}
+
+	public CacheStats stats() {
+		long size;
+		synchronized (entries) {
+			size = entries.size();
+		}
+		return new CacheStats(name, hits.sum(), misses.sum(), loads.sum(), evictions.sum(), size);
+	}
+
+	private V lookup(K key) {
+		synchronized (entries) {
+			Entry<V> entry = entries.get(key);
+			if (entry == null) {
+				return null;
+			}
+			if (ticker.getAsLong() - entry.expiresAt() >= 0) {
+				entries.remove(key);
+				return null;
+			}
+			return entry.value();
+		}
+	}
+
+	private void store(K key, V value, long generation) {
+		synchronized (entries) {
+			if (invalidations.get() == generation) {
+				entries.put(key, new Entry<>(value, ticker.getAsLong() + timeToLiveNanos));
+			}
+		}
+	}
+
+	private static <V> V await(CompletableFuture<V> load) {
+		try {
+			return load.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+	private record Entry<V>(V value, long expiresAt) {
+	}
+}
@@ -0,0 +1,40 @@
+package org.example.cache;
+
+import org.example.model.Course;
+import org.example.model.Student;
+
+import java.time.Duration;
+
+/**
+ * {@link TinyLfuCache} of students by id, bounded by an estimate of the heap the cached students occupy.
+ */
+public class StudentCache extends TinyLfuCache<Integer, Student> {
+	private static final int ENTRY_OVERHEAD = 96;
+	private static final int RECORD_OVERHEAD = 32;
+	private static final int STRING_OVERHEAD = 40;
+	private static final int LIST_OVERHEAD = 32;
+	private static final int REFERENCE_SIZE = 4;
+
+	public StudentCache(long maximumBytes, Duration timeToLive) {
+		super("students", maximumBytes, timeToLive, StudentCache::estimateSize);
+	}
+
+	/**
+	 * Approximate retained size of a student with its group and courses, plus the cache's own bookkeeping.
+	 * Strings are counted as compact Latin-1, which is what the generated and typical names are.
+	 */
+	static int estimateSize(Student student) {
+		long size = ENTRY_OVERHEAD + RECORD_OVERHEAD
+				+ sizeOf(student.firstName()) + sizeOf(student.lastName())
+				+ RECORD_OVERHEAD + sizeOf(student.group().name())
+				+ LIST_OVERHEAD + (long) REFERENCE_SIZE * student.courseList().size();
+		for (Course course : student.courseList()) {
+			size += RECORD_OVERHEAD + sizeOf(course.name()) + sizeOf(course.description());
+		}
+		return (int) Math.min(Integer.MAX_VALUE, size);
+	}
+
+	private static long sizeOf(String value) {
+		return value == null ? 0 : STRING_OVERHEAD + value.length();
+	}
+}
@@ -0,0 +1,360 @@
+package org.example.cache;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Weight-bounded cache with a W-TinyLFU admission policy, for entities read with a skewed distribution.
+ * <p>
+ * New entries enter a small LRU window. Entries pushed out of the window become candidates for the main
+ * space, a segmented LRU of a probation and a protected segment, and are admitted only if a
+ * {@link FrequencySketch} has seen their key more often than the probation entry they would displace.
+ * A burst of one-off reads therefore cannot flush the hot entries. Entries read again while on probation
+ * are promoted to the protected segment.
+ * <p>
+ * Writes go through {@link #put}, {@link #computeIfPresent} and {@link #invalidate}. Each write discards
+ * any {@link #get} load that started before it, so a reader never stores a row a writer has replaced. Loads
+ * made outside the cache do the same with {@link #stamp} and {@link #putIfUnchanged}.
+ */
+public class TinyLfuCache<K, V> {
+	private static final double WINDOW_SHARE = 0.01;
+	private static final double PROTECTED_SHARE = 0.8;
+	private static final int ASSUMED_ENTRY_WEIGHT = 256;
+
+	private final String name;
+	private final long maximumWeight;
+	private final long windowMaximum;
+	private final long protectedMaximum;
+	private final long timeToLiveNanos;
+	private final ToIntFunction<? super V> weigher;
+	private final LongSupplier ticker;
+	private final Map<K, Node<K, V>> nodes = new HashMap<>();
+	private final AccessQueue<K, V> window = new AccessQueue<>();
+	private final AccessQueue<K, V> probation = new AccessQueue<>();
+	private final AccessQueue<K, V> protectedSegment = new AccessQueue<>();
+	private final FrequencySketch sketch;
+	private long writes;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder loads = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public TinyLfuCache(String name, long maximumWeight, Duration timeToLive, ToIntFunction<? super V> weigher) {
+		this(name, maximumWeight, timeToLive, weigher, System::nanoTime);
+	}
+
+	TinyLfuCache(String name, long maximumWeight, Duration timeToLive, ToIntFunction<? super V> weigher, LongSupplier ticker) {
+		if (maximumWeight < 1) {
+			throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+		}
+		this.name = name;
+		this.maximumWeight = maximumWeight;
+		this.windowMaximum = Math.max(1, (long) (maximumWeight * WINDOW_SHARE));
+		this.protectedMaximum = (long) ((maximumWeight - windowMaximum) * PROTECTED_SHARE);
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.weigher = weigher;
+		this.ticker = ticker;
+		this.sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maximumWeight / ASSUMED_ENTRY_WEIGHT));
+	}
+
+	/**
+	 * Returns the cached value or loads it. A {@code null} from the loader is passed through and not cached.
+	 */
+	public V get(K key, Function<? super K, ? extends V> loader) {
+		Objects.requireNonNull(key, "key");
+		V cached = getIfPresent(key);
+		if (cached != null) {
+			return cached;
+		}
+		misses.increment();
+		long stamp = stamp();
+		loads.increment();
+		V value = loader.apply(key);
+		if (value != null) {
+			putIfUnchanged(key, value, stamp);
+		}
+		return value;
+	}
+
+	public V getIfPresent(K key) {
+		synchronized (nodes) {
+			Node<K, V> node = nodes.get(key);
+			if (node == null) {
+				return null;
+			}
+			if (ticker.getAsLong() - node.expiresAt >= 0) {
+				remove(node);
+				return null;
+			}
+			hits.increment();
+			onAccess(node);
+			return node.value;
+		}
+	}
+
+	public void put(K key, V value) {
+		Objects.requireNonNull(value, "value");
+		synchronized (nodes) {
+			writes++;
+			store(key, value);
+		}
+	}
+
+	/**
+	 * The current write count, to be taken before reading values that are later stored with
+	 * {@link #putIfUnchanged}.
+	 */
+	public long stamp() {
+		synchronized (nodes) {
+			return writes;
+		}
+	}
+
+	/**
+	 * Stores a value read from the database unless the cache was written since {@code stamp} was taken, in
+	 * which case the value may be older than the write.
+	 */
+	public void putIfUnchanged(K key, V value, long stamp) {
+		Objects.requireNonNull(value, "value");
+		synchronized (nodes) {
+			if (writes == stamp) {
+				store(key, value);
+			}
+		}
+	}
+
+	/**
+	 * Replaces a cached value with {@code update} applied to it, or drops it if {@code update} returns {@code null}.
+	 * Keys that are not cached are left alone.
+	 */
+	public void computeIfPresent(K key, UnaryOperator<V> update) {
+		synchronized (nodes) {
+			writes++;
+			Node<K, V> node = nodes.get(key);
+			if (node == null) {
+				return;
+			}
+			V value = update.apply(node.value);
+			if (value == null) {
+				remove(node);
+			} else {
+				store(key, value);
+			}
+		}
+	}
+
+	public void invalidate(K key) {
+		synchronized (nodes) {
+			writes++;
+			Node<K, V> node = nodes.get(key);
+			if (node != null) {
+				remove(node);
+			}
+		}
+	}
+
+	public void invalidateAll() {
+		synchronized (nodes) {
+			writes++;
+			nodes.clear();
+			window.clear();
+			probation.clear();
+			protectedSegment.clear();
+		}
+	}
+
+	public long maximumWeight() {
+		return maximumWeight;
+	}
+
+	public long weightedSize() {
+		synchronized (nodes) {
+			return totalWeight();
+		}
+	}
+
+	public CacheStats stats() {
+		long size;
+		synchronized (nodes) {
+			size = nodes.size();
+		}
+		return new CacheStats(name, hits.sum(), misses.sum(), loads.sum(), evictions.sum(), size);
+	}
+
+	private void store(K key, V value) {
+		int weight = weigher.applyAsInt(value);
+		Node<K, V> node = nodes.get(key);
+		if (weight > maximumWeight) {
+			if (node != null) {
+				remove(node);
+			}
+			return;
+		}
+		long expiresAt = ticker.getAsLong() + timeToLiveNanos;
+		if (node == null) {
+			node = new Node<>(key, value, weight, expiresAt);
+			sketch.increment(key);
+			nodes.put(key, node);
+			window.addLast(node, Region.WINDOW);
+		} else {
+			node.value = value;
+			node.expiresAt = expiresAt;
+			queue(node.region).reweigh(node, weight);
+		}
+		evict();
+	}
+
+	private void onAccess(Node<K, V> node) {
+		sketch.increment(node.key);
+		switch (node.region) {
+			case WINDOW -> window.moveToLast(node);
+			case PROTECTED -> protectedSegment.moveToLast(node);
+			case PROBATION -> {
+				probation.remove(node);
+				protectedSegment.addLast(node, Region.PROTECTED);
+				while (protectedSegment.weight > protectedMaximum && protectedSegment.head != node) {
+					Node<K, V> demoted = protectedSegment.head;
+					protectedSegment.remove(demoted);
+					probation.addLast(demoted, Region.PROBATION);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Moves the window overflow to probation, then evicts until the cache fits its budget: each candidate
+	 * from the window competes with the oldest probation entry and the less frequently used one leaves.
+	 */
+	private void evict() {
+		ArrayDeque<Node<K, V>> candidates = new ArrayDeque<>();
+		while (window.weight > windowMaximum && window.head != null) {
+			Node<K, V> candidate = window.head;
+			window.remove(candidate);
+			probation.addLast(candidate, Region.PROBATION);
+			candidates.add(candidate);
+		}
+		while (totalWeight() > maximumWeight) {
+			Node<K, V> candidate = candidates.peekFirst();
+			Node<K, V> victim = probation.head;
+			if (candidate == null || victim == null || victim == candidate) {
+				candidates.pollFirst();
+				remove(firstNonEmpty().head);
+			} else if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+				remove(victim);
+			} else {
+				candidates.pollFirst();
+				remove(candidate);
+			}
+			evictions.increment();
+		}
+	}
+
+	private AccessQueue<K, V> firstNonEmpty() {
+		if (probation.head != null) {
+			return probation;
+		}
+		return protectedSegment.head != null ? protectedSegment : window;
+	}
+
+	private void remove(Node<K, V> node) {
+		nodes.remove(node.key);
+		queue(node.region).remove(node);
+	}
+
+	private AccessQueue<K, V> queue(Region region) {
+		return switch (region) {
+			case WINDOW -> window;
+			case PROBATION -> probation;
+			case PROTECTED -> protectedSegment;
+		};
+	}
+
+	private long totalWeight() {
+		return window.weight + probation.weight + protectedSegment.weight;
+	}
+
+	private enum Region {
+		WINDOW, PROBATION, PROTECTED
+	}
+
+	private static final class Node<K, V> {
+		private final K key;
+		private V value;
+		private int weight;
+		private long expiresAt;
+		private Region region;
+		private Node<K, V> prev;
+		private Node<K, V> next;
+
+		private Node(K key, V value, int weight, long expiresAt) {
+			this.key = key;
+			this.value = value;
+			this.weight = weight;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * Intrusive doubly linked list ordered from least to most recently used, with the total weight of its nodes.
+	 */
+	private static final class AccessQueue<K, V> {
+		private Node<K, V> head;
+		private Node<K, V> tail;
+		private long weight;
+
+		private void addLast(Node<K, V> node, Region region) {
+			node.region = region;
+			node.prev = tail;
+			node.next = null;
+			if (tail == null) {
+				head = node;
+			} else {
+				tail.next = node;
+			}
+			tail = node;
+			weight += node.weight;
+		}
+
+		private void remove(Node<K, V> node) {
+			if (node.prev == null) {
+				head = node.next;
+			} else {
+				node.prev.next = node.next;
+			}
+			if (node.next == null) {
+				tail = node.prev;
+			} else {
+				node.next.prev = node.prev;
+			}
+			node.prev = null;
+			node.next = null;
+			weight -= node.weight;
+		}
+
+		private void moveToLast(Node<K, V> node) {
+			if (tail != node) {
+				remove(node);
+				addLast(node, node.region);
+			}
+		}
+
+		private void reweigh(Node<K, V> node, int newWeight) {
+			weight += newWeight - node.weight;
+			node.weight = newWeight;
+		}
+
+		private void clear() {
+			head = null;
+			tail = null;
+			weight = 0;
+		}
+	}
+}
@@ -2,6 +2,8 @@ package org.example.dao;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.cache.ReadThroughCache;
+import org.example.cache.StudentCache;
 import org.example.exceptions.DbException;
 import org.example.model.Course;
 
@@ -10,31 +12,73 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class CourseDao implements Dao<Course> {
 	private static final String INSERT_COURSE = "INSERT INTO courses (course_name, course_description) VALUES (?, ?)";
 	private static final String SELECT_COURSE_BY_ID = "SELECT * FROM courses WHERE course_id = ?";
 	private static final String SELECT_ALL_COURSES = "SELECT * FROM courses";
+	private static final String SELECT_COURSES_BY_IDS = "SELECT * FROM courses WHERE course_id = ANY(?)";
+	private static final String SELECT_COURSES_PAGE = "SELECT * FROM courses WHERE course_id > ? ORDER BY course_id LIMIT ?";
 	private static final String UPDATE_COURSE = "UPDATE courses SET course_name = ?, course_description = ? WHERE course_id = ?";
 	private static final String DELETE_COURSE = "DELETE FROM courses WHERE course_id = ?";
 
 	private static final Logger log = LogManager.getLogger(CourseDao.class);
 	private final DataSource dbPool;
+	private final ReadThroughCache<Integer, Optional<Course>> cache;
+	private final CourseStudentIndex courseIndex;
+	private final StudentCache studentCache;
 
 	public CourseDao(DataSource dbPool) {
+		this(dbPool, null, null);
+	}
+
+	public CourseDao(DataSource dbPool, ReadThroughCache<Integer, Optional<Course>> cache) {
+		this(dbPool, cache, null);
+	}
+
+	public CourseDao(DataSource dbPool, ReadThroughCache<Integer, Optional<Course>> cache, CourseStudentIndex courseIndex) {
+		this(dbPool, cache, courseIndex, null);
+	}
+
+	/**
+	 * @param cache        optional read-through cache for {@link #findByID}; writes through this DAO invalidate it
+	 * @param courseIndex  optional course-to-students index whose course names are kept current by this DAO
+	 * @param studentCache optional cache of the {@link StudentDao}, whose students carry their courses; updating
+	 *                     or deleting a course invalidates the students enrolled in it, all of them without an index
+	 */
+	public CourseDao(DataSource dbPool, ReadThroughCache<Integer, Optional<Course>> cache, CourseStudentIndex courseIndex,
+					 StudentCache studentCache) {
 		this.dbPool = dbPool;
+		this.cache = cache;
+		this.courseIndex = courseIndex;
+		this.studentCache = studentCache;
 	}
 
 	@Override
 	public void save(Course course) {
 		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_COURSE)) {
+			 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_COURSE, Statement.RETURN_GENERATED_KEYS)) {
 			preparedStatement.setString(1, course.name());
 			preparedStatement.setString(2, course.description());
 			preparedStatement.executeUpdate();
+			if (courseIndex != null || cache != null) {
+				try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+					if (keys.next()) {
+						int id = keys.getInt(1);
+						if (courseIndex != null) {
+							TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.putCourse(id, course.name()));
+						}
+						invalidate(id);
+					}
+				}
+			}
 		} catch (SQLException e) {
 			log.error("Error while saving course to the database", e);
 			throw new DbException(e);
@@ -43,18 +87,30 @@ public class CourseDao implements Dao<Course> {
 
 	@Override
 	public Optional<Course> findByID(int id) {
+		if (cache == null) {
+			return loadByID(id);
+		}
+		if (!TransactionalDataSource.inUnitOfWork(dbPool)) {
+			return cache.get(id, this::loadByID);
+		}
+		Optional<Course> cached = cache.getIfPresent(id);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = cache.stamp();
+		Optional<Course> course = loadByID(id);
+		TransactionalDataSource.afterCommit(dbPool, () -> cache.putIfUnchanged(id, course, stamp));
+		return course;
+	}
+
+	private Optional<Course> loadByID(int id) {
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSE_BY_ID)) {
 			preparedStatement.setInt(1, id);
 
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {
 				if (resultSet.next()) {
-					Course course = new Course(
-							resultSet.getInt("course_id"),
-							resultSet.getString("course_name"),
-							resultSet.getString("course_description")
-					);
-					return Optional.of(course);
+					return Optional.of(mapCourse(resultSet));
 				} else {
 					return Optional.empty();
 				}
@@ -65,18 +121,19 @@ public class CourseDao implements Dao<Course> {
 		}
 	}
 
+	@Override
+	public Map<Integer, Course> findAllByIds(Collection<Integer> ids) {
+		return IdBatchQuery.findAllByIds(dbPool, SELECT_COURSES_BY_IDS, ids, cache, CourseDao::mapCourse, Course::id);
+	}
+
 	@Override
 	public List<Course> findAll() {
 		List<Course> courses = new ArrayList<>();
 		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_COURSES)) {
-			ResultSet resultSet = preparedStatement.executeQuery();
+			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_COURSES);
+			 ResultSet resultSet = preparedStatement.executeQuery()) {
 			while (resultSet.next()) {
-				courses.add(new Course(
-						resultSet.getInt("course_id"),
-						resultSet.getString("course_name"),
-						resultSet.getString("course_description")
-				));
+				courses.add(mapCourse(resultSet));
 			}
 			return courses;
 		} catch (SQLException e) {
@@ -85,6 +142,30 @@ public class CourseDao implements Dao<Course> {
 		}
 	}
 
+	@Override
+	public Stream<Course> streamAll(int fetchSize) {
+		return ResultSetStream.open(dbPool, SELECT_ALL_COURSES, fetchSize, CourseDao::mapCourse);
+	}
+
+	@Override
+	public Page<Course> findPage(int afterId, int pageSize) {
+		List<Course> courses = new ArrayList<>();
+		try (Connection connection = dbPool.getConnection();
+			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSES_PAGE)) {
+			preparedStatement.setInt(1, afterId);
+			preparedStatement.setInt(2, pageSize + 1);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					courses.add(mapCourse(resultSet));
+				}
+			}
+			return Page.of(courses, pageSize, Course::id);
+		} catch (SQLException e) {
+			log.error("Error find courses page in the database", e);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public void update(Course course) {
 		try (Connection connection = dbPool.getConnection();
@@ -93,9 +174,15 @@ public class CourseDao implements Dao<Course> {
 			preparedStatement.setString(2, course.description());
 			preparedStatement.setInt(3, course.id());
 			preparedStatement.executeUpdate();
+			invalidateStudentsOf(course.id());
+			if (courseIndex != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.putCourse(course.id(), course.name()));
+			}
 		} catch (SQLException e) {
 			log.error("Error update course in the database" + e);
 			throw new DbException(e);
+		} finally {
+			invalidate(course.id());
 		}
 	}
 
@@ -105,9 +192,45 @@ public class CourseDao implements Dao<Course> {
 			 PreparedStatement preparedStatement = connection.prepareStatement(DELETE_COURSE)) {
 			preparedStatement.setInt(1, course.id());
 			preparedStatement.executeUpdate();
+			invalidateStudentsOf(course.id());
+			if (courseIndex != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.removeCourse(course.id()));
+			}
 		} catch (SQLException e) {
 			log.error("Error delete course in the database", e);
 			throw new DbException(e);
+		} finally {
+			invalidate(course.id());
+		}
+	}
+
+	private void invalidate(int id) {
+		if (cache != null) {
+			TransactionalDataSource.afterCommit(dbPool, () -> cache.invalidate(id));
+		}
+	}
+
+	/**
+	 * Registered before the index drops the course, so the enrolled students are still known when it runs.
+	 */
+	private void invalidateStudentsOf(int courseId) {
+		if (studentCache == null) {
+			return;
 		}
+		TransactionalDataSource.afterCommit(dbPool, () -> {
+			if (courseIndex == null) {
+				studentCache.invalidateAll();
+			} else {
+				courseIndex.studentsOfCourse(courseId).forEach((int studentId) -> studentCache.invalidate(studentId));
+			}
+		});
+	}
+
+	private static Course mapCourse(ResultSet resultSet) throws SQLException {
+		return new Course(
+				resultSet.getInt("course_id"),
+				resultSet.getString("course_name"),
+				resultSet.getString("course_description")
+		);
 	}
 }
@@ -0,0 +1,207 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.roaringbitmap.RoaringBitmap;
+
+import javax.sql.DataSource;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BinaryOperator;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index from courses to the ids of their students, kept as compressed bitmaps.
+ * <p>
+ * Course names are not unique, so a name maps to a bitmap of course ids and a lookup by name is the union
+ * of those courses. The index is built once from {@code student_course} and then kept current by the DAOs
+ * that modify courses and enrollments. Every query returns a fresh bitmap the caller may keep or modify.
+ */
+public class CourseStudentIndex {
+	private static final String SELECT_COURSE_NAMES = "SELECT course_id, course_name FROM courses";
+	private static final String SELECT_ENROLLMENTS = "SELECT student_id, course_id FROM student_course";
+
+	private static final Logger log = LogManager.getLogger(CourseStudentIndex.class);
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Map<Integer, RoaringBitmap> studentsByCourse = new HashMap<>();
+	private final Map<Integer, String> courseNames = new HashMap<>();
+	private final Map<String, RoaringBitmap> coursesByName = new HashMap<>();
+
+	public static CourseStudentIndex load(DataSource dbPool) {
+		long start = System.nanoTime();
+		CourseStudentIndex index = new CourseStudentIndex();
+		try (Stream<CourseName> courses = ResultSetStream.open(dbPool, SELECT_COURSE_NAMES, Dao.DEFAULT_FETCH_SIZE,
+				resultSet -> new CourseName(resultSet.getInt("course_id"), resultSet.getString("course_name")))) {
+			courses.forEach(course -> index.putCourse(course.id(), course.name()));
+		}
+		try (Stream<EnrollmentRow> enrollments = ResultSetStream.open(dbPool, SELECT_ENROLLMENTS, Dao.DEFAULT_FETCH_SIZE,
+				resultSet -> new EnrollmentRow(resultSet.getInt("student_id"), resultSet.getInt("course_id")))) {
+			enrollments.forEach(enrollment -> index.students(enrollment.courseId()).add(enrollment.studentId()));
+		}
+		index.studentsByCourse.values().forEach(RoaringBitmap::runOptimize);
+		log.info("Indexed {} enrollments in {} courses in {} ms",
+				index.enrollments(), index.studentsByCourse.size(), (System.nanoTime() - start) / 1_000_000);
+		return index;
+	}
+
+	public void putCourse(int courseId, String name) {
+		lock.writeLock().lock();
+		try {
+			String previous = courseNames.put(courseId, name);
+			if (previous != null) {
+				removeCourseName(previous, courseId);
+			}
+			coursesByName.computeIfAbsent(name, key -> new RoaringBitmap()).add(courseId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void removeCourse(int courseId) {
+		lock.writeLock().lock();
+		try {
+			studentsByCourse.remove(courseId);
+			String name = courseNames.remove(courseId);
+			if (name != null) {
+				removeCourseName(name, courseId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void enroll(int studentId, int courseId) {
+		lock.writeLock().lock();
+		try {
+			students(courseId).add(studentId);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void enrollAll(Collection<Integer> studentIds, int courseId) {
+		lock.writeLock().lock();
+		try {
+			RoaringBitmap students = students(courseId);
+			studentIds.forEach(students::add);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void unenroll(int studentId, int courseId) {
+		lock.writeLock().lock();
+		try {
+			RoaringBitmap students = studentsByCourse.get(courseId);
+			if (students != null) {
+				students.remove(studentId);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Drops a deleted student from every course, mirroring the cascade on {@code student_course}.
+	 */
+	public void removeStudent(int studentId) {
+		lock.writeLock().lock();
+		try {
+			studentsByCourse.values().forEach(students -> students.remove(studentId));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public RoaringBitmap studentsOfCourse(int courseId) {
+		lock.readLock().lock();
+		try {
+			RoaringBitmap students = studentsByCourse.get(courseId);
+			return students == null ? new RoaringBitmap() : students.clone();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public RoaringBitmap studentsOfCourseName(String name) {
+		lock.readLock().lock();
+		try {
+			return studentsOfName(name);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Students enrolled in a course of every one of the given names.
+	 */
+	public RoaringBitmap studentsInAll(Collection<String> names) {
+		return combine(names, (left, right) -> RoaringBitmap.and(left, right));
+	}
+
+	/**
+	 * Students enrolled in a course of at least one of the given names.
+	 */
+	public RoaringBitmap studentsInAny(Collection<String> names) {
+		return combine(names, (left, right) -> RoaringBitmap.or(left, right));
+	}
+
+	public long enrollments() {
+		lock.readLock().lock();
+		try {
+			return studentsByCourse.values().stream().mapToLong(RoaringBitmap::getLongCardinality).sum();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private RoaringBitmap combine(Collection<String> names, BinaryOperator<RoaringBitmap> operator) {
+		lock.readLock().lock();
+		try {
+			return names.stream()
+					.distinct()
+					.map(this::studentsOfName)
+					.reduce(operator)
+					.orElseGet(RoaringBitmap::new);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private RoaringBitmap studentsOfName(String name) {
+		RoaringBitmap courses = coursesByName.get(name);
+		RoaringBitmap students = new RoaringBitmap();
+		if (courses != null) {
+			courses.forEach((int courseId) -> {
+				RoaringBitmap enrolled = studentsByCourse.get(courseId);
+				if (enrolled != null) {
+					students.or(enrolled);
+				}
+			});
+		}
+		return students;
+	}
+
+	private RoaringBitmap students(int courseId) {
+		return studentsByCourse.computeIfAbsent(courseId, key -> new RoaringBitmap());
+	}
+
+	private void removeCourseName(String name, int courseId) {
+		RoaringBitmap courses = coursesByName.get(name);
+		if (courses != null) {
+			courses.remove(courseId);
+			if (courses.isEmpty()) {
+				coursesByName.remove(name);
+			}
+		}
+	}
+
+	private record CourseName(int id, String name) {
+	}
+
+	private record EnrollmentRow(int studentId, int courseId) {
+	}
+}
@@ -1,15 +1,43 @@
 package org.example.dao;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface Dao<T> {
+	int DEFAULT_FETCH_SIZE = 1000;
+	int ID_CHUNK_SIZE = 1000;
+
 	void save(T entity);
 
 	Optional<T> findByID(int id);
 
+	/**
+	 * Loads the entities with the given ids on one connection, binding up to {@value #ID_CHUNK_SIZE} ids per query.
+	 * The map is keyed by id in the order the ids were given; ids without a row are absent from it.
+	 */
+	Map<Integer, T> findAllByIds(Collection<Integer> ids);
+
 	List<T> findAll();
 
+	/**
+	 * Streams every row through a server-side cursor so the table is never held in memory at once.
+	 * The returned stream owns a pooled connection and must be closed by the caller.
+	 */
+	default Stream<T> streamAll() {
+		return streamAll(DEFAULT_FETCH_SIZE);
+	}
+
+	Stream<T> streamAll(int fetchSize);
+
+	/**
+	 * Returns up to {@code pageSize} entities with an id greater than {@code afterId}, ordered by id.
+	 * Pass {@link Page#FIRST_KEY} for the first page and {@link Page#nextKey()} for the following ones.
+	 */
+	Page<T> findPage(int afterId, int pageSize);
+
 	void update(T entity);
 
 	void delete(T entity);
@@ -0,0 +1,15 @@
+package org.example.dao;
+
+import java.util.List;
+
+/**
+ * Outcome of {@link StudentDao#enrollStudents}: the students newly enrolled in the course, those who already
+ * attended it, and the ids with no student. Each list keeps the order of the request and holds an id once.
+ */
+public record Enrollment(int courseId, List<Integer> accepted, List<Integer> duplicates, List<Integer> missing) {
+	public Enrollment {
+		accepted = List.copyOf(accepted);
+		duplicates = List.copyOf(duplicates);
+		missing = List.copyOf(missing);
+	}
+}
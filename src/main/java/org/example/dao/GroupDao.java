@@ -2,6 +2,8 @@ package org.example.dao;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.cache.ReadThroughCache;
+import org.example.cache.StudentCache;
 import org.example.exceptions.DbException;
 import org.example.model.Group;
 
@@ -11,13 +13,18 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class GroupDao implements Dao<Group> {
 	private static final String INSERT_GROUP = "INSERT INTO groups (group_id, group_name) VALUES (?, ?)";
 	private static final String SELECT_GROUP_BY_ID = "SELECT * FROM groups WHERE group_id = ?";
 	private static final String SELECT_ALL_GROUPS = "SELECT * FROM groups";
+	private static final String SELECT_GROUPS_BY_IDS = "SELECT * FROM groups WHERE group_id = ANY(?)";
+	private static final String SELECT_GROUPS_PAGE = "SELECT * FROM groups WHERE group_id > ? ORDER BY group_id LIMIT ?";
 	private static final String UPDATE_GROUP = "UPDATE groups SET group_name = ? WHERE group_id = ?";
 	private static final String DELETE_GROUP = "DELETE FROM groups WHERE group_id = ?";
 	private static final String SELECT_GROUPS_SQL =
@@ -29,22 +36,52 @@ public class GroupDao implements Dao<Group> {
 
 	private static final Logger log = LogManager.getLogger(GroupDao.class);
 	private final DataSource dbPool;
+	private final ReadThroughCache<Integer, Optional<Group>> cache;
+	private final GroupSizeIndex groupSizes;
+	private final StudentCache studentCache;
 
 	public GroupDao(DataSource dbPool) {
+		this(dbPool, null, null);
+	}
+
+	public GroupDao(DataSource dbPool, ReadThroughCache<Integer, Optional<Group>> cache) {
+		this(dbPool, cache, null);
+	}
+
+	public GroupDao(DataSource dbPool, ReadThroughCache<Integer, Optional<Group>> cache, GroupSizeIndex groupSizes) {
+		this(dbPool, cache, groupSizes, null);
+	}
+
+	/**
+	 * @param cache        optional read-through cache for {@link #findByID}; writes through this DAO invalidate it
+	 * @param groupSizes   optional group size index that answers {@link #findGroupsWithLessOrEqualStudents};
+	 *                     it must be shared with the {@link StudentDao} so that student writes reach it
+	 * @param studentCache optional cache of the {@link StudentDao}, whose students carry their group; renaming a
+	 *                     group clears it, since nothing in memory tracks which students a group has
+	 */
+	public GroupDao(DataSource dbPool, ReadThroughCache<Integer, Optional<Group>> cache, GroupSizeIndex groupSizes,
+					StudentCache studentCache) {
 		this.dbPool = dbPool;
+		this.cache = cache;
+		this.groupSizes = groupSizes;
+		this.studentCache = studentCache;
 	}
 
 	public List<Group> findGroupsWithLessOrEqualStudents(int maxStudents) throws SQLException {
+		if (groupSizes != null) {
+			return groupSizes.groupsWithAtMost(maxStudents);
+		}
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_GROUPS_SQL)) {
 			List<Group> groups = new ArrayList<>();
 
 			preparedStatement.setInt(1, maxStudents);
-			ResultSet resultSet = preparedStatement.executeQuery();
-			while (resultSet.next()) {
-				int groupId = resultSet.getInt("group_id");
-				String groupName = resultSet.getString("group_name");
-				groups.add(new Group(groupId, groupName));
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					int groupId = resultSet.getInt("group_id");
+					String groupName = resultSet.getString("group_name");
+					groups.add(new Group(groupId, groupName));
+				}
 			}
 			return groups;
 		}
@@ -53,29 +90,49 @@ public class GroupDao implements Dao<Group> {
 
 	@Override
 	public void save(Group group) {
+		beginGroupSizeChange();
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_GROUP)) {
 			preparedStatement.setInt(1, group.id());
 			preparedStatement.setString(2, group.name());
 			preparedStatement.executeUpdate();
+			if (groupSizes != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> groupSizes.putGroup(group));
+			}
 		} catch (SQLException e) {
 			log.error("Error while saving group to the database", e);
 			throw new DbException(e);
+		} finally {
+			invalidate(group.id());
+			endGroupSizeChange();
 		}
 	}
 
 	@Override
 	public Optional<Group> findByID(int id) {
+		if (cache == null) {
+			return loadByID(id);
+		}
+		if (!TransactionalDataSource.inUnitOfWork(dbPool)) {
+			return cache.get(id, this::loadByID);
+		}
+		Optional<Group> cached = cache.getIfPresent(id);
+		if (cached != null) {
+			return cached;
+		}
+		long stamp = cache.stamp();
+		Optional<Group> group = loadByID(id);
+		TransactionalDataSource.afterCommit(dbPool, () -> cache.putIfUnchanged(id, group, stamp));
+		return group;
+	}
+
+	private Optional<Group> loadByID(int id) {
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_GROUP_BY_ID)) {
 			preparedStatement.setInt(1, id);
 			try (ResultSet resultSet = preparedStatement.executeQuery()) {
 				if (resultSet.next()) {
-					Group group = new Group(
-							resultSet.getInt("group_id"),
-							resultSet.getString("group_name")
-					);
-					return Optional.of(group);
+					return Optional.of(mapGroup(resultSet));
 				} else {
 					return Optional.empty();
 				}
@@ -86,16 +143,19 @@ public class GroupDao implements Dao<Group> {
 		}
 	}
 
+	@Override
+	public Map<Integer, Group> findAllByIds(Collection<Integer> ids) {
+		return IdBatchQuery.findAllByIds(dbPool, SELECT_GROUPS_BY_IDS, ids, cache, GroupDao::mapGroup, Group::id);
+	}
+
 	@Override
 	public List<Group> findAll() {
 		List<Group> groups = new ArrayList<>();
 		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_GROUPS)) {
-			ResultSet resultSet = preparedStatement.executeQuery();
+			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_GROUPS);
+			 ResultSet resultSet = preparedStatement.executeQuery()) {
 			while (resultSet.next()) {
-				groups.add(new Group(
-						resultSet.getInt("group_id"),
-						resultSet.getString("group_name")));
+				groups.add(mapGroup(resultSet));
 			}
 			if (groups.isEmpty()) {
 				throw new DbException("Group not found");
@@ -108,28 +168,98 @@ public class GroupDao implements Dao<Group> {
 		}
 	}
 
+	@Override
+	public Stream<Group> streamAll(int fetchSize) {
+		return ResultSetStream.open(dbPool, SELECT_ALL_GROUPS, fetchSize, GroupDao::mapGroup);
+	}
+
+	@Override
+	public Page<Group> findPage(int afterId, int pageSize) {
+		List<Group> groups = new ArrayList<>();
+		try (Connection connection = dbPool.getConnection();
+			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_GROUPS_PAGE)) {
+			preparedStatement.setInt(1, afterId);
+			preparedStatement.setInt(2, pageSize + 1);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					groups.add(mapGroup(resultSet));
+				}
+			}
+			return Page.of(groups, pageSize, Group::id);
+		} catch (SQLException e) {
+			log.error("Error find groups page in the database", e);
+			throw new DbException(e);
+		}
+	}
+
 	@Override
 	public void update(Group group) {
+		beginGroupSizeChange();
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_GROUP)) {
 			preparedStatement.setString(1, group.name());
 			preparedStatement.setInt(2, group.id());
-			preparedStatement.executeUpdate();
+			int updated = preparedStatement.executeUpdate();
+			if (groupSizes != null && updated > 0) {
+				TransactionalDataSource.afterCommit(dbPool, () -> groupSizes.putGroup(group));
+			}
+			if (studentCache != null && updated > 0) {
+				TransactionalDataSource.afterCommit(dbPool, studentCache::invalidateAll);
+			}
 		} catch (SQLException e) {
 			log.error("Error update group in the database" + e);
 			throw new DbException(e);
+		} finally {
+			invalidate(group.id());
+			endGroupSizeChange();
 		}
 	}
 
 	@Override
 	public void delete(Group group) {
+		beginGroupSizeChange();
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(DELETE_GROUP)) {
 			preparedStatement.setInt(1, group.id());
 			preparedStatement.executeUpdate();
+			if (groupSizes != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> groupSizes.removeGroup(group.id()));
+			}
 		} catch (SQLException e) {
 			log.error("Error delete group in the database", e);
 			throw new DbException(e);
+		} finally {
+			invalidate(group.id());
+			endGroupSizeChange();
+		}
+	}
+
+	private void invalidate(int id) {
+		if (cache != null) {
+			TransactionalDataSource.afterCommit(dbPool, () -> cache.invalidate(id));
+		}
+	}
+
+	/**
+	 * Tells the group size index a write is coming, so that it does not reconcile against a commit it has
+	 * yet to apply; {@link #endGroupSizeChange} releases it once the transaction is over.
+	 */
+	private void beginGroupSizeChange() {
+		if (groupSizes != null) {
+			groupSizes.beginChange();
+		}
+	}
+
+	private void endGroupSizeChange() {
+		if (groupSizes != null) {
+			TransactionalDataSource.afterCompletion(dbPool, groupSizes::endChange);
 		}
 	}
+
+	private static Group mapGroup(ResultSet resultSet) throws SQLException {
+		return new Group(
+				resultSet.getInt("group_id"),
+				resultSet.getString("group_name")
+		);
+	}
 }
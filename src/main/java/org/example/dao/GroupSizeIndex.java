@@ -0,0 +1,191 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.exceptions.DbException;
+import org.example.model.Group;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Student count of every group, maintained incrementally so that "groups with at most N students" is a range
+ * scan over an ordered size-to-groups map instead of an aggregate over the whole {@code students} table.
+ * <p>
+ * The DAOs report every student insert, delete and group change. Writes made outside them are picked up by
+ * {@link #reconcile}, which compares the counters with the SQL aggregate and corrects any drift. A DAO write
+ * is bracketed by {@link #beginChange} and {@link #endChange}, so that reconciliation knows a change may be
+ * committed in the database before the index hears of it.
+ */
+public class GroupSizeIndex {
+	private static final String SELECT_GROUP_SIZES =
+			"SELECT groups.group_id, groups.group_name, COUNT(students.student_id) AS student_count " +
+					"FROM groups " +
+					"LEFT JOIN students ON groups.group_id = students.group_id " +
+					"GROUP BY groups.group_id, groups.group_name";
+
+	private static final Logger log = LogManager.getLogger(GroupSizeIndex.class);
+	private final Map<Integer, Group> groups = new HashMap<>();
+	private final Map<Integer, Integer> sizes = new HashMap<>();
+	private final NavigableMap<Integer, NavigableSet<Integer>> groupsBySize = new TreeMap<>();
+	private long modifications;
+	private int pendingChanges;
+
+	public static GroupSizeIndex load(DataSource dbPool) {
+		GroupSizeIndex index = new GroupSizeIndex();
+		index.reconcile(dbPool);
+		return index;
+	}
+
+	/**
+	 * Announces a write before it can commit. Every call must be followed by {@link #endChange} once the
+	 * write's transaction has ended and its update, if any, was applied here.
+	 */
+	public synchronized void beginChange() {
+		pendingChanges++;
+	}
+
+	public synchronized void endChange() {
+		pendingChanges--;
+	}
+
+	public synchronized void putGroup(Group group) {
+		modifications++;
+		groups.put(group.id(), group);
+		if (!sizes.containsKey(group.id())) {
+			setSize(group.id(), 0);
+		}
+	}
+
+	public synchronized void removeGroup(int groupId) {
+		modifications++;
+		groups.remove(groupId);
+		Integer size = sizes.remove(groupId);
+		if (size != null) {
+			removeFromSize(groupId, size);
+		}
+	}
+
+	public synchronized void studentAdded(int groupId) {
+		modifications++;
+		adjust(groupId, 1);
+	}
+
+	public synchronized void studentRemoved(int groupId) {
+		modifications++;
+		adjust(groupId, -1);
+	}
+
+	public synchronized void studentMoved(int fromGroupId, int toGroupId) {
+		if (fromGroupId != toGroupId) {
+			modifications++;
+			adjust(fromGroupId, -1);
+			adjust(toGroupId, 1);
+		}
+	}
+
+	/**
+	 * Groups with at most {@code maxStudents} students, smallest first.
+	 */
+	public synchronized List<Group> groupsWithAtMost(int maxStudents) {
+		List<Group> result = new ArrayList<>();
+		for (NavigableSet<Integer> groupIds : groupsBySize.headMap(maxStudents, true).values()) {
+			for (int groupId : groupIds) {
+				result.add(groups.get(groupId));
+			}
+		}
+		return result;
+	}
+
+	public synchronized int size(int groupId) {
+		return sizes.getOrDefault(groupId, 0);
+	}
+
+	/**
+	 * Replaces the counters with the SQL aggregate and returns how many groups had drifted. The snapshot is
+	 * discarded if the index was modified while it was being read, since it may already be older than the
+	 * counters, and while a write is in flight, since it may already include a change the index has yet to
+	 * apply; the next run will try again.
+	 */
+	public int reconcile(DataSource dbPool) {
+		long version;
+		synchronized (this) {
+			version = modifications;
+		}
+		Map<Integer, Group> actualGroups = new HashMap<>();
+		Map<Integer, Integer> actualSizes = new HashMap<>();
+		try (Connection connection = dbPool.getConnection();
+			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_GROUP_SIZES);
+			 ResultSet resultSet = preparedStatement.executeQuery()) {
+			while (resultSet.next()) {
+				int groupId = resultSet.getInt("group_id");
+				actualGroups.put(groupId, new Group(groupId, resultSet.getString("group_name")));
+				actualSizes.put(groupId, resultSet.getInt("student_count"));
+			}
+		} catch (SQLException e) {
+			log.error("Error reading group sizes from the database", e);
+			throw new DbException(e);
+		}
+		synchronized (this) {
+			if (modifications != version || pendingChanges > 0) {
+				log.debug("Skipping group size reconciliation, the index changed while it ran");
+				return 0;
+			}
+			int drifted = 0;
+			for (Map.Entry<Integer, Integer> entry : actualSizes.entrySet()) {
+				if (!entry.getValue().equals(sizes.get(entry.getKey()))) {
+					drifted++;
+				}
+			}
+			for (Integer groupId : sizes.keySet()) {
+				if (!actualSizes.containsKey(groupId)) {
+					drifted++;
+				}
+			}
+			if (drifted > 0 && !sizes.isEmpty()) {
+				log.warn("Corrected the student count of {} groups", drifted);
+			}
+			groups.clear();
+			groups.putAll(actualGroups);
+			sizes.clear();
+			groupsBySize.clear();
+			actualSizes.forEach(this::setSize);
+			return drifted;
+		}
+	}
+
+	private void adjust(int groupId, int delta) {
+		Integer size = sizes.get(groupId);
+		if (size == null) {
+			return;
+		}
+		removeFromSize(groupId, size);
+		setSize(groupId, Math.max(0, size + delta));
+	}
+
+	private void setSize(int groupId, int size) {
+		sizes.put(groupId, size);
+		groupsBySize.computeIfAbsent(size, key -> new TreeSet<>()).add(groupId);
+	}
+
+	private void removeFromSize(int groupId, int size) {
+		NavigableSet<Integer> groupIds = groupsBySize.get(size);
+		if (groupIds != null) {
+			groupIds.remove(groupId);
+			if (groupIds.isEmpty()) {
+				groupsBySize.remove(size);
+			}
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.cache.ReadThroughCache;
+import org.example.exceptions.DbException;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+
+/**
+ * Backs {@link Dao#findAllByIds} for entities that load from a single {@code ... WHERE id = ANY(?)} query.
+ * Ids already in the read-through cache are answered from it; the rest are bound as an integer array,
+ * {@value Dao#ID_CHUNK_SIZE} per query, on one connection, and the rows found are added to the cache unless it
+ * was invalidated meanwhile. Inside a unit of work they are added once it commits.
+ */
+final class IdBatchQuery {
+	private static final Logger log = LogManager.getLogger(IdBatchQuery.class);
+
+	private IdBatchQuery() {
+	}
+
+	static <T> Map<Integer, T> findAllByIds(DataSource dbPool, String sql, Collection<Integer> ids,
+											ReadThroughCache<Integer, Optional<T>> cache,
+											RowMapper<T> rowMapper, ToIntFunction<? super T> idOf) {
+		Map<Integer, T> found = new HashMap<>();
+		List<Integer> missing = new ArrayList<>();
+		for (Integer id : new LinkedHashSet<>(ids)) {
+			Optional<T> cached = cache == null ? null : cache.getIfPresent(id);
+			if (cached == null) {
+				missing.add(id);
+			} else {
+				cached.ifPresent(entity -> found.put(id, entity));
+			}
+		}
+		if (!missing.isEmpty()) {
+			long stamp = cache == null ? 0 : cache.stamp();
+			List<T> loaded = new ArrayList<>();
+			try (Connection connection = dbPool.getConnection();
+				 PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+				for (int from = 0; from < missing.size(); from += Dao.ID_CHUNK_SIZE) {
+					List<Integer> chunk = missing.subList(from, Math.min(from + Dao.ID_CHUNK_SIZE, missing.size()));
+					Array idArray = connection.createArrayOf("integer", chunk.toArray());
+					preparedStatement.setArray(1, idArray);
+					try (ResultSet resultSet = preparedStatement.executeQuery()) {
+						while (resultSet.next()) {
+							T entity = rowMapper.map(resultSet);
+							found.put(idOf.applyAsInt(entity), entity);
+							loaded.add(entity);
+						}
+					}
+				}
+			} catch (SQLException e) {
+				log.error("Error finding rows by ids: {}", e.getMessage(), e);
+				throw new DbException(e);
+			}
+			if (cache != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> loaded.forEach(
+						entity -> cache.putIfUnchanged(idOf.applyAsInt(entity), Optional.of(entity), stamp)));
+			}
+		}
+		return inRequestOrder(ids, found);
+	}
+
+	/**
+	 * Orders the entities found by the first occurrence of their id in the request.
+	 */
+	static <T> Map<Integer, T> inRequestOrder(Collection<Integer> ids, Map<Integer, T> found) {
+		Map<Integer, T> result = new LinkedHashMap<>();
+		for (Integer id : ids) {
+			T entity = found.get(id);
+			if (entity != null) {
+				result.putIfAbsent(id, entity);
+			}
+		}
+		return result;
+	}
+}
@@ -0,0 +1,145 @@
+package org.example.dao;
+
+import org.example.metrics.CommandTrace;
+import org.example.metrics.ConnectionAcquireEvent;
+import org.example.metrics.QueryStats;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * Times every execution of the prepared statements handed out by the wrapped data source and records it in
+ * {@link QueryStats} under the statement's SQL, along with the rows its result set returns or its update
+ * changes and whether it failed. The time covers the execute call, which for pgjdbc includes fetching the
+ * rows unless a fetch size is set. Statements and result sets are wrapped in plain delegating classes, so
+ * binding parameters and reading rows cost no reflection or allocation.
+ * <p>
+ * Connections, statements, executions and rows are also counted in the {@link CommandTrace} open on the
+ * calling thread, if any.
+ * <p>
+ * With a {@link SlowQueryLog}, statements keep their bound parameters, and executions at or above its
+ * threshold are logged once their rows are known. For updates that is when the execute call returns; for
+ * queries it is when the result set is closed, the statement runs again or the statement is closed,
+ * whichever comes first, so a result set left open is still logged when its statement closes. Failed
+ * executions are logged when they fail.
+ * <p>
+ * Connection waits and executions are recorded as {@link ConnectionAcquireEvent} and
+ * {@link org.example.metrics.QueryEvent} when Flight Recorder is on, and the rows read from a query's result set
+ * as a {@link org.example.metrics.QueryRowsEvent} once they are known.
+ */
+public class InstrumentedDataSource implements DataSource {
+	private final DataSource dbPool;
+	private final QueryStats stats;
+	private final SlowQueryLog slowQueries;
+
+	public InstrumentedDataSource(DataSource dbPool, QueryStats stats) {
+		this(dbPool, stats, null);
+	}
+
+	/**
+	 * @param slowQueries where slow and failed executions are logged, or {@code null} to log none
+	 */
+	public InstrumentedDataSource(DataSource dbPool, QueryStats stats, SlowQueryLog slowQueries) {
+		this.dbPool = dbPool;
+		this.stats = stats;
+		this.slowQueries = slowQueries;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return instrumented(acquire(dbPool::getConnection));
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return instrumented(acquire(() -> dbPool.getConnection(username, password)));
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return dbPool.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		dbPool.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		dbPool.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return dbPool.getLoginTimeout();
+	}
+
+	@Override
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return dbPool.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return iface.isInstance(this) ? iface.cast(this) : dbPool.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || dbPool.isWrapperFor(iface);
+	}
+
+	private static Connection acquire(ConnectionSupplier pool) throws SQLException {
+		ConnectionAcquireEvent event = new ConnectionAcquireEvent();
+		event.begin();
+		Connection connection = null;
+		try {
+			connection = pool.get();
+			return connection;
+		} finally {
+			event.finish(connection != null);
+		}
+	}
+
+	private Connection instrumented(Connection connection) {
+		CommandTrace acquiredIn = CommandTrace.current();
+		if (acquiredIn != null) {
+			acquiredIn.connectionAcquired();
+		}
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[]{Connection.class},
+				(proxy, method, args) -> {
+					Object result = invoke(connection, method, args);
+					if (method.getName().equals("prepareStatement")) {
+						CommandTrace trace = CommandTrace.current();
+						if (trace != null) {
+							trace.statementPrepared();
+						}
+						String sql = (String) args[0];
+						return new InstrumentedPreparedStatement((PreparedStatement) result, sql, stats.query(sql), trace, slowQueries);
+					}
+					return result;
+				});
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	private interface ConnectionSupplier {
+		Connection get() throws SQLException;
+	}
+}
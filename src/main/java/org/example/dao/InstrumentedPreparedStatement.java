@@ -0,0 +1,730 @@
+package org.example.dao;
+
+import org.example.metrics.CommandTrace;
+import org.example.metrics.QueryEvent;
+import org.example.metrics.QueryRowsEvent;
+import org.example.metrics.QueryStats;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+/**
+ * A prepared statement handed out by {@link InstrumentedDataSource}: times its executions and records them in
+ * {@link QueryStats}, the open {@link CommandTrace} and, when they are slow or fail, the {@link SlowQueryLog}.
+ * Rows read from a query's result set are counted by {@link InstrumentedResultSet} and recorded once the result
+ * set is closed, the statement runs again or the statement is closed.
+ * <p>
+ * Bound parameters are only kept when there is a slow-query log to show them in. Primitives are kept as bits
+ * next to a type tag and boxed only when an entry is logged, so binding them allocates nothing. Whether an array
+ * is bound is always tracked, since the trace does not count such executions as N+1 repetitions.
+ */
+final class InstrumentedPreparedStatement extends DelegatingPreparedStatement {
+	private static final Object[] NO_PARAMETERS = {};
+	private static final long[] NO_PRIMITIVES = {};
+	private static final byte[] NO_TYPES = {};
+	private static final int MIN_PARAMETERS = 8;
+	private static final byte REFERENCE = 0;
+	private static final byte BOOLEAN = 1;
+	private static final byte BYTE = 2;
+	private static final byte SHORT = 3;
+	private static final byte INT = 4;
+	private static final byte LONG = 5;
+	private static final byte FLOAT = 6;
+	private static final byte DOUBLE = 7;
+
+	private final String sql;
+	private final QueryStats.Query query;
+	private final CommandTrace trace;
+	private final SlowQueryLog slowQueries;
+	private Object[] parameters;
+	private long[] primitives;
+	private byte[] types;
+	private int parameterCount;
+	private boolean arrayBound;
+	private InstrumentedResultSet result;
+	private long resultNanos;
+	private List<Object> slowResultParameters;
+
+	/**
+	 * @param trace       the trace open when the statement was prepared, or {@code null}
+	 * @param slowQueries where slow and failed executions are logged, or {@code null}
+	 */
+	InstrumentedPreparedStatement(PreparedStatement delegate, String sql, QueryStats.Query query, CommandTrace trace,
+								  SlowQueryLog slowQueries) {
+		super(delegate);
+		this.sql = sql;
+		this.query = query;
+		this.trace = trace;
+		this.slowQueries = slowQueries;
+		this.parameters = slowQueries == null ? null : NO_PARAMETERS;
+		this.primitives = NO_PRIMITIVES;
+		this.types = NO_TYPES;
+	}
+
+	@Override
+	public ResultSet executeQuery() throws SQLException {
+		finishResult();
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long start = System.nanoTime();
+		ResultSet resultSet;
+		try {
+			resultSet = delegate.executeQuery();
+		} catch (SQLException | RuntimeException e) {
+			failed(event, start, e);
+			throw e;
+		}
+		long elapsed = System.nanoTime() - start;
+		event.finish(query.name(), 0, false);
+		recordSuccess(elapsed, 0);
+		resultNanos = elapsed;
+		slowResultParameters = slowQueries != null && slowQueries.isSlow(elapsed) ? boundParameters() : null;
+		result = new InstrumentedResultSet(resultSet, this);
+		return result;
+	}
+
+	@Override
+	public int executeUpdate() throws SQLException {
+		finishResult();
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long start = System.nanoTime();
+		int rows;
+		try {
+			rows = delegate.executeUpdate();
+		} catch (SQLException | RuntimeException e) {
+			failed(event, start, e);
+			throw e;
+		}
+		executed(event, start, rows);
+		return rows;
+	}
+
+	@Override
+	public long executeLargeUpdate() throws SQLException {
+		finishResult();
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long start = System.nanoTime();
+		long rows;
+		try {
+			rows = delegate.executeLargeUpdate();
+		} catch (SQLException | RuntimeException e) {
+			failed(event, start, e);
+			throw e;
+		}
+		executed(event, start, rows);
+		return rows;
+	}
+
+	@Override
+	public boolean execute() throws SQLException {
+		finishResult();
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long start = System.nanoTime();
+		boolean hasResultSet;
+		try {
+			hasResultSet = delegate.execute();
+		} catch (SQLException | RuntimeException e) {
+			failed(event, start, e);
+			throw e;
+		}
+		executed(event, start, 0);
+		return hasResultSet;
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		finishResult();
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long start = System.nanoTime();
+		int[] counts;
+		try {
+			counts = delegate.executeBatch();
+		} catch (SQLException | RuntimeException e) {
+			failed(event, start, e);
+			throw e;
+		}
+		// counts can be Statement.SUCCESS_NO_INFO; only the known ones are added
+		long rows = 0;
+		for (int count : counts) {
+			rows += Math.max(0, count);
+		}
+		executed(event, start, rows);
+		return counts;
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		finishResult();
+		QueryEvent event = new QueryEvent();
+		event.begin();
+		long start = System.nanoTime();
+		long[] counts;
+		try {
+			counts = delegate.executeLargeBatch();
+		} catch (SQLException | RuntimeException e) {
+			failed(event, start, e);
+			throw e;
+		}
+		long rows = 0;
+		for (long count : counts) {
+			rows += Math.max(0, count);
+		}
+		executed(event, start, rows);
+		return counts;
+	}
+
+	/**
+	 * Closing a statement closes its result set, but a statement the statement cache keeps open does not, so
+	 * the rows of an unclosed result set are recorded here.
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			finishResult();
+		} finally {
+			delegate.close();
+		}
+	}
+
+	@Override
+	public void clearParameters() throws SQLException {
+		delegate.clearParameters();
+		arrayBound = false;
+		if (parameters != null) {
+			Arrays.fill(parameters, null);
+			Arrays.fill(types, REFERENCE);
+			parameterCount = 0;
+		}
+	}
+
+	/**
+	 * Records the rows read from a result set of this statement.
+	 */
+	void resultFinished(long rows) {
+		result = null;
+		query.addRows(rows);
+		if (trace != null) {
+			trace.rowsRead(query, rows);
+		}
+		QueryRowsEvent.emit(query.name(), rows);
+		if (slowResultParameters != null) {
+			slowQueries.slow(query.name(), sql, slowResultParameters, resultNanos, rows);
+			slowResultParameters = null;
+		}
+	}
+
+	private void finishResult() {
+		if (result != null) {
+			result.finish();
+		}
+	}
+
+	private void recordSuccess(long elapsed, long rows) {
+		query.recordSuccess(elapsed, rows);
+		if (trace != null) {
+			trace.executed(query, rows, arrayBound);
+		}
+	}
+
+	private void executed(QueryEvent event, long start, long rows) {
+		long elapsed = System.nanoTime() - start;
+		event.finish(query.name(), rows, false);
+		recordSuccess(elapsed, rows);
+		if (slowQueries != null && slowQueries.isSlow(elapsed)) {
+			slowQueries.slow(query.name(), sql, boundParameters(), elapsed, rows);
+		}
+	}
+
+	private void failed(QueryEvent event, long start, Exception failure) {
+		long elapsed = System.nanoTime() - start;
+		event.finish(query.name(), 0, true);
+		query.recordError(elapsed);
+		if (slowQueries != null) {
+			slowQueries.failed(query.name(), boundParameters(), elapsed, failure);
+		}
+	}
+
+	private List<Object> boundParameters() {
+		Object[] values = new Object[parameterCount];
+		for (int i = 0; i < parameterCount; i++) {
+			long bits = primitives[i];
+			values[i] = switch (types[i]) {
+				case BOOLEAN -> bits != 0;
+				case BYTE -> (byte) bits;
+				case SHORT -> (short) bits;
+				case INT -> (int) bits;
+				case LONG -> bits;
+				case FLOAT -> Float.intBitsToFloat((int) bits);
+				case DOUBLE -> Double.longBitsToDouble(bits);
+				default -> parameters[i];
+			};
+		}
+		return Arrays.asList(values);
+	}
+
+	private static boolean isArray(Object value) {
+		return value instanceof Array || value instanceof Object[] || value instanceof int[] || value instanceof long[];
+	}
+
+	private void bind(int parameterIndex, Object value) {
+		if (slot(parameterIndex)) {
+			parameters[parameterIndex - 1] = value;
+			types[parameterIndex - 1] = REFERENCE;
+		}
+	}
+
+	private void bind(int parameterIndex, long bits, byte type) {
+		if (slot(parameterIndex)) {
+			parameters[parameterIndex - 1] = null;
+			primitives[parameterIndex - 1] = bits;
+			types[parameterIndex - 1] = type;
+		}
+	}
+
+	/**
+	 * Makes room for the parameter; an invalid index was already rejected by the driver, if it checks at all.
+	 */
+	private boolean slot(int parameterIndex) {
+		if (parameterIndex < 1) {
+			return false;
+		}
+		if (parameterIndex > parameters.length) {
+			int length = Math.max(parameterIndex, Math.max(MIN_PARAMETERS, 2 * parameters.length));
+			parameters = Arrays.copyOf(parameters, length);
+			primitives = Arrays.copyOf(primitives, length);
+			types = Arrays.copyOf(types, length);
+		}
+		parameterCount = Math.max(parameterCount, parameterIndex);
+		return true;
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType) throws SQLException {
+		delegate.setNull(parameterIndex, sqlType);
+		if (parameters != null) {
+			bind(parameterIndex, null);
+		}
+	}
+
+	@Override
+	public void setBoolean(int parameterIndex, boolean x) throws SQLException {
+		delegate.setBoolean(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x ? 1 : 0, BOOLEAN);
+		}
+	}
+
+	@Override
+	public void setByte(int parameterIndex, byte x) throws SQLException {
+		delegate.setByte(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x, BYTE);
+		}
+	}
+
+	@Override
+	public void setShort(int parameterIndex, short x) throws SQLException {
+		delegate.setShort(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x, SHORT);
+		}
+	}
+
+	@Override
+	public void setInt(int parameterIndex, int x) throws SQLException {
+		delegate.setInt(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x, INT);
+		}
+	}
+
+	@Override
+	public void setLong(int parameterIndex, long x) throws SQLException {
+		delegate.setLong(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x, LONG);
+		}
+	}
+
+	@Override
+	public void setFloat(int parameterIndex, float x) throws SQLException {
+		delegate.setFloat(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, Float.floatToRawIntBits(x), FLOAT);
+		}
+	}
+
+	@Override
+	public void setDouble(int parameterIndex, double x) throws SQLException {
+		delegate.setDouble(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, Double.doubleToRawLongBits(x), DOUBLE);
+		}
+	}
+
+	@Override
+	public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
+		delegate.setBigDecimal(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setString(int parameterIndex, String x) throws SQLException {
+		delegate.setString(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setBytes(int parameterIndex, byte[] x) throws SQLException {
+		delegate.setBytes(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setDate(int parameterIndex, Date x) throws SQLException {
+		delegate.setDate(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setTime(int parameterIndex, Time x) throws SQLException {
+		delegate.setTime(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
+		delegate.setTimestamp(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		delegate.setAsciiStream(parameterIndex, x, length);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Deprecated
+	@Override
+	public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		delegate.setUnicodeStream(parameterIndex, x, length);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
+		delegate.setBinaryStream(parameterIndex, x, length);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
+		delegate.setObject(parameterIndex, x, targetSqlType);
+		arrayBound |= isArray(x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x) throws SQLException {
+		delegate.setObject(parameterIndex, x);
+		arrayBound |= isArray(x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
+		delegate.setCharacterStream(parameterIndex, reader, length);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setRef(int parameterIndex, Ref x) throws SQLException {
+		delegate.setRef(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, Blob x) throws SQLException {
+		delegate.setBlob(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Clob x) throws SQLException {
+		delegate.setClob(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setArray(int parameterIndex, Array x) throws SQLException {
+		delegate.setArray(parameterIndex, x);
+		arrayBound = true;
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+		delegate.setDate(parameterIndex, x, cal);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+		delegate.setTime(parameterIndex, x, cal);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+		delegate.setTimestamp(parameterIndex, x, cal);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
+		delegate.setNull(parameterIndex, sqlType, typeName);
+		if (parameters != null) {
+			bind(parameterIndex, null);
+		}
+	}
+
+	@Override
+	public void setURL(int parameterIndex, URL x) throws SQLException {
+		delegate.setURL(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setRowId(int parameterIndex, RowId x) throws SQLException {
+		delegate.setRowId(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setNString(int parameterIndex, String value) throws SQLException {
+		delegate.setNString(parameterIndex, value);
+		if (parameters != null) {
+			bind(parameterIndex, value);
+		}
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
+		delegate.setNCharacterStream(parameterIndex, value, length);
+		if (parameters != null) {
+			bind(parameterIndex, value);
+		}
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, NClob value) throws SQLException {
+		delegate.setNClob(parameterIndex, value);
+		if (parameters != null) {
+			bind(parameterIndex, value);
+		}
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		delegate.setClob(parameterIndex, reader, length);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
+		delegate.setBlob(parameterIndex, inputStream, length);
+		if (parameters != null) {
+			bind(parameterIndex, inputStream);
+		}
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
+		delegate.setNClob(parameterIndex, reader, length);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
+		delegate.setSQLXML(parameterIndex, xmlObject);
+		if (parameters != null) {
+			bind(parameterIndex, xmlObject);
+		}
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
+		delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		arrayBound |= isArray(x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		delegate.setAsciiStream(parameterIndex, x, length);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
+		delegate.setBinaryStream(parameterIndex, x, length);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
+		delegate.setCharacterStream(parameterIndex, reader, length);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
+		delegate.setAsciiStream(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
+		delegate.setBinaryStream(parameterIndex, x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
+		delegate.setCharacterStream(parameterIndex, reader);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
+		delegate.setNCharacterStream(parameterIndex, value);
+		if (parameters != null) {
+			bind(parameterIndex, value);
+		}
+	}
+
+	@Override
+	public void setClob(int parameterIndex, Reader reader) throws SQLException {
+		delegate.setClob(parameterIndex, reader);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
+		delegate.setBlob(parameterIndex, inputStream);
+		if (parameters != null) {
+			bind(parameterIndex, inputStream);
+		}
+	}
+
+	@Override
+	public void setNClob(int parameterIndex, Reader reader) throws SQLException {
+		delegate.setNClob(parameterIndex, reader);
+		if (parameters != null) {
+			bind(parameterIndex, reader);
+		}
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+		delegate.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+		arrayBound |= isArray(x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+
+	@Override
+	public void setObject(int parameterIndex, Object x, SQLType targetSqlType) throws SQLException {
+		delegate.setObject(parameterIndex, x, targetSqlType);
+		arrayBound |= isArray(x);
+		if (parameters != null) {
+			bind(parameterIndex, x);
+		}
+	}
+}
@@ -0,0 +1,50 @@
+package org.example.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Counts the rows read from a query's result set and hands the count to its statement once, when the result
+ * set is closed or the statement finishes it.
+ */
+final class InstrumentedResultSet extends DelegatingResultSet {
+	private final InstrumentedPreparedStatement statement;
+	private long rows;
+	private boolean finished;
+
+	InstrumentedResultSet(ResultSet delegate, InstrumentedPreparedStatement statement) {
+		super(delegate);
+		this.statement = statement;
+	}
+
+	@Override
+	public boolean next() throws SQLException {
+		boolean hasRow = delegate.next();
+		if (hasRow) {
+			rows++;
+		}
+		return hasRow;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		try {
+			delegate.close();
+		} finally {
+			finish();
+		}
+	}
+
+	@Override
+	public Statement getStatement() {
+		return statement;
+	}
+
+	void finish() {
+		if (!finished) {
+			finished = true;
+			statement.resultFinished(rows);
+		}
+	}
+}
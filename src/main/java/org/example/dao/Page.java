@@ -0,0 +1,19 @@
+package org.example.dao;
+
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * One slice of a keyset (seek) pagination. The next page is requested with {@link #nextKey()},
+ * so every page is an index range scan on the primary key instead of an OFFSET scan.
+ */
+public record Page<T>(List<T> items, int nextKey, boolean hasNext) {
+	public static final int FIRST_KEY = 0;
+
+	static <T> Page<T> of(List<T> rows, int pageSize, ToIntFunction<T> key) {
+		boolean hasNext = rows.size() > pageSize;
+		List<T> items = hasNext ? rows.subList(0, pageSize) : rows;
+		int nextKey = items.isEmpty() ? FIRST_KEY : key.applyAsInt(items.get(items.size() - 1));
+		return new Page<>(List.copyOf(items), nextKey, hasNext);
+	}
+}
@@ -0,0 +1,122 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.exceptions.DbException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lazily maps the rows of a server-side cursor onto a {@link Stream}.
+ * <p>
+ * PostgreSQL only honours the fetch size while autocommit is off, so the connection is kept
+ * in a read transaction until the stream is closed. Callers must close the stream, preferably
+ * with try-with-resources, to return the connection to the pool.
+ */
+final class ResultSetStream<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+	private static final Logger log = LogManager.getLogger(ResultSetStream.class);
+
+	private final Connection connection;
+	private final boolean autoCommit;
+	private final PreparedStatement preparedStatement;
+	private final ResultSet resultSet;
+	private final RowMapper<T> rowMapper;
+	private boolean closed;
+
+	private ResultSetStream(Connection connection, boolean autoCommit, PreparedStatement preparedStatement,
+							ResultSet resultSet, RowMapper<T> rowMapper) {
+		super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+		this.connection = connection;
+		this.autoCommit = autoCommit;
+		this.preparedStatement = preparedStatement;
+		this.resultSet = resultSet;
+		this.rowMapper = rowMapper;
+	}
+
+	static <T> Stream<T> open(DataSource dbPool, String sql, int fetchSize, RowMapper<T> rowMapper) {
+		if (fetchSize <= 0) {
+			throw new IllegalArgumentException("Fetch size must be positive: " + fetchSize);
+		}
+		Connection connection = null;
+		PreparedStatement preparedStatement = null;
+		boolean autoCommit = true;
+		try {
+			connection = dbPool.getConnection();
+			autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			preparedStatement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			preparedStatement.setFetchSize(fetchSize);
+			ResultSet resultSet = preparedStatement.executeQuery();
+			ResultSetStream<T> cursor = new ResultSetStream<>(connection, autoCommit, preparedStatement, resultSet, rowMapper);
+			return StreamSupport.stream(cursor, false).onClose(cursor::close);
+		} catch (SQLException e) {
+			log.error("Error opening cursor in the database", e);
+			closeQuietly(connection, autoCommit, preparedStatement);
+			throw new DbException(e);
+		}
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if (closed) {
+			return false;
+		}
+		try {
+			if (resultSet.next()) {
+				action.accept(rowMapper.map(resultSet));
+				return true;
+			}
+			return false;
+		} catch (SQLException e) {
+			log.error("Error reading cursor from the database", e);
+			throw new DbException(e);
+		}
+	}
+
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			resultSet.close();
+			preparedStatement.close();
+			connection.commit();
+			connection.setAutoCommit(autoCommit);
+		} catch (SQLException e) {
+			log.error("Error closing cursor in the database", e);
+			throw new DbException(e);
+		} finally {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				log.warn("Error releasing cursor connection", e);
+			}
+		}
+	}
+
+	private static void closeQuietly(Connection connection, boolean autoCommit, PreparedStatement preparedStatement) {
+		try {
+			if (preparedStatement != null) {
+				preparedStatement.close();
+			}
+			if (connection != null) {
+				connection.rollback();
+				connection.setAutoCommit(autoCommit);
+				connection.close();
+			}
+		} catch (SQLException e) {
+			log.warn("Error releasing cursor connection", e);
+		}
+	}
+}
@@ -0,0 +1,9 @@
+package org.example.dao;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@FunctionalInterface
+interface RowMapper<T> {
+	T map(ResultSet resultSet) throws SQLException;
+}
@@ -0,0 +1,213 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.metrics.Metrics;
+import org.postgresql.PGConnection;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Logs every statement that runs for at least the threshold, and every failed one, with its name, bound
+ * parameters, duration and rows. The entries go to this class's logger, which {@code log4j2.properties} sends
+ * through a non-blocking asynchronous appender to a rolling file, so a slow disk drops entries instead of
+ * holding up the query that caused them.
+ * <p>
+ * On PostgreSQL a slow {@code SELECT} is also run again under {@code EXPLAIN (ANALYZE, BUFFERS)} on a
+ * connection of its own, on a background thread and at most once per {@code explainInterval} per statement,
+ * and the plan is logged after the entry. Plans that cannot be queued right away are skipped.
+ */
+public class SlowQueryLog implements AutoCloseable {
+	private static final int MAX_PARAMETER_LENGTH = 100;
+	private static final int PENDING_PLANS = 16;
+
+	private static final Logger log = LogManager.getLogger(SlowQueryLog.class);
+	private final DataSource explainSource;
+	private final Options options;
+	private final long thresholdNanos;
+	private final Map<String, Long> lastExplainedAt = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor explainer;
+	private final LongAdder logged = new LongAdder();
+	private final LongAdder explained = new LongAdder();
+	private volatile boolean explainSupported = true;
+
+	/**
+	 * @param explainSource the pool plans are captured on, or {@code null} to never capture plans
+	 */
+	public SlowQueryLog(DataSource explainSource, Options options) {
+		this.explainSource = explainSource;
+		this.options = options;
+		this.thresholdNanos = options.threshold().toNanos();
+		this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(PENDING_PLANS),
+				runnable -> {
+					Thread thread = new Thread(runnable, "slow-query-explain");
+					thread.setDaemon(true);
+					return thread;
+				},
+				new ThreadPoolExecutor.DiscardPolicy());
+	}
+
+	public boolean isSlow(long nanos) {
+		return nanos >= thresholdNanos;
+	}
+
+	/**
+	 * Logs a statement that ran for at least the threshold.
+	 */
+	public void slow(String name, String sql, List<Object> parameters, long nanos, long rows) {
+		logged.increment();
+		log.warn("{} took {} ms for {} rows, parameters [{}]", name, format(Metrics.millis(nanos)), rows,
+				describe(parameters, options.hideParameters()));
+		if (explainSource != null && explainSupported && isSelect(sql) && claimExplain(sql)) {
+			explainer.execute(() -> explain(name, sql, parameters));
+		}
+	}
+
+	/**
+	 * Logs a statement that failed, however long it ran.
+	 */
+	public void failed(String name, List<Object> parameters, long nanos, Throwable failure) {
+		logged.increment();
+		log.error("{} failed after {} ms, parameters [{}]: {}", name, format(Metrics.millis(nanos)),
+				describe(parameters, options.hideParameters()), failure.getMessage());
+	}
+
+	/**
+	 * Statements logged so far.
+	 */
+	public long logged() {
+		return logged.sum();
+	}
+
+	/**
+	 * Plans captured so far.
+	 */
+	public long explained() {
+		return explained.sum();
+	}
+
+	@Override
+	public void close() {
+		explainer.shutdownNow();
+	}
+
+	/**
+	 * The parameters as {@code 1=42, 2='Math'}, values cut to {@value #MAX_PARAMETER_LENGTH} characters, or only
+	 * their positions when hidden.
+	 */
+	static String describe(List<Object> parameters, boolean hidden) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < parameters.size(); i++) {
+			if (i > 0) {
+				text.append(", ");
+			}
+			text.append(i + 1).append('=');
+			Object value = parameters.get(i);
+			if (hidden) {
+				text.append('?');
+			} else if (value instanceof CharSequence) {
+				text.append('\'').append(truncated(value.toString())).append('\'');
+			} else {
+				text.append(truncated(String.valueOf(value)));
+			}
+		}
+		return text.toString();
+	}
+
+	private static String truncated(String value) {
+		return value.length() <= MAX_PARAMETER_LENGTH ? value : value.substring(0, MAX_PARAMETER_LENGTH - 3) + "...";
+	}
+
+	private static String format(double millis) {
+		return String.format(Locale.ROOT, "%.3f", millis);
+	}
+
+	/**
+	 * Only queries are explained: {@code ANALYZE} runs the statement again, which must not repeat a change.
+	 */
+	private static boolean isSelect(String sql) {
+		String text = sql.stripLeading().toUpperCase(Locale.ROOT);
+		return text.startsWith("SELECT")
+				|| (text.startsWith("WITH") && !text.contains("INSERT") && !text.contains("UPDATE") && !text.contains("DELETE"));
+	}
+
+	private boolean claimExplain(String sql) {
+		long interval = options.explainInterval().toNanos();
+		if (interval == 0) {
+			return false;
+		}
+		long now = System.nanoTime();
+		boolean[] claimed = new boolean[1];
+		lastExplainedAt.compute(sql, (key, last) -> {
+			claimed[0] = last == null || now - last >= interval;
+			return claimed[0] ? now : last;
+		});
+		return claimed[0];
+	}
+
+	private void explain(String name, String sql, List<Object> parameters) {
+		try (Connection connection = explainSource.getConnection()) {
+			if (!connection.isWrapperFor(PGConnection.class)) {
+				explainSupported = false;
+				return;
+			}
+			connection.setAutoCommit(false);
+			try (PreparedStatement preparedStatement = connection.prepareStatement("EXPLAIN (ANALYZE, BUFFERS) " + sql)) {
+				for (int i = 0; i < parameters.size(); i++) {
+					preparedStatement.setObject(i + 1, parameters.get(i));
+				}
+				StringBuilder plan = new StringBuilder();
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						plan.append(System.lineSeparator()).append("  ").append(resultSet.getString(1));
+					}
+				}
+				explained.increment();
+				log.warn("Plan of {}:{}", name, plan);
+			} finally {
+				connection.rollback();
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException | RuntimeException e) {
+			log.warn("Could not explain {}: {}", name, e.getMessage());
+		}
+	}
+
+	/**
+	 * Settings of the slow-query log, read from {@code -Dslowquery.*} system properties.
+	 *
+	 * @param threshold       statements running at least this long are logged
+	 * @param hideParameters  log only the positions of bound parameters, not their values
+	 * @param explainInterval least time between two plans of the same statement; zero captures none
+	 */
+	public record Options(Duration threshold, boolean hideParameters, Duration explainInterval) {
+		public static final long DEFAULT_THRESHOLD_MILLIS = 200;
+		public static final long DEFAULT_EXPLAIN_INTERVAL_SECONDS = 60;
+
+		public Options {
+			if (threshold.isNegative() || explainInterval.isNegative()) {
+				throw new IllegalArgumentException("Durations must not be negative: " + threshold + ", " + explainInterval);
+			}
+		}
+
+		public static Options fromSystemProperties() {
+			return new Options(Duration.ofMillis(Long.getLong("slowquery.thresholdMillis", DEFAULT_THRESHOLD_MILLIS)),
+					Boolean.getBoolean("slowquery.hideParameters"),
+					Duration.ofSeconds(Long.getLong("slowquery.explainSeconds", DEFAULT_EXPLAIN_INTERVAL_SECONDS)));
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.cache.CacheStats;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps the statements prepared with {@link Connection#prepareStatement(String)} open on the physical connection
+ * behind each pooled one, keyed by their SQL. A DAO that prepares the same SQL constant again, on any later
+ * checkout of that connection, gets the open statement back: the driver skips parsing it, and the statement
+ * keeps counting towards pgjdbc's {@code prepareThreshold} so repeated commands end up on a server-side
+ * prepared plan. Closing a cached statement only clears its parameters.
+ * <p>
+ * Each physical connection holds at most {@code statementsPerConnection} statements, least recently used
+ * first out. The statements of a connection the pool has retired are dropped at the next checkout. A statement
+ * that is still open when the same SQL is prepared again, or prepared with other arguments, is not cached.
+ * <p>
+ * Cached statements run on the physical connection, out of the pool's sight, so a pool that rolls back only
+ * connections it saw execute something, like Hikari, never rolls back their work. Closing a connection that is
+ * still out of autocommit mode therefore rolls it back here first; the DAOs and
+ * {@link TransactionalDataSource} commit and restore autocommit before they close a connection.
+ */
+public class StatementCachingDataSource implements DataSource {
+	public static final int DEFAULT_STATEMENTS_PER_CONNECTION = 64;
+
+	private static final Logger log = LogManager.getLogger(StatementCachingDataSource.class);
+	private final DataSource dbPool;
+	private final int statementsPerConnection;
+	private final Map<Connection, Statements> statementsByConnection = new ConcurrentHashMap<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public StatementCachingDataSource(DataSource dbPool) {
+		this(dbPool, DEFAULT_STATEMENTS_PER_CONNECTION);
+	}
+
+	public StatementCachingDataSource(DataSource dbPool, int statementsPerConnection) {
+		if (statementsPerConnection <= 0) {
+			throw new IllegalArgumentException("Statements per connection must be positive: " + statementsPerConnection);
+		}
+		this.dbPool = dbPool;
+		this.statementsPerConnection = statementsPerConnection;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return caching(dbPool.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return caching(dbPool.getConnection(username, password));
+	}
+
+	/**
+	 * {@code loads} counts the statements actually prepared, {@code size} the statements held open.
+	 */
+	public CacheStats stats() {
+		long size = statementsByConnection.values().stream().mapToLong(Statements::size).sum();
+		return new CacheStats("statements", hits.sum(), misses.sum(), misses.sum(), evictions.sum(), size);
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return dbPool.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		dbPool.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		dbPool.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return dbPool.getLoginTimeout();
+	}
+
+	@Override
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return dbPool.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return iface.isInstance(this) ? iface.cast(this) : dbPool.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || dbPool.isWrapperFor(iface);
+	}
+
+	/**
+	 * Statements are prepared on the physical connection, since a pool closes the statements of its proxy
+	 * connections when they are returned.
+	 */
+	private Connection caching(Connection connection) throws SQLException {
+		evictRetiredConnections();
+		Connection physical = connection.unwrap(Connection.class);
+		Statements statements = statementsByConnection.computeIfAbsent(physical, Statements::new);
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[]{Connection.class},
+				(proxy, method, args) -> {
+					if (method.getName().equals("prepareStatement") && args.length == 1) {
+						return statements.prepare(connection, (String) args[0]);
+					}
+					if (method.getName().equals("close")) {
+						closeRollingBack(connection);
+						return null;
+					}
+					return invoke(connection, method, args);
+				});
+	}
+
+	private static void closeRollingBack(Connection connection) throws SQLException {
+		try (connection) {
+			if (!connection.isClosed() && !connection.getAutoCommit()) {
+				log.warn("Rolling back a connection closed in the middle of a transaction");
+				connection.rollback();
+			}
+		}
+	}
+
+	private void evictRetiredConnections() {
+		Iterator<Statements> iterator = statementsByConnection.values().iterator();
+		while (iterator.hasNext()) {
+			Statements statements = iterator.next();
+			if (statements.isRetired()) {
+				iterator.remove();
+				evictions.add(statements.size());
+			}
+		}
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * The cached statements of one physical connection. A connection is checked out by one thread at a time,
+	 * but the pool may retire it from another, hence the locking.
+	 */
+	private final class Statements {
+		private final Connection physical;
+		private final LinkedHashMap<String, Cached> cached = new LinkedHashMap<>(16, 0.75f, true);
+
+		Statements(Connection physical) {
+			this.physical = physical;
+		}
+
+		synchronized PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+			Cached statement = cached.get(sql);
+			if (statement != null && !statement.inUse && !statement.statement.isClosed()) {
+				hits.increment();
+				return statement.borrow();
+			}
+			misses.increment();
+			if (statement != null) {
+				if (statement.inUse) {
+					return connection.prepareStatement(sql);
+				}
+				cached.remove(sql);
+			}
+			statement = new Cached(physical.prepareStatement(sql));
+			cached.put(sql, statement);
+			evictLeastRecentlyUsed();
+			return statement.borrow();
+		}
+
+		synchronized void release(Cached statement) {
+			statement.inUse = false;
+		}
+
+		synchronized int size() {
+			return cached.size();
+		}
+
+		boolean isRetired() {
+			try {
+				return physical.isClosed();
+			} catch (SQLException e) {
+				return true;
+			}
+		}
+
+		private void evictLeastRecentlyUsed() {
+			Iterator<Cached> iterator = cached.values().iterator();
+			while (cached.size() > statementsPerConnection && iterator.hasNext()) {
+				Cached eldest = iterator.next();
+				if (!eldest.inUse) {
+					iterator.remove();
+					evictions.increment();
+					try {
+						eldest.statement.close();
+					} catch (SQLException e) {
+						log.warn("Error closing evicted statement: {}", e.getMessage());
+					}
+				}
+			}
+		}
+
+		private final class Cached {
+			private final PreparedStatement statement;
+			private boolean inUse;
+
+			Cached(PreparedStatement statement) {
+				this.statement = statement;
+			}
+
+			/**
+			 * A handle whose {@code close} clears the parameters and hands the statement back to the cache.
+			 */
+			PreparedStatement borrow() {
+				inUse = true;
+				boolean[] closed = {false};
+				return (PreparedStatement) Proxy.newProxyInstance(
+						PreparedStatement.class.getClassLoader(),
+						new Class<?>[]{PreparedStatement.class},
+						(proxy, method, args) -> {
+							switch (method.getName()) {
+								case "close" -> {
+									if (!closed[0]) {
+										closed[0] = true;
+										try {
+											statement.clearParameters();
+											statement.clearWarnings();
+										} finally {
+											release(this);
+										}
+									}
+									return null;
+								}
+								case "isClosed" -> {
+									return closed[0] || statement.isClosed();
+								}
+								default -> {
+									return invoke(statement, method, args);
+								}
+							}
+						});
+			}
+		}
+	}
+}
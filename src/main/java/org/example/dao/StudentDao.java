@@ -2,89 +2,376 @@ package org.example.dao;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.example.cache.StudentCache;
 import org.example.model.Course;
 import org.example.model.Group;
 import org.example.model.Student;
 import org.example.exceptions.DbException;
+import org.roaringbitmap.BatchIterator;
+import org.roaringbitmap.RoaringBitmap;
 
 import javax.sql.DataSource;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class StudentDao implements Dao<Student> {
 	private static final String INSERT_STUDENT = "INSERT INTO students (group_id, first_name, last_name) VALUES (?, ?, ?)";
-	private static final String INSERT_STUDENT_COURSE = "INSERT INTO student_course (student_id, course_id) VALUES (?, ?)";
+	private static final String INSERT_STUDENT_COURSE = "INSERT INTO student_course (student_id, course_id) VALUES (?, ?) ON CONFLICT DO NOTHING";
 	private static final String DELETE_STUDENT_COURSE = "DELETE FROM student_course WHERE student_id = ? AND course_id = ?";
 	private static final String SELECT_STUDENT_BY_ID =
 			"SELECT students.student_id, students.first_name, students.last_name, students.group_id, groups.group_name " +
 					"FROM students " +
 					"LEFT JOIN groups ON students.group_id = groups.group_id " +
 					"WHERE students.student_id = ?";
-	private static final String SELECT_ALL_STUDENTS = "SELECT * FROM students";
+	private static final String SELECT_ALL_STUDENTS =
+			"SELECT students.student_id, students.first_name, students.last_name, students.group_id, groups.group_name " +
+					"FROM students " +
+					"LEFT JOIN groups ON students.group_id = groups.group_id " +
+					"ORDER BY students.student_id";
+	private static final String SELECT_ALL_STUDENT_COURSES =
+			"SELECT sc.student_id, c.course_id, c.course_name, c.course_description " +
+					"FROM student_course sc " +
+					"JOIN courses c ON c.course_id = sc.course_id";
+	private static final String SELECT_ALL_STUDENTS_WITH_COURSES =
+			"SELECT s.student_id, s.first_name, s.last_name, s.group_id, g.group_name, " +
+					"c.course_id, c.course_name, c.course_description " +
+					"FROM students s " +
+					"LEFT JOIN groups g ON s.group_id = g.group_id " +
+					"LEFT JOIN student_course sc ON s.student_id = sc.student_id " +
+					"LEFT JOIN courses c ON sc.course_id = c.course_id " +
+					"ORDER BY s.student_id";
+	private static final String SELECT_STUDENTS_PAGE =
+			"SELECT students.student_id, students.first_name, students.last_name, students.group_id, groups.group_name " +
+					"FROM students " +
+					"LEFT JOIN groups ON students.group_id = groups.group_id " +
+					"WHERE students.student_id > ? " +
+					"ORDER BY students.student_id " +
+					"LIMIT ?";
+	private static final String SELECT_COURSES_FOR_STUDENT_RANGE =
+			"SELECT sc.student_id, c.course_id, c.course_name, c.course_description " +
+					"FROM student_course sc " +
+					"JOIN courses c ON c.course_id = sc.course_id " +
+					"WHERE sc.student_id > ? AND sc.student_id <= ?";
+	private static final String SELECT_STUDENTS_BY_IDS =
+			"SELECT students.student_id, students.first_name, students.last_name, students.group_id, groups.group_name " +
+					"FROM students " +
+					"LEFT JOIN groups ON students.group_id = groups.group_id " +
+					"WHERE students.student_id = ANY(?) " +
+					"ORDER BY students.student_id";
+	private static final String SELECT_COURSES_FOR_STUDENTS_BY_IDS =
+			"SELECT sc.student_id, c.course_id, c.course_name, c.course_description " +
+					"FROM student_course sc " +
+					"JOIN courses c ON c.course_id = sc.course_id " +
+					"WHERE sc.student_id = ANY(?)";
+	private static final String SELECT_STUDENT_IDS_IN_ANY_COURSE =
+			"SELECT DISTINCT sc.student_id " +
+					"FROM student_course sc " +
+					"JOIN courses c ON c.course_id = sc.course_id " +
+					"WHERE c.course_name = ANY(?)";
+	private static final String SELECT_STUDENT_IDS_IN_ALL_COURSES =
+			"SELECT sc.student_id " +
+					"FROM student_course sc " +
+					"JOIN courses c ON c.course_id = sc.course_id " +
+					"WHERE c.course_name = ANY(?) " +
+					"GROUP BY sc.student_id " +
+					"HAVING COUNT(DISTINCT c.course_name) = ?";
+	private static final String SELECT_ENROLLMENT_OF_STUDENTS =
+			"SELECT s.student_id, sc.course_id " +
+					"FROM students s " +
+					"LEFT JOIN student_course sc ON sc.student_id = s.student_id AND sc.course_id = ? " +
+					"WHERE s.student_id = ANY(?)";
 	private static final String UPDATE_STUDENT = "UPDATE students SET group_id = ?, first_name = ?, last_name = ? WHERE student_id = ?";
 	private static final String DELETE_STUDENT = "DELETE FROM students WHERE student_id = ?";
+	private static final String SELECT_GROUP_ID_OF_STUDENT = "SELECT group_id FROM students WHERE student_id = ?";
+	private static final String SELECT_COURSE_BY_ID = "SELECT course_id, course_name, course_description FROM courses WHERE course_id = ?";
 	private static final String SELECT_COURSES_FOR_STUDENT =
 			"SELECT c.course_id, c.course_name, c.course_description " +
 					"FROM courses c " +
 					"JOIN student_course sc ON c.course_id = sc.course_id " +
 					"WHERE sc.student_id = ?";
 	private static final String SELECT_STUDENTS_BY_COURSE_NAME =
-			"SELECT students.student_id, students.first_name, students.last_name " +
+			"SELECT students.student_id, students.first_name, students.last_name, students.group_id, groups.group_name " +
 					"FROM students " +
 					"INNER JOIN student_course ON students.student_id = student_course.student_id " +
 					"INNER JOIN courses ON student_course.course_id = courses.course_id " +
-					"WHERE courses.course_name = ?";
+					"LEFT JOIN groups ON students.group_id = groups.group_id " +
+					"WHERE courses.course_name = ? " +
+					"ORDER BY students.student_id";
+	private static final String SELECT_COURSES_FOR_STUDENTS_BY_COURSE_NAME =
+			"SELECT sc.student_id, c.course_id, c.course_name, c.course_description " +
+					"FROM student_course sc " +
+					"JOIN courses c ON c.course_id = sc.course_id " +
+					"WHERE sc.student_id IN (" +
+					"SELECT student_course.student_id " +
+					"FROM student_course " +
+					"INNER JOIN courses ON student_course.course_id = courses.course_id " +
+					"WHERE courses.course_name = ?)";
 
 	private static final Logger log = LogManager.getLogger(StudentDao.class);
 	private final DataSource dbPool;
+	private final StudentCache cache;
+	private final CourseStudentIndex courseIndex;
+	private final GroupSizeIndex groupSizes;
 
 	public StudentDao(DataSource dbPool) {
+		this(dbPool, null, null, null);
+	}
+
+	public StudentDao(DataSource dbPool, StudentCache cache) {
+		this(dbPool, cache, null, null);
+	}
+
+	public StudentDao(DataSource dbPool, StudentCache cache, CourseStudentIndex courseIndex) {
+		this(dbPool, cache, courseIndex, null);
+	}
+
+	/**
+	 * @param cache       serves {@link #findByID} and is written through by every method that modifies a student,
+	 *                    or {@code null} to always read from the database
+	 * @param courseIndex answers the course lookups and is kept current by the enrollment methods,
+	 *                    or {@code null} to query {@code student_course} instead
+	 * @param groupSizes  group student counts kept current by {@link #save}, {@link #update} and {@link #delete},
+	 *                    or {@code null}
+	 */
+	public StudentDao(DataSource dbPool, StudentCache cache, CourseStudentIndex courseIndex, GroupSizeIndex groupSizes) {
 		this.dbPool = dbPool;
+		this.cache = cache;
+		this.courseIndex = courseIndex;
+		this.groupSizes = groupSizes;
 	}
 
 	public List<Student> findStudentsByCourseName(String courseName) {
-		List<Student> students = new ArrayList<>();
-		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_STUDENTS_BY_COURSE_NAME)) {
-			preparedStatement.setString(1, courseName);
-			ResultSet resultSet = preparedStatement.executeQuery();
-			while (resultSet.next()) {
-				int studentId = resultSet.getInt("student_id");
-				Optional<Student> studentOptional = findByID(studentId);
-				Student student = studentOptional.orElse(null);
-				students.add(student);
+		if (courseIndex != null) {
+			return findStudentsByIds(courseIndex.studentsOfCourseName(courseName));
+		}
+		Map<Integer, Student> students = new LinkedHashMap<>();
+		try (Connection connection = dbPool.getConnection()) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_STUDENTS_BY_COURSE_NAME)) {
+				preparedStatement.setString(1, courseName);
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						students.putIfAbsent(resultSet.getInt("student_id"), mapStudent(resultSet));
+					}
+				}
+			}
+			if (!students.isEmpty()) {
+				try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSES_FOR_STUDENTS_BY_COURSE_NAME)) {
+					preparedStatement.setString(1, courseName);
+					try (ResultSet resultSet = preparedStatement.executeQuery()) {
+						attachCourses(resultSet, students);
+					}
+				}
 			}
 		} catch (SQLException e) {
 			log.error("Error while finding students by course name: {}", e.getMessage(), e);
 			throw new DbException(e);
 		}
-		return students;
+		return new ArrayList<>(students.values());
 	}
 
+	/**
+	 * Students enrolled in a course of every one of the given names, ordered by id.
+	 */
+	public List<Student> findStudentsInAllCourses(Collection<String> courseNames) {
+		if (courseIndex != null) {
+			return findStudentsByIds(courseIndex.studentsInAll(courseNames));
+		}
+		return findStudentsByIds(findStudentIdsByCourseNames(courseNames, true));
+	}
+
+	/**
+	 * Students enrolled in a course of at least one of the given names, ordered by id.
+	 */
+	public List<Student> findStudentsInAnyCourse(Collection<String> courseNames) {
+		if (courseIndex != null) {
+			return findStudentsByIds(courseIndex.studentsInAny(courseNames));
+		}
+		return findStudentsByIds(findStudentIdsByCourseNames(courseNames, false));
+	}
+
+	/**
+	 * Streams the students of a course name in id order with their groups and courses. Students are loaded
+	 * {@value #ID_CHUNK_SIZE} at a time as the stream is consumed, each chunk on its own pooled connection,
+	 * so no connection is held between chunks and the stream needs no closing.
+	 */
+	public Stream<Student> streamStudentsByCourseName(String courseName) {
+		if (courseIndex != null) {
+			return streamStudentsByIds(courseIndex.studentsOfCourseName(courseName));
+		}
+		return streamStudentsByIds(findStudentIdsByCourseNames(List.of(courseName), false));
+	}
+
+	/**
+	 * Streaming counterpart of {@link #findStudentsInAllCourses}, loaded as described for {@link #streamStudentsByCourseName}.
+	 */
+	public Stream<Student> streamStudentsInAllCourses(Collection<String> courseNames) {
+		if (courseIndex != null) {
+			return streamStudentsByIds(courseIndex.studentsInAll(courseNames));
+		}
+		return streamStudentsByIds(findStudentIdsByCourseNames(courseNames, true));
+	}
+
+	/**
+	 * Streaming counterpart of {@link #findStudentsInAnyCourse}, loaded as described for {@link #streamStudentsByCourseName}.
+	 */
+	public Stream<Student> streamStudentsInAnyCourse(Collection<String> courseNames) {
+		if (courseIndex != null) {
+			return streamStudentsByIds(courseIndex.studentsInAny(courseNames));
+		}
+		return streamStudentsByIds(findStudentIdsByCourseNames(courseNames, false));
+	}
+
+	/**
+	 * Enrolls the student; enrolling a student in a course they already attend changes nothing.
+	 */
 	public void addStudentToCourse(Student student, int courseId) {
-		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENT_COURSE)) {
-			preparedStatement.setInt(1, student.id());
-			preparedStatement.setInt(2, courseId);
-			preparedStatement.executeUpdate();
+		try (Connection connection = dbPool.getConnection()) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENT_COURSE)) {
+				preparedStatement.setInt(1, student.id());
+				preparedStatement.setInt(2, courseId);
+				if (preparedStatement.executeUpdate() == 0) {
+					return;
+				}
+			}
+			if (courseIndex != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.enroll(student.id(), courseId));
+			}
+			if (cache != null && cache.getIfPresent(student.id()) != null) {
+				Optional<Course> course = findCourse(connection, courseId);
+				TransactionalDataSource.afterCommit(dbPool, () -> cache.computeIfPresent(student.id(), cached -> course
+						.map(added -> withCourses(cached, concat(cached.courseList(), added)))
+						.orElse(null)));
+			}
 		} catch (SQLException e) {
+			invalidate(student.id());
 			log.error("Error add student to course", e);
 			throw new DbException(e);
 		}
 	}
 
+	/**
+	 * Enrolls many students in one transaction. Their ids are checked with one query per {@value #ID_CHUNK_SIZE}
+	 * ids, and the new enrollments go in as one batch, so either all of them are stored or none are. The course
+	 * is expected to exist; a missing course fails the foreign key and rolls everything back.
+	 */
+	public Enrollment enrollStudents(int courseId, Collection<Integer> studentIds) {
+		List<Integer> ids = List.copyOf(new LinkedHashSet<>(studentIds));
+		Set<Integer> existing = new HashSet<>();
+		Set<Integer> enrolled = new HashSet<>();
+		List<Integer> accepted = new ArrayList<>();
+		List<Integer> duplicates = new ArrayList<>();
+		List<Integer> missing = new ArrayList<>();
+		try (Connection connection = dbPool.getConnection()) {
+			boolean autoCommit = connection.getAutoCommit();
+			connection.setAutoCommit(false);
+			try {
+				try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ENROLLMENT_OF_STUDENTS)) {
+					for (int from = 0; from < ids.size(); from += ID_CHUNK_SIZE) {
+						List<Integer> chunk = ids.subList(from, Math.min(from + ID_CHUNK_SIZE, ids.size()));
+						preparedStatement.setInt(1, courseId);
+						preparedStatement.setArray(2, connection.createArrayOf("integer", chunk.toArray()));
+						try (ResultSet resultSet = preparedStatement.executeQuery()) {
+							while (resultSet.next()) {
+								int studentId = resultSet.getInt("student_id");
+								existing.add(studentId);
+								resultSet.getInt("course_id");
+								if (!resultSet.wasNull()) {
+									enrolled.add(studentId);
+								}
+							}
+						}
+					}
+				}
+				List<Integer> candidates = ids.stream()
+						.filter(id -> existing.contains(id) && !enrolled.contains(id))
+						.toList();
+				if (!candidates.isEmpty()) {
+					try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENT_COURSE)) {
+						for (Integer studentId : candidates) {
+							preparedStatement.setInt(1, studentId);
+							preparedStatement.setInt(2, courseId);
+							preparedStatement.addBatch();
+						}
+						int[] counts = preparedStatement.executeBatch();
+						for (int i = 0; i < counts.length; i++) {
+							// enrolled by someone else since the check; drivers that report no count leave it accepted
+							if (counts[i] == 0) {
+								enrolled.add(candidates.get(i));
+							}
+						}
+					}
+				}
+				connection.commit();
+				for (Integer id : ids) {
+					if (!existing.contains(id)) {
+						missing.add(id);
+					} else if (enrolled.contains(id)) {
+						duplicates.add(id);
+					} else {
+						accepted.add(id);
+					}
+				}
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(autoCommit);
+			}
+			if (courseIndex != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.enrollAll(accepted, courseId));
+			}
+			if (cache != null) {
+				Optional<Course> course = findCourse(connection, courseId);
+				TransactionalDataSource.afterCommit(dbPool, () -> accepted.forEach(studentId -> cache.computeIfPresent(studentId, cached -> course
+						.map(added -> withCourses(cached, concat(cached.courseList(), added)))
+						.orElse(null))));
+			}
+		} catch (SQLException e) {
+			accepted.forEach(this::invalidate);
+			log.error("Error enrolling students in course {}", courseId, e);
+			throw new DbException(e);
+		}
+		return new Enrollment(courseId, accepted, duplicates, missing);
+	}
+
 	public void removeStudentFromCourse(Student student, int courseId) {
 		try (Connection connection = dbPool.getConnection();
 			 PreparedStatement preparedStatement = connection.prepareStatement(DELETE_STUDENT_COURSE)) {
 			preparedStatement.setInt(1, student.id());
 			preparedStatement.setInt(2, courseId);
 			preparedStatement.executeUpdate();
+			if (courseIndex != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.unenroll(student.id(), courseId));
+			}
+			if (cache != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> cache.computeIfPresent(student.id(), cached -> withCourses(cached, cached.courseList().stream()
+						.filter(course -> course.id() != courseId)
+						.toList())));
+			}
 		} catch (SQLException e) {
+			invalidate(student.id());
 			log.error("Error remove student from course", e);
 			throw new DbException(e);
 		}
@@ -93,38 +380,96 @@ public class StudentDao implements Dao<Student> {
 
 	@Override
 	public void save(Student student) {
+		beginGroupSizeChange();
 		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENT)) {
+			 PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENT, Statement.RETURN_GENERATED_KEYS)) {
 			preparedStatement.setInt(1, student.group().id());
 			preparedStatement.setString(2, student.firstName());
 			preparedStatement.setString(3, student.lastName());
 			preparedStatement.executeUpdate();
+			if (groupSizes != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> groupSizes.studentAdded(student.group().id()));
+			}
+			if (cache != null) {
+				try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+					if (keys.next()) {
+						int id = keys.getInt(1);
+						Student saved = new Student(id, student.firstName(), student.lastName(), student.group(), List.of());
+						TransactionalDataSource.afterCommit(dbPool, () -> cache.put(id, saved));
+					}
+				}
+			}
 		} catch (SQLException e) {
 			log.error("Error while saving student to the database", e);
 			throw new DbException(e);
+		} finally {
+			endGroupSizeChange();
 		}
 	}
 
 	@Override
 	public Optional<Student> findByID(int id) {
-		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_STUDENT_BY_ID)) {
-			preparedStatement.setInt(1, id);
-			try (ResultSet resultSet = preparedStatement.executeQuery()) {
-				if (resultSet.next()) {
-					int studentId = resultSet.getInt("student_id");
-					String firstName = resultSet.getString("first_name");
-					String lastName = resultSet.getString("last_name");
-					int groupId = resultSet.getInt("group_id");
-					String groupName = resultSet.getString("group_name");
-					List<Course> courses = getCoursesForStudent(studentId);
-					Group group = new Group(groupId, groupName);
-					Student student = new Student(studentId, firstName, lastName, group, courses);
-					return Optional.of(student);
-				} else {
-					return Optional.empty();
+		if (cache == null) {
+			return loadByID(id);
+		}
+		if (!TransactionalDataSource.inUnitOfWork(dbPool)) {
+			return Optional.ofNullable(cache.get(id, key -> loadByID(key)
+					.map(student -> withCourses(student, student.courseList()))
+					.orElse(null)));
+		}
+		// The bound connection may see writes of this unit of work, so the row is cached only once they commit
+		Student cached = cache.getIfPresent(id);
+		if (cached != null) {
+			return Optional.of(cached);
+		}
+		long stamp = cache.stamp();
+		Optional<Student> loaded = loadByID(id).map(student -> withCourses(student, student.courseList()));
+		loaded.ifPresent(student -> TransactionalDataSource.afterCommit(dbPool, () -> cache.putIfUnchanged(id, student, stamp)));
+		return loaded;
+	}
+
+	/**
+	 * Cached students are answered from the cache; the rest load with their groups and courses in chunks
+	 * and are added to it, unless it was written meanwhile, once any unit of work they were read in commits.
+	 */
+	@Override
+	public Map<Integer, Student> findAllByIds(Collection<Integer> ids) {
+		Map<Integer, Student> found = new HashMap<>();
+		RoaringBitmap missing = new RoaringBitmap();
+		for (Integer id : ids) {
+			Student cached = cache == null ? null : cache.getIfPresent(id);
+			if (cached == null) {
+				missing.add(id);
+			} else {
+				found.put(id, cached);
+			}
+		}
+		long stamp = cache == null ? 0 : cache.stamp();
+		List<Student> loaded = findStudentsByIds(missing);
+		for (Student student : loaded) {
+			found.put(student.id(), student);
+		}
+		if (cache != null && !loaded.isEmpty()) {
+			TransactionalDataSource.afterCommit(dbPool, () -> loaded.forEach(
+					student -> cache.putIfUnchanged(student.id(), withCourses(student, student.courseList()), stamp)));
+		}
+		return IdBatchQuery.inRequestOrder(ids, found);
+	}
+
+	private Optional<Student> loadByID(int id) {
+		try (Connection connection = dbPool.getConnection()) {
+			Student student;
+			try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_STUDENT_BY_ID)) {
+				preparedStatement.setInt(1, id);
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					if (!resultSet.next()) {
+						return Optional.empty();
+					}
+					student = mapStudent(resultSet);
 				}
 			}
+			student.courseList().addAll(getCoursesForStudent(connection, id));
+			return Optional.of(student);
 		} catch (SQLException e) {
 			log.error("Error finding by ID student in the database", e);
 			throw new DbException(e);
@@ -133,74 +478,354 @@ public class StudentDao implements Dao<Student> {
 
 	@Override
 	public List<Student> findAll() {
-		List<Student> students = new ArrayList<>();
-		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_STUDENTS)) {
-			ResultSet resultSet = preparedStatement.executeQuery();
-			while (resultSet.next()) {
-				int studentId = resultSet.getInt("student_id");
-				int groupId = resultSet.getInt("group_id");
-				String firstName = resultSet.getString("first_name");
-				String lastName = resultSet.getString("last_name");
-				Group group = new Group(groupId, "group_id");
-				List<Course> courses = getCoursesForStudent(studentId);
+		Map<Integer, Student> students = new LinkedHashMap<>();
+		try (Connection connection = dbPool.getConnection()) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_STUDENTS);
+				 ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					Student student = mapStudent(resultSet);
+					students.put(student.id(), student);
+				}
+			}
+			if (!students.isEmpty()) {
+				try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ALL_STUDENT_COURSES);
+					 ResultSet resultSet = preparedStatement.executeQuery()) {
+					attachCourses(resultSet, students);
+				}
+			}
+			return new ArrayList<>(students.values());
+		} catch (SQLException e) {
+			log.error("Error find all students to the database", e);
+			throw new DbException(e);
+		}
+	}
 
-				Student student = new Student(studentId, firstName, lastName, group, courses);
+	@Override
+	public Stream<Student> streamAll(int fetchSize) {
+		Stream<StudentCourseRow> rows = ResultSetStream.open(dbPool, SELECT_ALL_STUDENTS_WITH_COURSES, fetchSize,
+				resultSet -> new StudentCourseRow(mapStudent(resultSet), mapOptionalCourse(resultSet)));
+		return StreamSupport.stream(new StudentSpliterator(rows.iterator()), false).onClose(rows::close);
+	}
 
-				students.add(student);
+	@Override
+	public Page<Student> findPage(int afterId, int pageSize) {
+		Map<Integer, Student> students = new LinkedHashMap<>();
+		try (Connection connection = dbPool.getConnection()) {
+			try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_STUDENTS_PAGE)) {
+				preparedStatement.setInt(1, afterId);
+				preparedStatement.setInt(2, pageSize + 1);
+				try (ResultSet resultSet = preparedStatement.executeQuery()) {
+					while (resultSet.next()) {
+						Student student = mapStudent(resultSet);
+						students.put(student.id(), student);
+					}
+				}
 			}
-			return students;
+			Page<Student> page = Page.of(new ArrayList<>(students.values()), pageSize, Student::id);
+			if (!page.items().isEmpty()) {
+				try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSES_FOR_STUDENT_RANGE)) {
+					preparedStatement.setInt(1, afterId);
+					preparedStatement.setInt(2, page.nextKey());
+					try (ResultSet resultSet = preparedStatement.executeQuery()) {
+						attachCourses(resultSet, students);
+					}
+				}
+			}
+			return page;
 		} catch (SQLException e) {
-			log.error("Error find all students to the database", e);
+			log.error("Error find students page in the database", e);
 			throw new DbException(e);
 		}
 	}
 
 	@Override
 	public void update(Student student) {
-		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_STUDENT)) {
-			preparedStatement.setInt(1, student.id());
-			preparedStatement.setString(2, student.firstName());
-			preparedStatement.setString(3, student.lastName());
-			preparedStatement.setInt(4, student.id());
-			preparedStatement.executeUpdate();
+		beginGroupSizeChange();
+		try (Connection connection = dbPool.getConnection()) {
+			OptionalInt previousGroupId = groupSizes == null ? OptionalInt.empty() : findGroupId(connection, student.id());
+			try (PreparedStatement preparedStatement = connection.prepareStatement(UPDATE_STUDENT)) {
+				preparedStatement.setInt(1, student.group().id());
+				preparedStatement.setString(2, student.firstName());
+				preparedStatement.setString(3, student.lastName());
+				preparedStatement.setInt(4, student.id());
+				preparedStatement.executeUpdate();
+			}
+			previousGroupId.ifPresent(groupId -> TransactionalDataSource.afterCommit(dbPool,
+					() -> groupSizes.studentMoved(groupId, student.group().id())));
+			if (cache != null) {
+				TransactionalDataSource.afterCommit(dbPool,
+						() -> cache.computeIfPresent(student.id(), cached -> withCourses(student, cached.courseList())));
+			}
 		} catch (SQLException e) {
+			invalidate(student.id());
 			log.error("Error update student to the database", e);
 			throw new DbException(e);
+		} finally {
+			endGroupSizeChange();
 		}
 	}
 
 	@Override
 	public void delete(Student student) {
-		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(DELETE_STUDENT)) {
-			preparedStatement.setInt(1, student.id());
-			preparedStatement.executeUpdate();
+		beginGroupSizeChange();
+		try (Connection connection = dbPool.getConnection()) {
+			OptionalInt groupId = groupSizes == null ? OptionalInt.empty() : findGroupId(connection, student.id());
+			try (PreparedStatement preparedStatement = connection.prepareStatement(DELETE_STUDENT)) {
+				preparedStatement.setInt(1, student.id());
+				preparedStatement.executeUpdate();
+			}
+			groupId.ifPresent(id -> TransactionalDataSource.afterCommit(dbPool, () -> groupSizes.studentRemoved(id)));
+			if (courseIndex != null) {
+				TransactionalDataSource.afterCommit(dbPool, () -> courseIndex.removeStudent(student.id()));
+			}
 		} catch (SQLException e) {
 			log.error("Error delete student to the database", e);
 			throw new DbException(e);
+		} finally {
+			invalidate(student.id());
+			endGroupSizeChange();
 		}
 	}
 
-	private List<Course> getCoursesForStudent(int studentId) {
-		List<Course> courses = new ArrayList<>();
+	private RoaringBitmap findStudentIdsByCourseNames(Collection<String> courseNames, boolean inAll) {
+		RoaringBitmap ids = new RoaringBitmap();
+		List<String> names = courseNames.stream().distinct().toList();
+		if (names.isEmpty()) {
+			return ids;
+		}
 		try (Connection connection = dbPool.getConnection();
-			 PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSES_FOR_STUDENT)) {
-			preparedStatement.setInt(1, studentId);
-			ResultSet resultSet = preparedStatement.executeQuery();
-			while (resultSet.next()) {
-				int courseId = resultSet.getInt("course_id");
-				String courseName = resultSet.getString("course_name");
-				String courseDescription = resultSet.getString("course_description");
-				courses.add(new Course(courseId, courseName, courseDescription));
+			 PreparedStatement preparedStatement = connection.prepareStatement(
+					 inAll ? SELECT_STUDENT_IDS_IN_ALL_COURSES : SELECT_STUDENT_IDS_IN_ANY_COURSE)) {
+			preparedStatement.setArray(1, connection.createArrayOf("varchar", names.toArray()));
+			if (inAll) {
+				preparedStatement.setInt(2, names.size());
 			}
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					ids.add(resultSet.getInt("student_id"));
+				}
+			}
+			return ids;
+		} catch (SQLException e) {
+			log.error("Error finding students by course names: {}", e.getMessage(), e);
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Loads the given students with their groups and courses on one connection, {@value #ID_CHUNK_SIZE} ids per query.
+	 */
+	private List<Student> findStudentsByIds(RoaringBitmap ids) {
+		List<Student> result = new ArrayList<>(ids.getCardinality());
+		if (ids.isEmpty()) {
+			return result;
+		}
+		BatchIterator batches = ids.getBatchIterator();
+		int[] batch = new int[ID_CHUNK_SIZE];
+		try (Connection connection = dbPool.getConnection()) {
+			while (batches.hasNext()) {
+				result.addAll(findStudentsByIds(connection, batch, batches.nextBatch(batch)));
+			}
+			return result;
 		} catch (SQLException e) {
-			log.error("Error get courses for student ID to the database", e);
+			log.error("Error finding students by ids: {}", e.getMessage(), e);
 			throw new DbException(e);
 		}
+	}
+
+	private Stream<Student> streamStudentsByIds(RoaringBitmap ids) {
+		BatchIterator batches = ids.getBatchIterator();
+		int[] batch = new int[ID_CHUNK_SIZE];
+		Iterator<Collection<Student>> chunks = new Iterator<>() {
+			@Override
+			public boolean hasNext() {
+				return batches.hasNext();
+			}
+
+			@Override
+			public Collection<Student> next() {
+				int count = batches.nextBatch(batch);
+				try (Connection connection = dbPool.getConnection()) {
+					return findStudentsByIds(connection, batch, count);
+				} catch (SQLException e) {
+					log.error("Error streaming students by ids: {}", e.getMessage(), e);
+					throw new DbException(e);
+				}
+			}
+		};
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED | Spliterator.NONNULL), false)
+				.flatMap(Collection::stream);
+	}
+
+	private static Collection<Student> findStudentsByIds(Connection connection, int[] batch, int count) throws SQLException {
+		Array idArray = connection.createArrayOf("integer", IntStream.of(batch).limit(count).boxed().toArray());
+		Map<Integer, Student> students = new LinkedHashMap<>();
+		try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_STUDENTS_BY_IDS)) {
+			preparedStatement.setArray(1, idArray);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					Student student = mapStudent(resultSet);
+					students.put(student.id(), student);
+				}
+			}
+		}
+		try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSES_FOR_STUDENTS_BY_IDS)) {
+			preparedStatement.setArray(1, idArray);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				attachCourses(resultSet, students);
+			}
+		}
+		return students.values();
+	}
+
+	private static List<Course> getCoursesForStudent(Connection connection, int studentId) throws SQLException {
+		List<Course> courses = new ArrayList<>();
+		try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSES_FOR_STUDENT)) {
+			preparedStatement.setInt(1, studentId);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				while (resultSet.next()) {
+					courses.add(mapCourse(resultSet));
+				}
+			}
+		}
 		return courses;
 	}
-}
 
+	/**
+	 * The stored group of a student, read before a write so the group size index moves the right group.
+	 * Empty if the student does not exist or has no group.
+	 */
+	private static OptionalInt findGroupId(Connection connection, int studentId) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_GROUP_ID_OF_STUDENT)) {
+			preparedStatement.setInt(1, studentId);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				if (!resultSet.next()) {
+					return OptionalInt.empty();
+				}
+				int groupId = resultSet.getInt("group_id");
+				return resultSet.wasNull() ? OptionalInt.empty() : OptionalInt.of(groupId);
+			}
+		}
+	}
+
+	private static Optional<Course> findCourse(Connection connection, int courseId) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_COURSE_BY_ID)) {
+			preparedStatement.setInt(1, courseId);
+			try (ResultSet resultSet = preparedStatement.executeQuery()) {
+				return resultSet.next() ? Optional.of(mapCourse(resultSet)) : Optional.empty();
+			}
+		}
+	}
+
+	/**
+	 * Cached students are shared between callers, so they only ever hold immutable course lists.
+	 */
+	private static Student withCourses(Student student, List<Course> courses) {
+		return new Student(student.id(), student.firstName(), student.lastName(), student.group(), List.copyOf(courses));
+	}
+
+	private static List<Course> concat(List<Course> courses, Course course) {
+		List<Course> result = new ArrayList<>(courses);
+		result.add(course);
+		return result;
+	}
+
+	private void invalidate(int id) {
+		if (cache != null) {
+			TransactionalDataSource.afterCommit(dbPool, () -> cache.invalidate(id));
+		}
+	}
+
+	/**
+	 * Tells the group size index a write is coming, so that it does not reconcile against a commit it has
+	 * yet to apply; {@link #endGroupSizeChange} releases it once the transaction is over.
+	 */
+	private void beginGroupSizeChange() {
+		if (groupSizes != null) {
+			groupSizes.beginChange();
+		}
+	}
+
+	private void endGroupSizeChange() {
+		if (groupSizes != null) {
+			TransactionalDataSource.afterCompletion(dbPool, groupSizes::endChange);
+		}
+	}
+
+	private static Student mapStudent(ResultSet resultSet) throws SQLException {
+		Group group = new Group(resultSet.getInt("group_id"), resultSet.getString("group_name"));
+		return new Student(
+				resultSet.getInt("student_id"),
+				resultSet.getString("first_name"),
+				resultSet.getString("last_name"),
+				group,
+				new ArrayList<>());
+	}
+
+	private static Course mapCourse(ResultSet resultSet) throws SQLException {
+		return new Course(
+				resultSet.getInt("course_id"),
+				resultSet.getString("course_name"),
+				resultSet.getString("course_description"));
+	}
+
+	private static void attachCourses(ResultSet resultSet, Map<Integer, Student> students) throws SQLException {
+		while (resultSet.next()) {
+			Student student = students.get(resultSet.getInt("student_id"));
+			if (student != null) {
+				student.courseList().add(mapCourse(resultSet));
+			}
+		}
+	}
+
+	private static Course mapOptionalCourse(ResultSet resultSet) throws SQLException {
+		resultSet.getInt("course_id");
+		return resultSet.wasNull() ? null : mapCourse(resultSet);
+	}
+
+	private record StudentCourseRow(Student student, Course course) {
+	}
+
+	/**
+	 * Folds consecutive rows of the same student, as produced by an ORDER BY student_id join, into one Student.
+	 */
+	private static final class StudentSpliterator extends Spliterators.AbstractSpliterator<Student> {
+		private final Iterator<StudentCourseRow> rows;
+		private StudentCourseRow pending;
 
+		private StudentSpliterator(Iterator<StudentCourseRow> rows) {
+			super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super Student> action) {
+			StudentCourseRow row = pending;
+			pending = null;
+			if (row == null) {
+				if (!rows.hasNext()) {
+					return false;
+				}
+				row = rows.next();
+			}
+			Student student = row.student();
+			addCourse(student, row);
+			while (rows.hasNext()) {
+				StudentCourseRow next = rows.next();
+				if (next.student().id() != student.id()) {
+					pending = next;
+					break;
+				}
+				addCourse(student, next);
+			}
+			action.accept(student);
+			return true;
+		}
+
+		private static void addCourse(Student student, StudentCourseRow row) {
+			if (row.course() != null) {
+				student.courseList().add(row.course());
+			}
+		}
+	}
+}
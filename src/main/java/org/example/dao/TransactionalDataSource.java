@@ -0,0 +1,294 @@
+package org.example.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.exceptions.DbException;
+
+import javax.sql.DataSource;
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hands out pooled connections like the pool it wraps, except inside a unit of work. There one connection is
+ * bound to the thread, and every {@link #getConnection()} returns it, so the DAO calls of one operation cost a
+ * single pool checkout and run in one transaction. The transaction commits when the work returns and rolls
+ * back when it throws; a unit of work started inside another one joins it.
+ * <p>
+ * DAOs keep closing and committing the connections they get; on the bound connection {@code close},
+ * {@code commit} and {@code setAutoCommit} are left to the boundary. DAOs hand their cache and index updates to
+ * {@link #afterCommit(Runnable)}, which holds them until the boundary commits and drops them when it rolls
+ * back, so caches and indexes never get ahead of the database. Reads later in the same unit of work still see
+ * the cached state from before its writes, and what they load on a cache miss is cached only after the commit.
+ * {@link #afterCompletion(Runnable)} runs an action either way, after the {@code afterCommit} actions of a commit.
+ */
+public class TransactionalDataSource implements DataSource {
+	private static final Logger log = LogManager.getLogger(TransactionalDataSource.class);
+	private final DataSource dbPool;
+	private final ThreadLocal<UnitOfWork> bound = new ThreadLocal<>();
+
+	public TransactionalDataSource(DataSource dbPool) {
+		this.dbPool = dbPool;
+	}
+
+	public <T, E extends Exception> T inTransaction(Work<T, E> work) throws E {
+		if (bound.get() != null) {
+			return work.run();
+		}
+		Connection connection = begin();
+		UnitOfWork unitOfWork = new UnitOfWork(shared(connection));
+		try {
+			T result;
+			try {
+				bound.set(unitOfWork);
+				result = work.run();
+			} catch (Throwable e) {
+				end(connection, false);
+				throw e;
+			} finally {
+				bound.remove();
+			}
+			end(connection, true);
+			unitOfWork.committed();
+			return result;
+		} finally {
+			unitOfWork.completed();
+		}
+	}
+
+	public <E extends Exception> void runInTransaction(Action<E> action) throws E {
+		inTransaction(() -> {
+			action.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Runs the action once the unit of work on this thread commits, or right away outside one. The actions of a
+	 * unit of work that rolls back are dropped.
+	 */
+	public void afterCommit(Runnable action) {
+		UnitOfWork unitOfWork = bound.get();
+		if (unitOfWork == null) {
+			action.run();
+		} else {
+			unitOfWork.afterCommit.add(action);
+		}
+	}
+
+	/**
+	 * Whether a unit of work is bound to this thread, so reads may see its uncommitted writes.
+	 */
+	public boolean inUnitOfWork() {
+		return bound.get() != null;
+	}
+
+	/**
+	 * Runs the action once the unit of work on this thread has committed or rolled back, or right away outside
+	 * one.
+	 */
+	public void afterCompletion(Runnable action) {
+		UnitOfWork unitOfWork = bound.get();
+		if (unitOfWork == null) {
+			action.run();
+		} else {
+			unitOfWork.afterCompletion.add(action);
+		}
+	}
+
+	/**
+	 * Runs the action after the commit of the unit of work on this thread if the data source is a
+	 * {@code TransactionalDataSource}, or right away otherwise.
+	 */
+	static void afterCommit(DataSource dataSource, Runnable action) {
+		if (dataSource instanceof TransactionalDataSource transactions) {
+			transactions.afterCommit(action);
+		} else {
+			action.run();
+		}
+	}
+
+	static boolean inUnitOfWork(DataSource dataSource) {
+		return dataSource instanceof TransactionalDataSource transactions && transactions.inUnitOfWork();
+	}
+
+	/**
+	 * Runs the action at the end of the unit of work on this thread if the data source is a
+	 * {@code TransactionalDataSource}, or right away otherwise.
+	 */
+	static void afterCompletion(DataSource dataSource, Runnable action) {
+		if (dataSource instanceof TransactionalDataSource transactions) {
+			transactions.afterCompletion(action);
+		} else {
+			action.run();
+		}
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		UnitOfWork unitOfWork = bound.get();
+		return unitOfWork != null ? unitOfWork.connection : dbPool.getConnection();
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		UnitOfWork unitOfWork = bound.get();
+		return unitOfWork != null ? unitOfWork.connection : dbPool.getConnection(username, password);
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return dbPool.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		dbPool.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		dbPool.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return dbPool.getLoginTimeout();
+	}
+
+	@Override
+	public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return dbPool.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return iface.isInstance(this) ? iface.cast(this) : dbPool.unwrap(iface);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return iface.isInstance(this) || dbPool.isWrapperFor(iface);
+	}
+
+	private Connection begin() {
+		Connection connection = null;
+		try {
+			connection = dbPool.getConnection();
+			connection.setAutoCommit(false);
+			return connection;
+		} catch (SQLException e) {
+			closeQuietly(connection);
+			log.error("Error starting a transaction", e);
+			throw new DbException(e);
+		}
+	}
+
+	/**
+	 * Commits or rolls back, then returns the connection to the pool in autocommit mode.
+	 */
+	private void end(Connection connection, boolean commit) {
+		try (connection) {
+			try {
+				if (commit) {
+					connection.commit();
+				} else {
+					connection.rollback();
+				}
+			} catch (SQLException e) {
+				if (commit) {
+					connection.rollback();
+				}
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		} catch (SQLException e) {
+			log.error("Error ending a transaction", e);
+			if (commit) {
+				throw new DbException(e);
+			}
+		}
+	}
+
+	private static void closeQuietly(Connection connection) {
+		if (connection != null) {
+			try {
+				connection.close();
+			} catch (SQLException e) {
+				log.warn("Error closing connection: {}", e.getMessage());
+			}
+		}
+	}
+
+	private static Connection shared(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[]{Connection.class},
+				(proxy, method, args) -> {
+					switch (method.getName()) {
+						case "close", "commit", "setAutoCommit" -> {
+							return null;
+						}
+						default -> {
+							try {
+								return method.invoke(connection, args);
+							} catch (InvocationTargetException e) {
+								throw e.getCause();
+							}
+						}
+					}
+				});
+	}
+
+	/**
+	 * The connection bound to a thread and the actions waiting for its commit or its end.
+	 */
+	private static final class UnitOfWork {
+		private final Connection connection;
+		private final List<Runnable> afterCommit = new ArrayList<>();
+		private final List<Runnable> afterCompletion = new ArrayList<>();
+
+		private UnitOfWork(Connection connection) {
+			this.connection = connection;
+		}
+
+		/**
+		 * Runs every action, even when an earlier one fails, since the data they follow is already committed.
+		 */
+		private void committed() {
+			for (Runnable action : afterCommit) {
+				try {
+					action.run();
+				} catch (RuntimeException e) {
+					log.error("Error applying a committed change", e);
+				}
+			}
+		}
+
+		private void completed() {
+			for (Runnable action : afterCompletion) {
+				try {
+					action.run();
+				} catch (RuntimeException e) {
+					log.error("Error finishing a unit of work", e);
+				}
+			}
+		}
+	}
+
+	@FunctionalInterface
+	public interface Work<T, E extends Exception> {
+		T run() throws E;
+	}
+
+	@FunctionalInterface
+	public interface Action<E extends Exception> {
+		void run() throws E;
+	}
+}
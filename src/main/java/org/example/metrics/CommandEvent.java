@@ -0,0 +1,53 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning one command, with the query counts of its {@link CommandTrace}. Execution
+ * samples of the command's thread within the event belong to that command.
+ */
+@Name("org.example.Command")
+@Label("Command")
+@Description("A REPL or batch command from start to end")
+@Category({"School Console App", "Commands"})
+@StackTrace(false)
+public final class CommandEvent extends Event {
+	@Label("Command")
+	private String command;
+
+	@Label("Connections")
+	private int connections;
+
+	@Label("Statements")
+	private int statements;
+
+	@Label("Executions")
+	private long executions;
+
+	@Label("Rows")
+	private long rows;
+
+	@Label("N+1 Patterns")
+	private int nPlusOne;
+
+	/**
+	 * Ends the event and commits it with the counts of the finished trace, if the event is recorded.
+	 */
+	public void finish(CommandTrace trace) {
+		end();
+		if (shouldCommit()) {
+			command = trace.command();
+			connections = trace.connections();
+			statements = trace.statements();
+			executions = trace.executions();
+			rows = trace.rows();
+			nPlusOne = trace.nPlusOne().size();
+			commit();
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package org.example.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts the connections, statements, executions and rows one command causes on the current thread, and
+ * flags every SQL shape executed at least {@code nPlusOneThreshold} times as an N+1 pattern: a query run
+ * once per row of an earlier one instead of once for all of them. Executions that bind an array parameter
+ * already fetch a whole set of rows, like the chunks of an id list, and do not count towards the threshold.
+ * <p>
+ * The counts come from {@code InstrumentedDataSource}, so only DAOs built on it are traced. A finished trace
+ * is logged at debug level and N+1 patterns at warn level; the level of this class's logger in
+ * {@code log4j2.properties} decides which of them are shown.
+ */
+public final class CommandTrace implements AutoCloseable {
+	public static final int DEFAULT_N_PLUS_ONE_THRESHOLD = 20;
+
+	private static final ThreadLocal<CommandTrace> CURRENT = new ThreadLocal<>();
+	private static final Logger log = LogManager.getLogger(CommandTrace.class);
+
+	private final String command;
+	private final int nPlusOneThreshold;
+	private final CommandTrace enclosing;
+	private final long start = System.nanoTime();
+	private final Map<String, Repetition> executionsByShape = new LinkedHashMap<>();
+	private int connections;
+	private int statements;
+	private long executions;
+	private long rows;
+	private long elapsedNanos = -1;
+
+	private CommandTrace(String command, int nPlusOneThreshold, CommandTrace enclosing) {
+		this.command = command;
+		this.nPlusOneThreshold = nPlusOneThreshold;
+		this.enclosing = enclosing;
+	}
+
+	/**
+	 * Starts tracing on the current thread with the threshold from {@code -Dtrace.nPlusOneThreshold}.
+	 */
+	public static CommandTrace start(String command) {
+		return start(command, Integer.getInteger("trace.nPlusOneThreshold", DEFAULT_N_PLUS_ONE_THRESHOLD));
+	}
+
+	/**
+	 * Starts tracing on the current thread. A trace started inside another one takes over until it is closed.
+	 */
+	public static CommandTrace start(String command, int nPlusOneThreshold) {
+		CommandTrace trace = new CommandTrace(command, nPlusOneThreshold, CURRENT.get());
+		CURRENT.set(trace);
+		return trace;
+	}
+
+	/**
+	 * The trace open on the current thread, or {@code null}.
+	 */
+	public static CommandTrace current() {
+		return CURRENT.get();
+	}
+
+	public void connectionAcquired() {
+		connections++;
+	}
+
+	public void statementPrepared() {
+		statements++;
+	}
+
+	public void executed(QueryStats.Query query, long rowCount) {
+		executed(query, rowCount, false);
+	}
+
+	/**
+	 * @param arrayBound whether the execution bound an array parameter
+	 */
+	public void executed(QueryStats.Query query, long rowCount, boolean arrayBound) {
+		executions++;
+		rows += rowCount;
+		executionsByShape.computeIfAbsent(query.shape(), shape -> new Repetition(query.name(), shape))
+				.record(rowCount, arrayBound);
+	}
+
+	public void rowsRead(QueryStats.Query query, long rowCount) {
+		rows += rowCount;
+		Repetition repetition = executionsByShape.get(query.shape());
+		if (repetition != null) {
+			repetition.rows += rowCount;
+		}
+	}
+
+	@Override
+	public void close() {
+		if (elapsedNanos >= 0) {
+			return;
+		}
+		elapsedNanos = System.nanoTime() - start;
+		if (enclosing == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(enclosing);
+		}
+		List<Repetition> repeated = nPlusOne();
+		if (!repeated.isEmpty()) {
+			log.warn("Command {} repeats queries: {}", command, repeated);
+		}
+		log.debug("{}", this);
+	}
+
+	public String command() {
+		return command;
+	}
+
+	public int connections() {
+		return connections;
+	}
+
+	public int statements() {
+		return statements;
+	}
+
+	public long executions() {
+		return executions;
+	}
+
+	public long rows() {
+		return rows;
+	}
+
+	/**
+	 * Time from start to close, or {@code -1} while the trace is open.
+	 */
+	public long elapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * How often statements of the shape were executed within this trace.
+	 */
+	public long executionsOf(String sql) {
+		Repetition repetition = executionsByShape.get(QueryStats.shapeOf(sql));
+		return repetition == null ? 0 : repetition.executions;
+	}
+
+	/**
+	 * The SQL shapes executed at least {@code nPlusOneThreshold} times without an array parameter, the most
+	 * repeated first.
+	 */
+	public List<Repetition> nPlusOne() {
+		List<Repetition> repeated = new ArrayList<>();
+		for (Repetition repetition : executionsByShape.values()) {
+			if (repetition.executions - repetition.arrayBound >= nPlusOneThreshold) {
+				repeated.add(repetition);
+			}
+		}
+		repeated.sort((a, b) -> Long.compare(b.executions, a.executions));
+		return repeated;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("Trace ").append(command).append(": ")
+				.append(connections).append(" connections, ")
+				.append(statements).append(" statements, ")
+				.append(executions).append(" executions, ")
+				.append(rows).append(" rows");
+		if (elapsedNanos >= 0) {
+			text.append(String.format(" in %.3f ms", Metrics.millis(elapsedNanos)));
+		}
+		for (Repetition repetition : nPlusOne()) {
+			text.append(System.lineSeparator()).append("  N+1: ").append(repetition);
+		}
+		return text.toString();
+	}
+
+	/**
+	 * The executions of one SQL shape within a trace, reported under the name of the first statement seen.
+	 */
+	public static final class Repetition {
+		private final String name;
+		private final String shape;
+		private long executions;
+		private long arrayBound;
+		private long rows;
+
+		private Repetition(String name, String shape) {
+			this.name = name;
+			this.shape = shape;
+		}
+
+		private void record(long rowCount, boolean boundArray) {
+			executions++;
+			if (boundArray) {
+				arrayBound++;
+			}
+			rows += rowCount;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public String shape() {
+			return shape;
+		}
+
+		public long executions() {
+			return executions;
+		}
+
+		public long rows() {
+			return rows;
+		}
+
+		@Override
+		public String toString() {
+			return executions + " x " + name + " (" + rows + " rows)";
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning the wait for a pooled connection.
+ */
+@Name("org.example.ConnectionAcquire")
+@Label("Connection Acquire")
+@Description("Waiting for a connection from the pool")
+@Category({"School Console App", "Database"})
+public final class ConnectionAcquireEvent extends Event {
+	@Label("Acquired")
+	@Description("False when the pool gave up waiting")
+	private boolean acquired;
+
+	/**
+	 * Ends the event and commits it, if the event is recorded.
+	 */
+	public void finish(boolean acquired) {
+		end();
+		if (shouldCommit()) {
+			this.acquired = acquired;
+			commit();
+		}
+	}
+}
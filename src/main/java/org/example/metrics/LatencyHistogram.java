@@ -0,0 +1,118 @@
+package org.example.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free log-linear histogram of durations in nanoseconds. Every power of two is split into
+ * {@value #SUB_BUCKETS} buckets, so a percentile is reported within 1/{@value #SUB_BUCKETS} of the value
+ * recorded. Recording is a handful of atomic updates on preallocated counters and never allocates or blocks.
+ * <p>
+ * A {@link #snapshot()} is read while recording goes on, so values recorded during the read may be counted
+ * in some of its totals and not yet in others.
+ */
+public final class LatencyHistogram {
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = SUB_BUCKETS * (Long.SIZE - SUB_BUCKET_BITS);
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts.incrementAndGet(bucket(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		long current = max.get();
+		while (value > current && !max.compareAndSet(current, value)) {
+			current = max.get();
+		}
+	}
+
+	public Snapshot snapshot() {
+		long[] buckets = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			buckets[i] = counts.get(i);
+		}
+		return new Snapshot(count.get(), total.get(), max.get(), buckets);
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * The largest value that falls into the bucket.
+	 */
+	static long highestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+		int shift = bucket / SUB_BUCKETS - 1;
+		long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+
+	/**
+	 * Counters of a histogram at one point in time.
+	 */
+	public static final class Snapshot {
+		private final long count;
+		private final long totalNanos;
+		private final long maxNanos;
+		private final long[] buckets;
+
+		private Snapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+			this.count = count;
+			this.totalNanos = totalNanos;
+			this.maxNanos = maxNanos;
+			this.buckets = buckets;
+		}
+
+		public long count() {
+			return count;
+		}
+
+		public long totalNanos() {
+			return totalNanos;
+		}
+
+		public long maxNanos() {
+			return maxNanos;
+		}
+
+		public double meanNanos() {
+			return count == 0 ? 0 : (double) totalNanos / count;
+		}
+
+		/**
+		 * The smallest bucket bound at or below which {@code percentile} percent of the values fall,
+		 * never more than the largest value recorded.
+		 */
+		public long percentileNanos(double percentile) {
+			long recorded = 0;
+			for (long bucketCount : buckets) {
+				recorded += bucketCount;
+			}
+			if (recorded == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(recorded * percentile / 100));
+			long seen = 0;
+			for (int i = 0; i < buckets.length; i++) {
+				seen += buckets[i];
+				if (seen >= rank) {
+					return Math.min(highestValue(i), maxNanos);
+				}
+			}
+			return maxNanos;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event spanning one phase of seeding the database.
+ */
+@Name("org.example.LoadPhase")
+@Label("Load Phase")
+@Description("A phase of seeding the database")
+@Category({"School Console App", "Loading"})
+@StackTrace(false)
+public final class LoadPhaseEvent extends Event {
+	@Label("Phase")
+	private String phase;
+
+	@Label("Partition")
+	@Description("The student id range loaded, or -1 for phases covering all of them")
+	private int partition;
+
+	@Label("Rows")
+	private long rows;
+
+	/**
+	 * Ends the event and commits it, if the event is recorded.
+	 */
+	public void finish(String phase, int partition, long rows) {
+		end();
+		if (shouldCommit()) {
+			this.phase = phase;
+			this.partition = partition;
+			this.rows = rows;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.example.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The query statistics and pool metrics of the application, published over JMX as
+ * {@value #OBJECT_NAME} once {@link #register()} is called.
+ */
+public class Metrics implements MetricsMXBean {
+	public static final String OBJECT_NAME = "org.example:type=Metrics";
+	private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+	private static final Logger log = LogManager.getLogger(Metrics.class);
+	private final QueryStats queries;
+	private final PoolMetrics pool;
+
+	public Metrics(QueryStats queries, PoolMetrics pool) {
+		this.queries = queries;
+		this.pool = pool;
+	}
+
+	public QueryStats queries() {
+		return queries;
+	}
+
+	public PoolMetrics pool() {
+		return pool;
+	}
+
+	/**
+	 * Registers with the platform MBean server, replacing an earlier registration under the same name.
+	 */
+	public void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			log.warn("Metrics are not available over JMX: {}", e.getMessage());
+		}
+	}
+
+	public static double millis(long nanos) {
+		return nanos / NANOS_PER_MILLI;
+	}
+
+	@Override
+	public Map<String, Long> getQueryCalls() {
+		return byQuery(query -> query.latency().count());
+	}
+
+	@Override
+	public Map<String, Long> getQueryErrors() {
+		return byQuery(QueryStats.QuerySnapshot::errors);
+	}
+
+	@Override
+	public Map<String, Long> getQueryRows() {
+		return byQuery(QueryStats.QuerySnapshot::rows);
+	}
+
+	@Override
+	public Map<String, Double> getQueryP50Millis() {
+		return byQuery(query -> millis(query.latency().percentileNanos(50)));
+	}
+
+	@Override
+	public Map<String, Double> getQueryP99Millis() {
+		return byQuery(query -> millis(query.latency().percentileNanos(99)));
+	}
+
+	@Override
+	public Map<String, Double> getQueryP999Millis() {
+		return byQuery(query -> millis(query.latency().percentileNanos(99.9)));
+	}
+
+	@Override
+	public int getActiveConnections() {
+		return pool.snapshot().active();
+	}
+
+	@Override
+	public int getIdleConnections() {
+		return pool.snapshot().idle();
+	}
+
+	@Override
+	public int getPendingThreads() {
+		return pool.snapshot().pending();
+	}
+
+	@Override
+	public int getTotalConnections() {
+		return pool.snapshot().total();
+	}
+
+	@Override
+	public double getConnectionAcquireP50Millis() {
+		return millis(pool.snapshot().acquire().percentileNanos(50));
+	}
+
+	@Override
+	public double getConnectionAcquireP99Millis() {
+		return millis(pool.snapshot().acquire().percentileNanos(99));
+	}
+
+	@Override
+	public long getConnectionTimeouts() {
+		return pool.snapshot().timeouts();
+	}
+
+	private <V> Map<String, V> byQuery(Function<QueryStats.QuerySnapshot, V> value) {
+		Map<String, V> result = new LinkedHashMap<>();
+		for (QueryStats.QuerySnapshot query : queries.snapshot()) {
+			result.put(query.name(), value.apply(query));
+		}
+		return result;
+	}
+}
@@ -0,0 +1,35 @@
+package org.example.metrics;
+
+import java.util.Map;
+
+/**
+ * Query and connection pool metrics as published over JMX. Query maps are keyed by query name; durations are
+ * in milliseconds.
+ */
+public interface MetricsMXBean {
+	Map<String, Long> getQueryCalls();
+
+	Map<String, Long> getQueryErrors();
+
+	Map<String, Long> getQueryRows();
+
+	Map<String, Double> getQueryP50Millis();
+
+	Map<String, Double> getQueryP99Millis();
+
+	Map<String, Double> getQueryP999Millis();
+
+	int getActiveConnections();
+
+	int getIdleConnections();
+
+	int getPendingThreads();
+
+	int getTotalConnections();
+
+	double getConnectionAcquireP50Millis();
+
+	double getConnectionAcquireP99Millis();
+
+	long getConnectionTimeouts();
+}
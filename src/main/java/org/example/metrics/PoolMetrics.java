@@ -0,0 +1,61 @@
+package org.example.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Connection pool metrics, fed by HikariCP once this factory is set on the pool configuration: how long
+ * threads wait for a connection, how long they keep it, how often they give up waiting, and the pool's
+ * active, idle and pending counts.
+ */
+public final class PoolMetrics implements MetricsTrackerFactory {
+	private final LatencyHistogram acquire = new LatencyHistogram();
+	private final LatencyHistogram usage = new LatencyHistogram();
+	private final AtomicLong timeouts = new AtomicLong();
+	private volatile PoolStats poolStats;
+
+	@Override
+	public IMetricsTracker create(String poolName, PoolStats poolStats) {
+		this.poolStats = poolStats;
+		return new IMetricsTracker() {
+			@Override
+			public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+				acquire.record(elapsedAcquiredNanos);
+			}
+
+			@Override
+			public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+				usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+			}
+
+			@Override
+			public void recordConnectionTimeout() {
+				timeouts.incrementAndGet();
+			}
+		};
+	}
+
+	/**
+	 * Hikari refreshes the connection counts at most once a second. All counts are zero until the pool starts.
+	 */
+	public PoolSnapshot snapshot() {
+		PoolStats stats = poolStats;
+		return stats == null
+				? new PoolSnapshot(0, 0, 0, 0, 0, acquire.snapshot(), usage.snapshot(), timeouts.get())
+				: new PoolSnapshot(stats.getActiveConnections(), stats.getIdleConnections(), stats.getPendingThreads(),
+				stats.getTotalConnections(), stats.getMaxConnections(), acquire.snapshot(), usage.snapshot(), timeouts.get());
+	}
+
+	/**
+	 * @param acquire  time threads waited for a connection
+	 * @param usage    time connections were kept before being returned, with millisecond resolution
+	 * @param timeouts requests that gave up waiting for a connection
+	 */
+	public record PoolSnapshot(int active, int idle, int pending, int total, int max,
+							   LatencyHistogram.Snapshot acquire, LatencyHistogram.Snapshot usage, long timeouts) {
+	}
+}
@@ -0,0 +1,42 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event spanning one statement execution, from the execute call until it returns. Its stack
+ * trace names the DAO method that ran the statement. Rows read from a query's result set come later, in a
+ * {@link QueryRowsEvent}.
+ */
+@Name("org.example.Query")
+@Label("Query")
+@Description("A prepared statement executed by a DAO")
+@Category({"School Console App", "Database"})
+public final class QueryEvent extends Event {
+	@Label("Query")
+	@Description("The SQL constant, or the SQL itself")
+	private String query;
+
+	@Label("Rows")
+	@Description("Rows changed, or 0 for queries")
+	private long rows;
+
+	@Label("Failed")
+	private boolean failed;
+
+	/**
+	 * Ends the event and commits it, if the event is recorded.
+	 */
+	public void finish(String query, long rows, boolean failed) {
+		end();
+		if (shouldCommit()) {
+			this.query = query;
+			this.rows = rows;
+			this.failed = failed;
+			commit();
+		}
+	}
+}
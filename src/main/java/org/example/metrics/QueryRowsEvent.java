@@ -0,0 +1,39 @@
+package org.example.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event marking the moment a query's result set is done with: closed, replaced by the next
+ * execution or closed along with its statement. It carries the rows read, which are not known when the
+ * {@link QueryEvent} of the execution is committed.
+ */
+@Name("org.example.QueryRows")
+@Label("Query Rows")
+@Description("Rows read from the result set of a query executed by a DAO")
+@Category({"School Console App", "Database"})
+@StackTrace(false)
+public final class QueryRowsEvent extends Event {
+	@Label("Query")
+	@Description("The SQL constant, or the SQL itself")
+	private String query;
+
+	@Label("Rows")
+	private long rows;
+
+	/**
+	 * Commits an instant event, if the event is recorded.
+	 */
+	public static void emit(String query, long rows) {
+		QueryRowsEvent event = new QueryRowsEvent();
+		if (event.shouldCommit()) {
+			event.query = query;
+			event.rows = rows;
+			event.commit();
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package org.example.metrics;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Latency, row and error counters per SQL statement. Statements are reported under the name of the constant
+ * that holds them, for example {@code StudentDao.SELECT_STUDENT_BY_ID}; any other SQL under its own text.
+ */
+public final class QueryStats {
+	private static final int MAX_SQL_NAME_LENGTH = 60;
+	private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+	private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+	private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+	private final Map<String, String> namesBySql;
+	private final ConcurrentHashMap<String, Query> queries = new ConcurrentHashMap<>();
+
+	public QueryStats(Map<String, String> namesBySql) {
+		this.namesBySql = Map.copyOf(namesBySql);
+	}
+
+	/**
+	 * Names every {@code static final String} field of the given classes, private ones included, after its
+	 * class and field name.
+	 */
+	public static QueryStats namedAfterConstants(Class<?>... owners) {
+		Map<String, String> names = new HashMap<>();
+		for (Class<?> owner : owners) {
+			for (Field field : owner.getDeclaredFields()) {
+				int modifiers = field.getModifiers();
+				if (field.getType() == String.class && Modifier.isStatic(modifiers) && Modifier.isFinal(modifiers)) {
+					try {
+						field.setAccessible(true);
+						names.putIfAbsent((String) field.get(null), owner.getSimpleName() + "." + field.getName());
+					} catch (IllegalAccessException | RuntimeException e) {
+						throw new IllegalStateException("Cannot read " + owner.getName() + "." + field.getName(), e);
+					}
+				}
+			}
+		}
+		return new QueryStats(names);
+	}
+
+	/**
+	 * The counters of a statement. The lookup of a statement seen before neither locks nor allocates.
+	 */
+	public Query query(String sql) {
+		Query query = queries.get(sql);
+		return query != null ? query : queries.computeIfAbsent(sql, key -> new Query(nameOf(key), shapeOf(key)));
+	}
+
+	/**
+	 * Every statement executed so far, the one with the most time spent first.
+	 */
+	public List<QuerySnapshot> snapshot() {
+		return queries.values().stream()
+				.map(Query::snapshot)
+				.sorted(Comparator.comparingLong((QuerySnapshot query) -> query.latency().totalNanos()).reversed())
+				.toList();
+	}
+
+	/**
+	 * The statement with its literals and parameter lists reduced to a single {@code ?} and its whitespace
+	 * collapsed, so statements that differ only in their values have the same shape.
+	 */
+	public static String shapeOf(String sql) {
+		String shape = STRING_LITERAL.matcher(sql.strip()).replaceAll("?");
+		shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+		shape = WHITESPACE.matcher(shape).replaceAll(" ");
+		return PARAMETER_LIST.matcher(shape).replaceAll("(?)");
+	}
+
+	private String nameOf(String sql) {
+		String name = namesBySql.get(sql);
+		if (name != null) {
+			return name;
+		}
+		String text = sql.strip().replaceAll("\\s+", " ");
+		return text.length() <= MAX_SQL_NAME_LENGTH ? text : text.substring(0, MAX_SQL_NAME_LENGTH - 3) + "...";
+	}
+
+	public static final class Query {
+		private final String name;
+		private final String shape;
+		private final LatencyHistogram latency = new LatencyHistogram();
+		private final AtomicLong rows = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+
+		private Query(String name, String shape) {
+			this.name = name;
+			this.shape = shape;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public String shape() {
+			return shape;
+		}
+
+		public void recordSuccess(long nanos, long rowCount) {
+			latency.record(nanos);
+			rows.addAndGet(rowCount);
+		}
+
+		public void recordError(long nanos) {
+			latency.record(nanos);
+			errors.incrementAndGet();
+		}
+
+		public void addRows(long rowCount) {
+			rows.addAndGet(rowCount);
+		}
+
+		QuerySnapshot snapshot() {
+			return new QuerySnapshot(name, latency.snapshot(), rows.get(), errors.get());
+		}
+	}
+
+	/**
+	 * @param latency time spent executing the statement, failed executions included
+	 * @param rows    rows read from its result sets plus rows reported changed by its updates
+	 */
+	public record QuerySnapshot(String name, LatencyHistogram.Snapshot latency, long rows, long errors) {
+	}
+}
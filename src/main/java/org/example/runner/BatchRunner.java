@@ -0,0 +1,108 @@
+package org.example.runner;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.service.DatabaseManager;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * Runs a script of REPL commands without prompts. Each line holds a command code followed by its answers,
+ * for example {@code a 15}, {@code d 42} or {@code e 3 1,2,5}. Blank lines and lines starting with {@code #}
+ * are skipped, and {@code q} ends the script early.
+ * <p>
+ * Output goes through one large buffer that is flushed when the script ends, followed by a summary. A command
+ * whose answers run out is given {@code q}, the same as a user giving up at the prompt, and counts as an error.
+ */
+public class BatchRunner {
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+	private static final String END_OF_ANSWERS = "q";
+	private static final String COMMENT = "#";
+
+	private static final Logger log = LogManager.getLogger(BatchRunner.class);
+	private final DatabaseManager databaseManager;
+
+	public BatchRunner(DatabaseManager databaseManager) {
+		this.databaseManager = databaseManager;
+	}
+
+	public BatchSummary run(Reader script) {
+		long start = System.nanoTime();
+		PrintStream console = System.out;
+		PrintStream buffered = new PrintStream(new BufferedOutputStream(console, OUTPUT_BUFFER_SIZE), false, StandardCharsets.UTF_8);
+		System.setOut(buffered);
+		int commands = 0;
+		int errors = 0;
+		try (BufferedReader reader = new BufferedReader(script)) {
+			int lineNumber = 0;
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.strip();
+				if (line.isEmpty() || line.startsWith(COMMENT)) {
+					continue;
+				}
+				String[] parts = line.split("\\s+", 2);
+				Command command = Command.parse(parts[0]);
+				if (command == Command.QUIT) {
+					break;
+				}
+				commands++;
+				if (!runLine(lineNumber, line, command, parts.length > 1 ? parts[1] : "")) {
+					errors++;
+				}
+			}
+		} catch (IOException e) {
+			log.error("Error reading the batch script", e);
+			throw new UncheckedIOException(e);
+		} finally {
+			buffered.flush();
+			System.setOut(console);
+		}
+		BatchSummary summary = new BatchSummary(commands, errors, (System.nanoTime() - start) / 1_000_000);
+		console.println(summary);
+		log.info("Batch {}", summary);
+		return summary;
+	}
+
+	private boolean runLine(int lineNumber, String line, Command command, String arguments) {
+		if (command == Command.UNKNOWN) {
+			System.out.println("Line " + lineNumber + ": unknown command: " + line);
+			return false;
+		}
+		List<String> answers = new ArrayList<>(command.batchArguments(arguments));
+		answers.add(END_OF_ANSWERS);
+		Scanner in = new Scanner(String.join("\n", answers));
+		try {
+			command.run(databaseManager, in);
+		} catch (RuntimeException e) {
+			log.error("Batch line {} failed: {}", lineNumber, line, e);
+			System.out.println("Line " + lineNumber + ": failed: " + e.getMessage());
+			return false;
+		}
+		if (!in.hasNextLine()) {
+			System.out.println("Line " + lineNumber + ": missing or invalid arguments: " + line);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Outcome of a batch run; {@code commands} excludes blank lines, comments and the closing {@code q}.
+	 */
+	public record BatchSummary(int commands, int errors, long elapsedMillis) {
+		@Override
+		public String toString() {
+			return "ran " + commands + " commands with " + errors + " errors in " + elapsedMillis + " ms";
+		}
+	}
+}
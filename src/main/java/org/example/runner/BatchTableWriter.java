@@ -0,0 +1,98 @@
+package org.example.runner;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+
+/**
+ * Fallback for databases without COPY support (H2 in tests). Rows are rewritten into multi-row
+ * {@code INSERT ... VALUES (..), (..)} statements and sent in bounded batches, so driver memory
+ * stays capped no matter how many rows are written.
+ */
+final class BatchTableWriter implements TableWriter {
+	static final int ROWS_PER_STATEMENT = 100;
+	static final int STATEMENTS_PER_BATCH = 50;
+
+	private final Connection connection;
+	private final String table;
+	private final String[] columns;
+	private final PreparedStatement preparedStatement;
+	private final Object[] values;
+	private int valueCount;
+	private int pendingStatements;
+	private long rows;
+
+	BatchTableWriter(Connection connection, String table, String... columns) throws SQLException {
+		this.connection = connection;
+		this.table = table;
+		this.columns = columns;
+		this.values = new Object[ROWS_PER_STATEMENT * columns.length];
+		this.preparedStatement = connection.prepareStatement(insertSql(ROWS_PER_STATEMENT));
+	}
+
+	@Override
+	public void writeInt(int value) {
+		values[valueCount++] = value;
+	}
+
+	@Override
+	public void writeText(String value) {
+		values[valueCount++] = value;
+	}
+
+	@Override
+	public void endRow() throws SQLException {
+		rows++;
+		if (valueCount == values.length) {
+			bind(preparedStatement, valueCount);
+			preparedStatement.addBatch();
+			valueCount = 0;
+			if (++pendingStatements == STATEMENTS_PER_BATCH) {
+				preparedStatement.executeBatch();
+				pendingStatements = 0;
+			}
+		}
+	}
+
+	@Override
+	public long rows() {
+		return rows;
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		if (pendingStatements > 0) {
+			preparedStatement.executeBatch();
+			pendingStatements = 0;
+		}
+		if (valueCount > 0) {
+			try (PreparedStatement tail = connection.prepareStatement(insertSql(valueCount / columns.length))) {
+				bind(tail, valueCount);
+				tail.executeUpdate();
+			}
+			valueCount = 0;
+		}
+	}
+
+	/**
+	 * Drops the rows not yet sent; batches already executed stay, as there is no transaction to undo them.
+	 */
+	@Override
+	public void close() throws SQLException {
+		preparedStatement.close();
+	}
+
+	private void bind(PreparedStatement statement, int count) throws SQLException {
+		for (int i = 0; i < count; i++) {
+			statement.setObject(i + 1, values[i]);
+			values[i] = null;
+		}
+	}
+
+	private String insertSql(int rowCount) {
+		String row = "(" + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+		return "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES "
+				+ String.join(", ", Collections.nCopies(rowCount, row));
+	}
+}
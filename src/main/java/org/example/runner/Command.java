@@ -1,63 +1,97 @@
 package org.example.runner;
 
+import org.example.metrics.CommandEvent;
+import org.example.metrics.CommandTrace;
 import org.example.service.DatabaseManager;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
 
 public enum Command {
 	FIND_ALL_GROUPS("a") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			databaseManager.performGroupsByStudentCount(in);
 		}
 	},
 
 	FIND_ALL_STUDENTS("b") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			databaseManager.findStudentsByCourseName(in);
 		}
+
+		@Override
+		List<String> batchArguments(String arguments) {
+			return List.of(arguments);
+		}
 	},
 
 	ADD_NEW_STUDENT("c") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			databaseManager.addStudent(in);
 		}
 	},
 
 	DELETE_STUDENT("d") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			databaseManager.deleteStudentById(in);
 		}
 	},
 
 	ADD_STUDENT_TO_COURSE("e") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			databaseManager.addStudentsToCourse(in);
 		}
 	},
 
 	REMOVE_STUDENT_FROM_COURSE("f") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			databaseManager.removeStudentToCourse(in);
 		}
 	},
 
+	PAGE_STUDENTS("g") {
+		@Override
+		void perform(DatabaseManager databaseManager, Scanner in) {
+			databaseManager.pageStudents(in);
+		}
+	},
+
+	FIND_STUDENTS_BY_COURSES("h") {
+		@Override
+		void perform(DatabaseManager databaseManager, Scanner in) {
+			databaseManager.findStudentsByCourseNames(in);
+		}
+
+		@Override
+		List<String> batchArguments(String arguments) {
+			return List.of(arguments);
+		}
+	},
+
+	SHOW_STATS("s") {
+		@Override
+		void perform(DatabaseManager databaseManager, Scanner in) {
+			databaseManager.printStats();
+		}
+	},
+
 	QUIT("q") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			System.out.println("Exit");
 		}
 	},
 
 	UNKNOWN("") {
 		@Override
-		public void run(DatabaseManager databaseManager, Scanner in) {
+		void perform(DatabaseManager databaseManager, Scanner in) {
 			System.out.println("Unknown command requested");
 		}
 	};
@@ -75,5 +109,32 @@ public enum Command {
 				.orElse(UNKNOWN);
 	}
 
-	public abstract void run(DatabaseManager databaseManager, Scanner in);
+	/**
+	 * Runs the command inside a {@link CommandTrace} and returns the finished trace, which counts the queries
+	 * the command caused and names any it repeated once per row. The command is also recorded as a
+	 * {@link CommandEvent} when Flight Recorder is on.
+	 */
+	public CommandTrace run(DatabaseManager databaseManager, Scanner in) {
+		CommandEvent event = new CommandEvent();
+		event.begin();
+		CommandTrace trace = CommandTrace.start(name());
+		try {
+			perform(databaseManager, in);
+		} finally {
+			trace.close();
+			event.finish(trace);
+		}
+		return trace;
+	}
+
+	abstract void perform(DatabaseManager databaseManager, Scanner in);
+
+	/**
+	 * Splits the arguments given after the command code on a batch line into the answers the command reads,
+	 * one per input line. Most commands take one whitespace-separated word per answer; commands that read a
+	 * free-text answer take the rest of the line as it is.
+	 */
+	List<String> batchArguments(String arguments) {
+		return arguments.isBlank() ? List.of() : List.of(arguments.strip().split("\\s+"));
+	}
 }
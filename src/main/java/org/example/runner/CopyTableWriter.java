@@ -0,0 +1,152 @@
+package org.example.runner;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Streams rows into PostgreSQL with {@code COPY ... FROM STDIN} in text format.
+ * Rows are encoded into a fixed buffer that is handed to the driver whenever it fills up,
+ * so the table is never materialised as a whole on the client.
+ */
+final class CopyTableWriter implements TableWriter {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_INT_LENGTH = 11;
+
+	private final CopyIn copyIn;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int position;
+	private boolean rowStarted;
+	private long rows;
+
+	CopyTableWriter(Connection connection, String table, String... columns) throws SQLException {
+		String sql = "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN";
+		this.copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql);
+	}
+
+	@Override
+	public void writeInt(int value) throws SQLException {
+		separate();
+		ensureCapacity(MAX_INT_LENGTH);
+		if (value < 0) {
+			if (value == Integer.MIN_VALUE) {
+				writeAscii(Integer.toString(value));
+				return;
+			}
+			buffer[position++] = '-';
+			value = -value;
+		}
+		int start = position;
+		do {
+			buffer[position++] = (byte) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		for (int i = start, j = position - 1; i < j; i++, j--) {
+			byte digit = buffer[i];
+			buffer[i] = buffer[j];
+			buffer[j] = digit;
+		}
+	}
+
+	@Override
+	public void writeText(String value) throws SQLException {
+		separate();
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= 0x80) {
+				writeEscaped(value.substring(i).getBytes(StandardCharsets.UTF_8));
+				return;
+			}
+			writeEscaped((byte) c);
+		}
+	}
+
+	@Override
+	public void endRow() throws SQLException {
+		ensureCapacity(1);
+		buffer[position++] = '\n';
+		rowStarted = false;
+		rows++;
+	}
+
+	@Override
+	public long rows() {
+		return rows;
+	}
+
+	@Override
+	public void finish() throws SQLException {
+		flush();
+		copyIn.endCopy();
+	}
+
+	/**
+	 * Cancels the copy unless {@link #finish()} ended it, so none of its rows are stored.
+	 */
+	@Override
+	public void close() throws SQLException {
+		if (copyIn.isActive()) {
+			copyIn.cancelCopy();
+		}
+	}
+
+	private void separate() throws SQLException {
+		if (rowStarted) {
+			ensureCapacity(1);
+			buffer[position++] = '\t';
+		}
+		rowStarted = true;
+	}
+
+	private void writeEscaped(byte[] bytes) throws SQLException {
+		for (byte b : bytes) {
+			writeEscaped(b);
+		}
+	}
+
+	private void writeEscaped(byte b) throws SQLException {
+		ensureCapacity(2);
+		switch (b) {
+			case '\\' -> {
+				buffer[position++] = '\\';
+				buffer[position++] = '\\';
+			}
+			case '\t' -> {
+				buffer[position++] = '\\';
+				buffer[position++] = 't';
+			}
+			case '\n' -> {
+				buffer[position++] = '\\';
+				buffer[position++] = 'n';
+			}
+			case '\r' -> {
+				buffer[position++] = '\\';
+				buffer[position++] = 'r';
+			}
+			default -> buffer[position++] = b;
+		}
+	}
+
+	private void writeAscii(String value) throws SQLException {
+		for (int i = 0; i < value.length(); i++) {
+			ensureCapacity(1);
+			buffer[position++] = (byte) value.charAt(i);
+		}
+	}
+
+	private void ensureCapacity(int bytes) throws SQLException {
+		if (position + bytes > buffer.length) {
+			flush();
+		}
+	}
+
+	private void flush() throws SQLException {
+		if (position > 0) {
+			copyIn.writeToCopy(buffer, 0, position);
+			position = 0;
+		}
+	}
+}
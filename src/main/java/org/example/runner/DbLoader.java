@@ -1,129 +1,290 @@
 package org.example.runner;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.example.exceptions.DbException;
+import org.example.metrics.LoadPhaseEvent;
 import org.example.model.Course;
 import org.example.model.Group;
 import org.example.model.Student;
 import org.example.service.DataGenerator;
+import org.postgresql.PGConnection;
 
 import javax.sql.DataSource;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 public class DbLoader {
-	public static final String INSERT_GROUPS =
-			"INSERT INTO groups (group_name) VALUES (?)";
-	private static final String INSERT_STUDENTS =
-			"INSERT INTO students (first_name, last_name, group_id) VALUES (?, ?, ?)";
-	private static final String INSERT_COURSES =
-			"INSERT INTO courses (course_name, course_description) VALUES (?, ?)";
-	private static final String INSERT_STUDENT_COURSE =
-			"INSERT INTO student_course (student_id, course_id) VALUES (?, ?)";
-
-	private final Connection connection;
+	private static final String ANALYZE = "ANALYZE";
+	private static final int ALL_PARTITIONS = -1;
+	private static final String TRUNCATE_POSTGRES = "TRUNCATE student_course, students, courses, groups";
+	private static final String[] TABLES_CHILDREN_FIRST = {"student_course", "students", "courses", "groups"};
+	private static final String RESET_SERIAL_POSTGRES = "SELECT setval(pg_get_serial_sequence(?, ?), ?, false)";
+	private static final String[][] SERIAL_COLUMNS = {
+			{"groups", "group_id"},
+			{"courses", "course_id"},
+			{"students", "student_id"}
+	};
+
+	private final DataSource dataSource;
+	private final SeedOptions options;
 	private static final Logger log = LogManager.getLogger(DbLoader.class);
 
-	private DbLoader(Connection connection) {
-		this.connection = connection;
+	private DbLoader(DataSource dataSource, SeedOptions options) {
+		this.dataSource = dataSource;
+		this.options = options;
 	}
 
 	public static void load(DataSource ds) {
-		try (Connection connection = ds.getConnection()) {
-			DbLoader loader = new DbLoader(connection);
+		load(ds, SeedOptions.defaults());
+	}
+
+	/**
+	 * Migrates the schema if needed, then replaces the contents of every table with generated data.
+	 */
+	public static void load(DataSource ds, SeedOptions options) {
+		try {
+			DbLoader loader = new DbLoader(ds, options);
 			loader.loadDb();
-		} catch (IOException | SQLException e) {
-			log.error("Error creating tables: " + e.getMessage(), e);
-			throw new DbException("Error creating tables: " + e);
+		} catch (SQLException e) {
+			log.error("Error seeding the database: " + e.getMessage(), e);
+			throw new DbException("Error seeding the database: " + e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DbException("Interrupted while loading the database", e);
 		}
 	}
 
-	private void loadDb() throws IOException, SQLException {
-		executeSQLScript("create_table.sql");
+	/**
+	 * Each phase is recorded as a {@link LoadPhaseEvent} when Flight Recorder is on.
+	 */
+	private void loadDb() throws SQLException, InterruptedException {
+		LoadPhaseEvent migrate = new LoadPhaseEvent();
+		migrate.begin();
+		SchemaMigrator.migrate(dataSource);
+		migrate.finish("migrate", ALL_PARTITIONS, 0);
+		try (Connection connection = dataSource.getConnection()) {
+			LoadPhaseEvent clear = new LoadPhaseEvent();
+			clear.begin();
+			clearTables(connection);
+			clear.finish("clear", ALL_PARTITIONS, 0);
+		}
 		populateDB();
+		try (Connection connection = dataSource.getConnection()) {
+			LoadPhaseEvent analyze = new LoadPhaseEvent();
+			analyze.begin();
+			resetSerialColumns(connection);
+			analyze(connection);
+			analyze.finish("analyze", ALL_PARTITIONS, 0);
+		}
 	}
 
-	private void populateDB() throws SQLException {
-		DataGenerator generatorDB = new DataGenerator();
+	/**
+	 * Courses and groups are loaded side by side, then the students are split into id ranges that are
+	 * generated and loaded concurrently on their own connections. Every row carries its generated id,
+	 * so partitions never depend on the order in which the database hands out serial values.
+	 */
+	private void populateDB() throws SQLException, InterruptedException {
+		DataGenerator generatorDB = new DataGenerator(options.generator());
+		log.info("Seeding {} students with the {} profile", options.generator().students(), options.generator().profile());
+		int partitions = partitions();
+		ExecutorService writers = Executors.newFixedThreadPool(partitions);
+		ExecutorService producers = Executors.newFixedThreadPool(partitions);
+		try {
+			awaitAll(List.of(
+					writers.submit(inConnection(connection -> insertCoursesIntoDatabase(connection, generatorDB.getCourses()))),
+					writers.submit(inConnection(connection -> insertGroupsIntoDatabase(connection, generatorDB.getGroups())))));
 
-		insertCoursesIntoDatabase(generatorDB.getCourses());
-		insertGroupsIntoDatabase(generatorDB.getGroups());
-		insertStudentsIntoDatabase(generatorDB.getStudents());
-		insertStudentCoursesRelationsIntoDatabase(generatorDB.getStudents());
+			int students = options.generator().students();
+			List<Future<Void>> loads = new ArrayList<>();
+			for (int partition = 0; partition < partitions; partition++) {
+				int fromId = 1 + (int) ((long) students * partition / partitions);
+				int toId = 1 + (int) ((long) students * (partition + 1) / partitions);
+				int number = partition;
+				loads.add(writers.submit(inConnection(connection ->
+						loadPartition(connection, number, () -> generatorDB.students(fromId, toId).iterator(), producers))));
+			}
+			awaitAll(loads);
+		} finally {
+			writers.shutdownNow();
+			producers.shutdownNow();
+		}
 	}
 
-	private void executeSQLScript(String scriptFileName) throws IOException, SQLException {
-		try (Statement statement = connection.createStatement();
-			 InputStreamReader reader = new InputStreamReader(Objects.requireNonNull(DbLoader.class.getResourceAsStream("/" + scriptFileName)))) {
-
-			try (BufferedReader bufferedReader = new BufferedReader(reader)) {
-				String line;
-				StringBuilder script = new StringBuilder();
-
-				while ((line = bufferedReader.readLine()) != null) {
-					script.append(line).append(" ");
-					if (line.endsWith(";")) {
-						String sqlCommand = script.toString();
-						statement.execute(sqlCommand);
-						script.setLength(0);
-					}
-				}
+	private int partitions() {
+		int partitions = options.partitions();
+		if (dataSource instanceof HikariDataSource pool && partitions > pool.getMaximumPoolSize()) {
+			log.warn("Reducing seed partitions from {} to the pool size {}", partitions, pool.getMaximumPoolSize());
+			return pool.getMaximumPoolSize();
+		}
+		return partitions;
+	}
+
+	private void loadPartition(Connection connection, int partition, Supplier<Iterator<Student>> students,
+							   ExecutorService producers) throws SQLException, InterruptedException {
+		long start = System.nanoTime();
+		long studentRows;
+		long enrollmentRows;
+		LoadPhaseEvent studentPhase = new LoadPhaseEvent();
+		studentPhase.begin();
+		try (TableWriter writer = openWriter(connection, "students", "student_id", "first_name", "last_name", "group_id")) {
+			RowPipeline.run(producers, students.get(), writer, DbLoader::writeStudent);
+			writer.finish();
+			studentRows = writer.rows();
+		}
+		studentPhase.finish("students", partition, studentRows);
+		LoadPhaseEvent enrollmentPhase = new LoadPhaseEvent();
+		enrollmentPhase.begin();
+		try (TableWriter writer = openWriter(connection, "student_course", "student_id", "course_id")) {
+			RowPipeline.run(producers, students.get(), writer, DbLoader::writeEnrollments);
+			writer.finish();
+			enrollmentRows = writer.rows();
+		}
+		enrollmentPhase.finish("enrollments", partition, enrollmentRows);
+		long elapsedNanos = Math.max(1, System.nanoTime() - start);
+		log.info("Partition {} loaded {} students and {} enrollments in {} ms ({} rows/s)",
+				partition, studentRows, enrollmentRows, elapsedNanos / 1_000_000,
+				(studentRows + enrollmentRows) * 1_000_000_000L / elapsedNanos);
+	}
+
+	private static void clearTables(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			if (connection.isWrapperFor(PGConnection.class)) {
+				statement.execute(TRUNCATE_POSTGRES);
+				return;
+			}
+			for (String table : TABLES_CHILDREN_FIRST) {
+				statement.executeUpdate("DELETE FROM " + table);
 			}
 		}
 	}
 
-	private void insertCoursesIntoDatabase(List<Course> courses) throws SQLException {
-		try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_COURSES)) {
+	private static void insertCoursesIntoDatabase(Connection connection, List<Course> courses) throws SQLException {
+		LoadPhaseEvent event = new LoadPhaseEvent();
+		event.begin();
+		try (TableWriter writer = openWriter(connection, "courses", "course_id", "course_name", "course_description")) {
 			for (Course course : courses) {
-				preparedStatement.setString(1, course.name());
-				preparedStatement.setString(2, course.description());
-				preparedStatement.addBatch();
+				writer.writeInt(course.id());
+				writer.writeText(course.name());
+				writer.writeText(course.description());
+				writer.endRow();
 			}
-			preparedStatement.executeBatch();
+			writer.finish();
 		}
+		event.finish("courses", ALL_PARTITIONS, courses.size());
 	}
 
-	private void insertGroupsIntoDatabase(List<Group> groups) throws SQLException {
-		try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_GROUPS)) {
+	private static void insertGroupsIntoDatabase(Connection connection, List<Group> groups) throws SQLException {
+		LoadPhaseEvent event = new LoadPhaseEvent();
+		event.begin();
+		try (TableWriter writer = openWriter(connection, "groups", "group_id", "group_name")) {
 			for (Group group : groups) {
-				preparedStatement.setString(1, group.name());
-				preparedStatement.executeUpdate();
+				writer.writeInt(group.id());
+				writer.writeText(group.name());
+				writer.endRow();
 			}
+			writer.finish();
 		}
+		event.finish("groups", ALL_PARTITIONS, groups.size());
 	}
 
-	private void insertStudentsIntoDatabase(List<Student> students) throws SQLException {
-		try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENTS)) {
-			for (Student student : students) {
-				preparedStatement.setString(1, student.firstName());
-				preparedStatement.setString(2, student.lastName());
-				preparedStatement.setInt(3, student.group().id());
-				preparedStatement.addBatch();
-			}
-			preparedStatement.executeBatch();
+	private static void writeStudent(TableWriter writer, Student student) throws SQLException {
+		writer.writeInt(student.id());
+		writer.writeText(student.firstName());
+		writer.writeText(student.lastName());
+		writer.writeInt(student.group().id());
+		writer.endRow();
+	}
+
+	private static void writeEnrollments(TableWriter writer, Student student) throws SQLException {
+		for (Course course : student.courseList()) {
+			writer.writeInt(student.id());
+			writer.writeInt(course.id());
+			writer.endRow();
 		}
 	}
 
+	private static TableWriter openWriter(Connection connection, String table, String... columns) throws SQLException {
+		if (connection.isWrapperFor(PGConnection.class)) {
+			return new CopyTableWriter(connection, table, columns);
+		}
+		return new BatchTableWriter(connection, table, columns);
+	}
 
-	private void insertStudentCoursesRelationsIntoDatabase(List<Student> students) throws SQLException {
-		try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_STUDENT_COURSE)) {
-			for (Student student : students) {
-				List<Course> studentCourses = student.courseList();
-				preparedStatement.setInt(1, student.id());
-				for (Course course : studentCourses) {
-					preparedStatement.setInt(2, course.id());
-					preparedStatement.addBatch();
+	/**
+	 * Moves every serial column past the highest loaded id, since explicit ids bypass the sequences.
+	 */
+	private static void resetSerialColumns(Connection connection) throws SQLException {
+		boolean postgres = connection.isWrapperFor(PGConnection.class);
+		for (String[] serial : SERIAL_COLUMNS) {
+			int nextId = maxId(connection, serial[0], serial[1]) + 1;
+			if (postgres) {
+				try (PreparedStatement preparedStatement = connection.prepareStatement(RESET_SERIAL_POSTGRES)) {
+					preparedStatement.setString(1, serial[0]);
+					preparedStatement.setString(2, serial[1]);
+					preparedStatement.setInt(3, nextId);
+					preparedStatement.execute();
+				}
+			} else {
+				try (Statement statement = connection.createStatement()) {
+					statement.execute("ALTER TABLE " + serial[0] + " ALTER COLUMN " + serial[1] + " RESTART WITH " + nextId);
 				}
 			}
-			preparedStatement.executeBatch();
 		}
 	}
+
+	private static int maxId(Connection connection, String table, String column) throws SQLException {
+		try (Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+
+	private static void analyze(Connection connection) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(ANALYZE);
+		}
+	}
+
+	private Callable<Void> inConnection(ConnectionTask task) {
+		return () -> {
+			try (Connection connection = dataSource.getConnection()) {
+				task.run(connection);
+			}
+			return null;
+		};
+	}
+
+	private static void awaitAll(List<Future<Void>> futures) throws SQLException, InterruptedException {
+		try {
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			futures.forEach(future -> future.cancel(true));
+			if (e.getCause() instanceof SQLException sqlException) {
+				throw sqlException;
+			}
+			throw new DbException("Error loading the database", e.getCause());
+		}
+	}
+
+	@FunctionalInterface
+	private interface ConnectionTask {
+		void run(Connection connection) throws SQLException, InterruptedException;
+	}
 }
@@ -19,10 +19,13 @@ public class Repl {
 				d. Delete student by STUDENT_ID;
 				e. Add a student to the course (from a list);
 				f. Remove the student from one of his or her courses;
+				g. Page through all students;
+				h. Find all students related to several courses (all or any of them);
+				s. Show query latency and connection pool statistics;
 				q. Quit the program.
 			""";
 
-	private static final String TITLE = "Select function (a, b, c, d, e, f or q) and press Enter: ";
+	private static final String TITLE = "Select function (a, b, c, d, e, f, g, h, s or q) and press Enter: ";
 
 	public void run() {
 		System.out.println(HEADER);
@@ -0,0 +1,73 @@
+package org.example.runner;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects a row producer to a {@link TableWriter} through a bounded queue of chunks.
+ * The producer runs on its own thread and blocks once {@link #QUEUE_CAPACITY} chunks are waiting,
+ * so at most {@code QUEUE_CAPACITY * CHUNK_SIZE} rows per pipeline are held in memory.
+ */
+final class RowPipeline {
+	static final int CHUNK_SIZE = 1_000;
+	static final int QUEUE_CAPACITY = 8;
+	private static final long POLL_MILLIS = 100;
+
+	@FunctionalInterface
+	interface RowEncoder<T> {
+		void write(TableWriter writer, T row) throws SQLException;
+	}
+
+	private RowPipeline() {
+		throw new AssertionError("Not for instantiation: " + getClass());
+	}
+
+	static <T> void run(ExecutorService producers, Iterator<T> source, TableWriter writer, RowEncoder<T> encoder)
+			throws SQLException, InterruptedException {
+		BlockingQueue<List<T>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		Future<Void> producer = producers.submit(() -> {
+			List<T> chunk = new ArrayList<>(CHUNK_SIZE);
+			while (source.hasNext()) {
+				chunk.add(source.next());
+				if (chunk.size() == CHUNK_SIZE) {
+					queue.put(chunk);
+					chunk = new ArrayList<>(CHUNK_SIZE);
+				}
+			}
+			if (!chunk.isEmpty()) {
+				queue.put(chunk);
+			}
+			queue.put(List.of());
+			return null;
+		});
+		try {
+			while (true) {
+				List<T> chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+				if (chunk == null) {
+					if (producer.isDone()) {
+						producer.get();
+					}
+					continue;
+				}
+				if (chunk.isEmpty()) {
+					return;
+				}
+				for (T row : chunk) {
+					encoder.write(writer, row);
+				}
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Row producer failed", e.getCause());
+		} finally {
+			producer.cancel(true);
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package org.example.runner;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.example.exceptions.DbException;
+
+import javax.sql.DataSource;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Brings the schema up to the newest version in {@code db/migration}.
+ * <p>
+ * Migrations are the scripts listed in {@code db/migration/migrations.txt}, named {@code V<version>__<description>.sql}.
+ * Each pending version runs as one batch in one transaction, together with its row in {@code schema_version}, so
+ * a failed migration leaves the schema at the previous version. Applied scripts are checksummed and must not change.
+ * A database created before versioning, with the tables but without {@code schema_version}, is baselined at version 1.
+ */
+public class SchemaMigrator {
+	private static final String MIGRATION_DIRECTORY = "/db/migration/";
+	private static final String MIGRATION_INDEX = MIGRATION_DIRECTORY + "migrations.txt";
+	private static final Pattern MIGRATION_NAME = Pattern.compile("V(\\d+)__(\\w+)\\.sql");
+	private static final int BASELINE_VERSION = 1;
+	private static final String CREATE_SCHEMA_VERSION =
+			"CREATE TABLE IF NOT EXISTS schema_version (" +
+					"version INTEGER PRIMARY KEY, " +
+					"description VARCHAR(255) NOT NULL, " +
+					"checksum BIGINT NOT NULL, " +
+					"execution_ms BIGINT NOT NULL, " +
+					"installed_on TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL)";
+	private static final String SELECT_APPLIED_VERSIONS = "SELECT version, checksum FROM schema_version";
+	private static final String INSERT_VERSION =
+			"INSERT INTO schema_version (version, description, checksum, execution_ms) VALUES (?, ?, ?, ?)";
+
+	private static final Logger log = LogManager.getLogger(SchemaMigrator.class);
+
+	private SchemaMigrator() {
+		throw new AssertionError("Not for instantiation: " + getClass());
+	}
+
+	/**
+	 * Applies every pending migration and returns the resulting schema version.
+	 */
+	public static int migrate(DataSource dataSource) {
+		long start = System.nanoTime();
+		try (Connection connection = dataSource.getConnection()) {
+			List<Migration> migrations = loadMigrations();
+			Map<Integer, Long> applied = appliedVersions(connection);
+			if (applied.isEmpty() && tableExists(connection, "students")) {
+				Migration baseline = migrations.get(0);
+				log.info("Baselining an existing schema at version {}", baseline.version());
+				recordVersion(connection, baseline, 0);
+				applied.put(baseline.version(), baseline.checksum());
+			}
+			int version = 0;
+			int pending = 0;
+			for (Migration migration : migrations) {
+				Long checksum = applied.get(migration.version());
+				if (checksum == null) {
+					apply(connection, migration);
+					pending++;
+				} else if (checksum != migration.checksum()) {
+					throw new DbException("Migration " + migration.name() + " was changed after it was applied");
+				}
+				version = migration.version();
+			}
+			log.info("Schema at version {} after {} migrations in {} ms", version, pending, (System.nanoTime() - start) / 1_000_000);
+			return version;
+		} catch (IOException | SQLException e) {
+			log.error("Error migrating the schema: " + e.getMessage(), e);
+			throw new DbException("Error migrating the schema: " + e);
+		}
+	}
+
+	private static void apply(Connection connection, Migration migration) throws SQLException {
+		long start = System.nanoTime();
+		boolean autoCommit = connection.getAutoCommit();
+		connection.setAutoCommit(false);
+		try {
+			try (Statement statement = connection.createStatement()) {
+				for (String sql : migration.statements()) {
+					statement.addBatch(sql);
+				}
+				statement.executeBatch();
+			}
+			recordVersion(connection, migration, (System.nanoTime() - start) / 1_000_000);
+			connection.commit();
+			log.info("Applied migration {} in {} ms", migration.name(), (System.nanoTime() - start) / 1_000_000);
+		} catch (SQLException e) {
+			connection.rollback();
+			throw new DbException("Migration " + migration.name() + " failed", e);
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+
+	private static Map<Integer, Long> appliedVersions(Connection connection) throws SQLException {
+		Map<Integer, Long> applied = new HashMap<>();
+		try (Statement statement = connection.createStatement()) {
+			statement.execute(CREATE_SCHEMA_VERSION);
+			try (ResultSet resultSet = statement.executeQuery(SELECT_APPLIED_VERSIONS)) {
+				while (resultSet.next()) {
+					applied.put(resultSet.getInt("version"), resultSet.getLong("checksum"));
+				}
+			}
+		}
+		return applied;
+	}
+
+	private static void recordVersion(Connection connection, Migration migration, long executionMillis) throws SQLException {
+		try (PreparedStatement preparedStatement = connection.prepareStatement(INSERT_VERSION)) {
+			preparedStatement.setInt(1, migration.version());
+			preparedStatement.setString(2, migration.description());
+			preparedStatement.setLong(3, migration.checksum());
+			preparedStatement.setLong(4, executionMillis);
+			preparedStatement.executeUpdate();
+		}
+	}
+
+	private static boolean tableExists(Connection connection, String table) throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		try (ResultSet resultSet = metaData.getTables(connection.getCatalog(), null, table, new String[]{"TABLE"})) {
+			return resultSet.next();
+		}
+	}
+
+	private static List<Migration> loadMigrations() throws IOException {
+		List<Migration> migrations = new ArrayList<>();
+		for (String name : readLines(MIGRATION_INDEX)) {
+			if (name.isBlank()) {
+				continue;
+			}
+			Matcher matcher = MIGRATION_NAME.matcher(name.trim());
+			if (!matcher.matches()) {
+				throw new DbException("Invalid migration name: " + name);
+			}
+			int version = Integer.parseInt(matcher.group(1));
+			if (version != (migrations.isEmpty() ? BASELINE_VERSION : migrations.get(migrations.size() - 1).version() + 1)) {
+				throw new DbException("Migration versions must be consecutive, found " + name);
+			}
+			String script = String.join("\n", readLines(MIGRATION_DIRECTORY + name.trim()));
+			migrations.add(new Migration(version, matcher.group(2).replace('_', ' '), name.trim(), script));
+		}
+		if (migrations.isEmpty()) {
+			throw new DbException("No migrations found in " + MIGRATION_INDEX);
+		}
+		return migrations;
+	}
+
+	private static List<String> readLines(String resource) throws IOException {
+		InputStream stream = SchemaMigrator.class.getResourceAsStream(resource);
+		if (stream == null) {
+			throw new DbException("Missing migration resource " + resource);
+		}
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+			return reader.lines().toList();
+		}
+	}
+
+	private record Migration(int version, String description, String name, String script) {
+		long checksum() {
+			CRC32 crc = new CRC32();
+			crc.update(script.getBytes(StandardCharsets.UTF_8));
+			return crc.getValue();
+		}
+
+		/**
+		 * Statements end with a semicolon at the end of a line; lines starting with {@code --} are comments.
+		 */
+		List<String> statements() {
+			List<String> statements = new ArrayList<>();
+			StringBuilder statement = new StringBuilder();
+			for (String line : script.split("\n")) {
+				String trimmed = line.strip();
+				if (trimmed.isEmpty() || trimmed.startsWith("--")) {
+					continue;
+				}
+				statement.append(line).append(' ');
+				if (trimmed.endsWith(";")) {
+					statements.add(statement.toString());
+					statement.setLength(0);
+				}
+			}
+			if (!statement.toString().isBlank()) {
+				statements.add(statement.toString());
+			}
+			return statements;
+		}
+	}
+}
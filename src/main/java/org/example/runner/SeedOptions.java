@@ -0,0 +1,29 @@
+package org.example.runner;
+
+import org.example.service.GeneratorConfig;
+
+/**
+ * Settings for seeding the database, read from {@code -Dseed.*} system properties. Seeding replaces all data and
+ * only runs when the application is started with {@code -Dseed=true}.
+ *
+ * @param partitions number of student id ranges loaded in parallel, each on its own pooled connection
+ * @param generator  size and random seed of the generated data set
+ */
+public record SeedOptions(int partitions, GeneratorConfig generator) {
+	public static final int DEFAULT_PARTITIONS = 1;
+
+	public SeedOptions {
+		if (partitions < 1) {
+			throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+		}
+	}
+
+	public static SeedOptions defaults() {
+		return new SeedOptions(DEFAULT_PARTITIONS, GeneratorConfig.defaults());
+	}
+
+	public static SeedOptions fromSystemProperties() {
+		return new SeedOptions(Integer.getInteger("seed.partitions", DEFAULT_PARTITIONS),
+				GeneratorConfig.fromSystemProperties());
+	}
+}
@@ -0,0 +1,25 @@
+package org.example.runner;
+
+import java.sql.SQLException;
+
+/**
+ * Row-at-a-time sink for bulk loading one table. Values are written column by column in the
+ * order the writer was opened with and each row is terminated by {@link #endRow()}.
+ * {@link #finish()} writes out everything that is still buffered once the last row is in; closing
+ * a writer that was not finished abandons the rows it still holds instead of completing a load
+ * that failed half way.
+ */
+interface TableWriter extends AutoCloseable {
+	void writeInt(int value) throws SQLException;
+
+	void writeText(String value) throws SQLException;
+
+	void endRow() throws SQLException;
+
+	long rows();
+
+	void finish() throws SQLException;
+
+	@Override
+	void close() throws SQLException;
+}
@@ -1,93 +1,83 @@
 package org.example.service;
 
-import com.github.javafaker.Faker;
 import org.example.model.Course;
 import org.example.model.Group;
 import org.example.model.Student;
 
-import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.IntSupplier;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
+/**
+ * Generates a deterministic data set from a {@link GeneratorConfig}.
+ * <p>
+ * Groups and courses are small reference tables and are kept in memory. Students are produced lazily:
+ * every student is derived from the seed and its own id only, so any id range can be generated on its
+ * own, in any order and on any thread, and always yields the same rows.
+ */
 public class DataGenerator {
-	private static final int MAX_SUM_GROUPS = 10;
-	private static final int MAX_SUM_COURSES = 10;
-	private static final int MAX_SUM_STUDENTS_IN_GROUP = 30;
-	private static final int MAX_SUM_COURSES_FOR_STUDENT = 3;
-	private static final int MIN_SUM_COURSES_FOR_STUDENT = 1;
-
-	private static final Random RANDOM = new Random();
-	private static final Faker FAKER = new Faker();
-
+	private static final String[] FIRST_NAMES = {
+			"Ada", "Alan", "Alice", "Amelia", "Anna", "Arthur", "Ben", "Bianca", "Carl", "Chloe",
+			"Daniel", "Diana", "Edgar", "Elena", "Emil", "Emma", "Felix", "Fiona", "George", "Grace",
+			"Hannah", "Henry", "Ida", "Isaac", "Jack", "Jane", "John", "Julia", "Karl", "Kate",
+			"Leo", "Lily", "Liam", "Lucy", "Marco", "Maria", "Max", "Mia", "Nina", "Noah",
+			"Olga", "Oscar", "Paul", "Petra", "Quinn", "Rachel", "Robert", "Rosa", "Sam", "Sara",
+			"Simon", "Sofia", "Theo", "Tina", "Ugo", "Vera", "Victor", "Wanda", "Xavier", "Zoe"
+	};
+	private static final String[] LAST_NAMES = {
+			"Adams", "Baker", "Becker", "Brown", "Carter", "Clark", "Cohen", "Cooper", "Davis", "Evans",
+			"Fischer", "Garcia", "Gray", "Green", "Hall", "Harris", "Hughes", "Jensen", "Johnson", "Jones",
+			"Keller", "King", "Klein", "Kowalski", "Lambert", "Lee", "Lewis", "Martin", "Meyer", "Miller",
+			"Moore", "Morgan", "Nelson", "Novak", "Olsen", "Parker", "Petrov", "Price", "Reed", "Rossi",
+			"Schmidt", "Scott", "Shevchenko", "Smith", "Stone", "Taylor", "Thomas", "Turner", "Walker", "Wagner",
+			"Ward", "Weber", "White", "Wilson", "Wood", "Wright", "Young", "Zhang", "Ziegler", "Zimmerman"
+	};
+	private static final long GROUP_SALT = 0x5DEECE66DL;
+	private static final long COURSE_SALT = 0x9E3779B97F4A7C15L;
+	private static final long STUDENT_SALT = 0xC2B2AE3D27D4EB4FL;
+	private static final int MAX_SAMPLE_ATTEMPTS = 32;
+
+	private final GeneratorConfig config;
 	private final List<Group> groups;
 	private final List<Course> courses;
-	private final List<Student> students;
+	private final IndexSampler groupSampler;
+	private final IndexSampler courseSampler;
 
 	public DataGenerator() {
-		this.groups = generateGroups();
-		this.courses = generateCourses();
-		this.students = generateStudents(groups, courses);
-	}
-
-	private static List<Group> generateGroups() {
-		IntSupplier nextGroupId = idGenerator();
-		return Stream.generate(() -> new Group(
-						nextGroupId.getAsInt(),
-						String.format("%s-%02d",
-								FAKER.letterify("??"),
-								FAKER.number().numberBetween(1, 99))
-				)).limit(MAX_SUM_GROUPS)
-				.collect(Collectors.toList());
+		this(GeneratorConfig.defaults());
 	}
 
-	private static List<Course> generateCourses() {
-		IntSupplier nextCourseId = idGenerator();
-		return Stream.generate(() -> new Course(
-						nextCourseId.getAsInt(),
-						FAKER.bothify("Course ????"),
-						FAKER.bothify("Description ?????????")
-				)).limit(MAX_SUM_COURSES)
-				.collect(Collectors.toList());
+	public DataGenerator(GeneratorConfig config) {
+		this.config = config;
+		this.groups = generateGroups(config);
+		this.courses = generateCourses(config);
+		this.groupSampler = config.profile().groupSampler(groups.size());
+		this.courseSampler = config.profile().courseSampler(courses.size());
 	}
 
-	private static List<Student> generateStudents(List<Group> groups, List<Course> courses) {
-		IntSupplier nextStudentId = idGenerator();
-		List<Course> randomCourses = generateRandomCoursesWithoutDuplicates(courses);
-
-		Set<String> uniqueFirstNames = IntStream.range(0, 100_000)
-				.mapToObj(i -> FAKER.name().firstName())
-				.collect(Collectors.toSet());
-
-		Iterator<String> iterator = uniqueFirstNames.iterator();
-
-		return groups.stream()
-				.flatMap(group ->
-						IntStream.range(0, MAX_SUM_STUDENTS_IN_GROUP)
-								.mapToObj(i -> {
-									String firstName = iterator.next();
-									iterator.remove();
-									String lastName = FAKER.name().lastName();
-									return new Student(nextStudentId.getAsInt(), firstName, lastName, group, randomCourses);
-								})
-				)
-				.collect(Collectors.toList());
+	private static List<Group> generateGroups(GeneratorConfig config) {
+		SplittableRandom random = new SplittableRandom(config.randomSeed() ^ GROUP_SALT);
+		List<Group> groups = new ArrayList<>(config.groups());
+		for (int id = 1; id <= config.groups(); id++) {
+			groups.add(new Group(id, letters(random, 2) + "-" + twoDigits(1 + random.nextInt(98))));
+		}
+		return List.copyOf(groups);
 	}
 
-	public static List<Course> generateRandomCoursesWithoutDuplicates(List<Course> courses) {
-		int numCoursesPerStudent = RANDOM.nextInt(MAX_SUM_COURSES_FOR_STUDENT) + MIN_SUM_COURSES_FOR_STUDENT;
-		return IntStream.range(0, numCoursesPerStudent)
-				.mapToObj(i -> {
-					Collections.shuffle(courses);
-					return courses.get(0);
-				})
-				.collect(Collectors.toList());
+	private static List<Course> generateCourses(GeneratorConfig config) {
+		SplittableRandom random = new SplittableRandom(config.randomSeed() ^ COURSE_SALT);
+		List<Course> courses = new ArrayList<>(config.courses());
+		for (int id = 1; id <= config.courses(); id++) {
+			courses.add(new Course(id, "Course " + letters(random, 4), "Description " + letters(random, 9)));
+		}
+		return List.copyOf(courses);
 	}
 
-	private static IntSupplier idGenerator() {
-		return new AtomicInteger(1)::getAndIncrement;
+	public GeneratorConfig getConfig() {
+		return config;
 	}
 
 	public List<Group> getGroups() {
@@ -98,7 +88,65 @@ public class DataGenerator {
 		return courses;
 	}
 
-	public List<Student> getStudents() {
-		return students;
+	public Stream<Student> students() {
+		return students(1, config.students() + 1);
+	}
+
+	/**
+	 * Lazily generates the students with ids in {@code [fromId, toId)}.
+	 */
+	public Stream<Student> students(int fromId, int toId) {
+		return IntStream.range(Math.max(1, fromId), Math.min(toId, config.students() + 1))
+				.mapToObj(this::student);
+	}
+
+	public Student student(int id) {
+		SplittableRandom random = new SplittableRandom(config.randomSeed() ^ (STUDENT_SALT * id));
+		String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+		String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+		Group group = groups.get(groupSampler.sample(id, random));
+		return new Student(id, firstName, lastName, group, randomCourses(id, random));
+	}
+
+	private List<Course> randomCourses(int studentId, SplittableRandom random) {
+		int count = Math.min(courses.size(), 1 + random.nextInt(config.maxCoursesPerStudent()));
+		int[] picked = new int[count];
+		int size = 0;
+		int attempts = 0;
+		while (size < count) {
+			int index = attempts++ < MAX_SAMPLE_ATTEMPTS
+					? courseSampler.sample(studentId, random)
+					: random.nextInt(courses.size());
+			if (!contains(picked, size, index)) {
+				picked[size++] = index;
+			}
+		}
+		Arrays.sort(picked);
+		Course[] selected = new Course[count];
+		for (int i = 0; i < count; i++) {
+			selected[i] = courses.get(picked[i]);
+		}
+		return List.of(selected);
+	}
+
+	private static boolean contains(int[] values, int size, int value) {
+		for (int i = 0; i < size; i++) {
+			if (values[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static String letters(SplittableRandom random, int length) {
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++) {
+			chars[i] = (char) ('a' + random.nextInt(26));
+		}
+		return new String(chars);
+	}
+
+	private static String twoDigits(int value) {
+		return value < 10 ? "0" + value : Integer.toString(value);
 	}
 }
@@ -1,25 +1,39 @@
 package org.example.service;
 
+import org.example.dao.Page;
 import org.example.exceptions.UserExitException;
+import org.example.model.Student;
 
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
 public class DatabaseManager {
 	private static final String EMPTY_FIELD_ERROR_MESSAGE = "This field cannot be empty. Please enter a valid value";
 	private static final String INVALID_FORMAT = "Invalid format. Please enter a valid format";
+	private static final int MAX_RANGE_SIZE = 1_000_000;
 	private final ReportGenerator reportGenerator;
+	private final boolean prompts;
 
 	public DatabaseManager(ReportGenerator reportGenerator) {
+		this(reportGenerator, true);
+	}
+
+	/**
+	 * Without prompts every answer is expected to be waiting in the scanner already, as in a batch script,
+	 * so nothing is printed to ask for it and paging runs to the last page without waiting for Enter.
+	 */
+	public DatabaseManager(ReportGenerator reportGenerator, boolean prompts) {
 		this.reportGenerator = reportGenerator;
+		this.prompts = prompts;
 	}
 
 
 	public void performGroupsByStudentCount(Scanner scanner) {
 		boolean validInput = false;
-		System.out.print("Enter the maximum number of students for the group (or 'q' to exit): ");
+		prompt("Enter the maximum number of students for the group (or 'q' to exit): ");
 		while (!validInput) {
 			String input = scanner.nextLine().trim();
 			if (input.equalsIgnoreCase("q")) {
@@ -41,7 +55,7 @@ public class DatabaseManager {
 	public void findStudentsByCourseName(Scanner scanner) {
 		boolean validInput = false;
 		while (!validInput) {
-			System.out.print("Enter the name of the course (or 'q' to exit): ");
+			prompt("Enter the name of the course (or 'q' to exit): ");
 			String courseName = scanner.nextLine().trim();
 			if (courseName.equalsIgnoreCase("q")) {
 				return;
@@ -54,6 +68,29 @@ public class DatabaseManager {
 		}
 	}
 
+	public void findStudentsByCourseNames(Scanner scanner) {
+		while (true) {
+			prompt("Enter course names separated by '&' (enrolled in all) or '|' (enrolled in any) (or 'q' to exit): ");
+			String input = scanner.nextLine().trim();
+			if (input.equalsIgnoreCase("q")) {
+				return;
+			}
+			boolean inAll = input.contains("&");
+			List<String> courseNames = Arrays.stream(input.split(inAll ? "&" : "\\|"))
+					.map(String::trim)
+					.filter(name -> !name.isEmpty())
+					.toList();
+			if (courseNames.isEmpty()) {
+				System.out.println(EMPTY_FIELD_ERROR_MESSAGE);
+			} else if (inAll && input.contains("|")) {
+				System.out.println(INVALID_FORMAT);
+			} else {
+				reportGenerator.printStudentsByCourseNames(courseNames, inAll);
+				return;
+			}
+		}
+	}
+
 	public void addStudent(Scanner scanner) {
 		try {
 			String firstName = getFirstNameInput(scanner);
@@ -69,7 +106,7 @@ public class DatabaseManager {
 
 	public void deleteStudentById(Scanner scanner) {
 		while (true) {
-			System.out.print("Enter STUDENT_ID to delete (or 'q' to exit): ");
+			prompt("Enter STUDENT_ID to delete (or 'q' to exit): ");
 			String input = scanner.nextLine().trim();
 
 			if (input.equalsIgnoreCase("q")) {
@@ -103,9 +140,9 @@ public class DatabaseManager {
 
 	public void removeStudentToCourse(Scanner scanner) {
 		try {
-			System.out.println("Select a student by ID");
+			promptLine("Select a student by ID");
 			int studentId = getIdInput(scanner);
-			System.out.println("Select a course by ID");
+			promptLine("Select a course by ID");
 			int courseId = getIdInput(scanner);
 			reportGenerator.printRemoveStudentFromCourse(studentId, courseId);
 		} catch (UserExitException e) {
@@ -113,9 +150,36 @@ public class DatabaseManager {
 		}
 	}
 
+	public void pageStudents(Scanner scanner) {
+		try {
+			promptLine("Select a page size");
+			int pageSize = getIdInput(scanner);
+			if (pageSize <= 0) {
+				System.out.println(INVALID_FORMAT);
+				return;
+			}
+			Page<Student> page = reportGenerator.printStudentsPage(Page.FIRST_KEY, pageSize);
+			while (page.hasNext()) {
+				if (prompts) {
+					System.out.println("Press Enter for the next page (or 'q' to exit):");
+					if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+						return;
+					}
+				}
+				page = reportGenerator.printStudentsPage(page.nextKey(), pageSize);
+			}
+		} catch (UserExitException e) {
+			System.out.println(e.getMessage());
+		}
+	}
+
+	public void printStats() {
+		reportGenerator.printStats();
+	}
+
 	private String getFirstNameInput(Scanner scanner) throws UserExitException {
 		while (true) {
-			System.out.println("Enter firstname (or 'q' to exit):");
+			promptLine("Enter firstname (or 'q' to exit):");
 			String input = scanner.nextLine().trim();
 			if (input.equals("q")) {
 				throw new UserExitException("User exited input.");
@@ -129,7 +193,7 @@ public class DatabaseManager {
 
 	private String getLastNameInput(Scanner scanner) throws UserExitException {
 		while (true) {
-			System.out.println("Enter lastname (or 'q' to exit):");
+			promptLine("Enter lastname (or 'q' to exit):");
 			String input = scanner.nextLine().trim();
 			if (input.equals("q")) {
 				throw new UserExitException("User exited input.");
@@ -143,7 +207,7 @@ public class DatabaseManager {
 
 	private int getIdInput(Scanner scanner) throws UserExitException {
 		while (true) {
-			System.out.println("Enter id (or 'q' to exit):");
+			promptLine("Enter id (or 'q' to exit):");
 			String input = scanner.nextLine().trim();
 			if (input.equals("q")) {
 				throw new UserExitException("User exited input.");
@@ -159,9 +223,13 @@ public class DatabaseManager {
 		}
 	}
 
+	/**
+	 * Reads a comma-separated list of ids in which {@code from-to} stands for every id of that inclusive range,
+	 * so {@code 1-5000,7001} enrolls a whole cohort and one more student.
+	 */
 	private List<Integer> creatListInteger(Scanner scanner) throws UserExitException {
 		List<Integer> integerList = new ArrayList<>();
-		System.out.println("Enter num to add (comma-separated) or 'q' to finish adding courses:");
+		promptLine("Enter num to add (comma-separated, ranges as 1-5000) or 'q' to finish adding courses:");
 
 		while (true) {
 			String input = scanner.nextLine().trim();
@@ -173,8 +241,7 @@ public class DatabaseManager {
 				String[] inputArray = input.split(",");
 				for (String number : inputArray) {
 					try {
-						int id = Integer.parseInt(number.trim());
-						integerList.add(id);
+						addIds(integerList, number.trim());
 					} catch (NumberFormatException e) {
 						System.out.println(INVALID_FORMAT);
 					}
@@ -183,5 +250,32 @@ public class DatabaseManager {
 			}
 		}
 	}
-}
 
+	private static void addIds(List<Integer> ids, String item) {
+		int dash = item.indexOf('-', 1);
+		if (dash < 0) {
+			ids.add(Integer.parseInt(item));
+			return;
+		}
+		int from = Integer.parseInt(item.substring(0, dash).trim());
+		int to = Integer.parseInt(item.substring(dash + 1).trim());
+		if (from > to || (long) to - from >= MAX_RANGE_SIZE) {
+			throw new NumberFormatException("Invalid range: " + item);
+		}
+		for (long id = from; id <= to; id++) {
+			ids.add((int) id);
+		}
+	}
+
+	private void prompt(String text) {
+		if (prompts) {
+			System.out.print(text);
+		}
+	}
+
+	private void promptLine(String text) {
+		if (prompts) {
+			System.out.println(text);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package org.example.service;
+
+import java.util.Objects;
+
+/**
+ * Size and seed of the generated data set. The same configuration always produces the same rows.
+ *
+ * @param groups                number of groups
+ * @param courses               number of courses
+ * @param students              number of students
+ * @param maxCoursesPerStudent  upper bound of enrollments per student (at least one is always made)
+ * @param randomSeed            seed every generated value is derived from
+ * @param profile               how students are spread over groups and courses
+ */
+public record GeneratorConfig(int groups, int courses, int students, int maxCoursesPerStudent, long randomSeed,
+							  WorkloadProfile profile) {
+	public static final int DEFAULT_GROUPS = 10;
+	public static final int DEFAULT_COURSES = 10;
+	public static final int DEFAULT_STUDENTS = 300;
+	public static final int DEFAULT_MAX_COURSES_PER_STUDENT = 3;
+	public static final long DEFAULT_RANDOM_SEED = 20_231_017L;
+	public static final WorkloadProfile DEFAULT_PROFILE = WorkloadProfile.UNIFORM;
+
+	public GeneratorConfig {
+		Objects.requireNonNull(profile, "profile");
+		if (groups < 1 || courses < 1 || students < 0 || maxCoursesPerStudent < 1) {
+			throw new IllegalArgumentException("Invalid generator sizes: groups=" + groups + ", courses=" + courses
+					+ ", students=" + students + ", maxCoursesPerStudent=" + maxCoursesPerStudent);
+		}
+	}
+
+	public static GeneratorConfig defaults() {
+		return new GeneratorConfig(DEFAULT_GROUPS, DEFAULT_COURSES, DEFAULT_STUDENTS,
+				DEFAULT_MAX_COURSES_PER_STUDENT, DEFAULT_RANDOM_SEED, DEFAULT_PROFILE);
+	}
+
+	public static GeneratorConfig fromSystemProperties() {
+		return new GeneratorConfig(
+				Integer.getInteger("seed.groups", DEFAULT_GROUPS),
+				Integer.getInteger("seed.courses", DEFAULT_COURSES),
+				Integer.getInteger("seed.students", DEFAULT_STUDENTS),
+				Integer.getInteger("seed.maxCoursesPerStudent", DEFAULT_MAX_COURSES_PER_STUDENT),
+				Long.getLong("seed.randomSeed", DEFAULT_RANDOM_SEED),
+				WorkloadProfile.parse(System.getProperty("seed.profile", DEFAULT_PROFILE.name())));
+	}
+}
@@ -0,0 +1,45 @@
+package org.example.service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Picks a zero-based index into a list of {@code size} items for the student with the given id.
+ */
+@FunctionalInterface
+interface IndexSampler {
+	int sample(int studentId, SplittableRandom random);
+
+	static IndexSampler roundRobin(int size) {
+		return (studentId, random) -> (studentId - 1) % size;
+	}
+
+	static IndexSampler uniform(int size) {
+		return (studentId, random) -> random.nextInt(size);
+	}
+
+	/**
+	 * Zipf's law: the item of rank {@code k} is drawn with a probability proportional to {@code 1 / k^exponent}.
+	 * The cumulative distribution is computed once, so each draw is a binary search.
+	 */
+	static IndexSampler zipf(int size, double exponent) {
+		double[] cumulative = new double[size];
+		double total = 0;
+		for (int rank = 1; rank <= size; rank++) {
+			total += 1 / Math.pow(rank, exponent);
+			cumulative[rank - 1] = total;
+		}
+		double sum = total;
+		return (studentId, random) -> {
+			int index = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+			return Math.min(size - 1, index >= 0 ? index : -index - 1);
+		};
+	}
+
+	/**
+	 * Draws the first item with probability {@code share} and otherwise any item uniformly.
+	 */
+	static IndexSampler hotSpot(int size, double share) {
+		return (studentId, random) -> random.nextDouble() < share ? 0 : random.nextInt(size);
+	}
+}
@@ -1,116 +1,323 @@
 package org.example.service;
 
 import org.example.dao.CourseDao;
+import org.example.dao.Enrollment;
 import org.example.dao.GroupDao;
+import org.example.dao.Page;
 import org.example.dao.StudentDao;
+import org.example.dao.TransactionalDataSource;
+import org.example.metrics.LatencyHistogram;
+import org.example.metrics.Metrics;
+import org.example.metrics.PoolMetrics;
+import org.example.metrics.QueryStats;
 import org.example.model.Course;
 import org.example.model.Group;
 import org.example.model.Student;
 
 import java.sql.SQLException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+/**
+ * Prints the results of the REPL commands. Everything goes through a {@link ReportSink} that is flushed once at
+ * the end of each report; rows are written field by field as they arrive from the DAOs.
+ */
 public class ReportGenerator {
 	private final StudentDao studentDao;
 	private final GroupDao groupDao;
 	private final CourseDao courseDao;
+	private final ReportSink out;
+	private final TransactionalDataSource transactions;
+	private final Metrics metrics;
 
 	public ReportGenerator(StudentDao studentDao, GroupDao groupDao, CourseDao courseDao) {
+		this(studentDao, groupDao, courseDao, ReportSink.console());
+	}
+
+	public ReportGenerator(StudentDao studentDao, GroupDao groupDao, CourseDao courseDao, ReportSink out) {
+		this(studentDao, groupDao, courseDao, out, null);
+	}
+
+	/**
+	 * @param transactions optional data source the DAOs were built on; when given, each report runs as one unit
+	 *                     of work on a single connection and transaction
+	 */
+	public ReportGenerator(StudentDao studentDao, GroupDao groupDao, CourseDao courseDao, ReportSink out,
+						   TransactionalDataSource transactions) {
+		this(studentDao, groupDao, courseDao, out, transactions, null);
+	}
+
+	/**
+	 * @param metrics optional query and pool metrics printed by {@link #printStats()}
+	 */
+	public ReportGenerator(StudentDao studentDao, GroupDao groupDao, CourseDao courseDao, ReportSink out,
+						   TransactionalDataSource transactions, Metrics metrics) {
 		this.studentDao = studentDao;
 		this.groupDao = groupDao;
 		this.courseDao = courseDao;
+		this.out = out;
+		this.transactions = transactions;
+		this.metrics = metrics;
 	}
 
 	public void printGroupsByStudentCount(int maxStudentCount) throws SQLException {
-		List<Group> groups = groupDao.findGroupsWithLessOrEqualStudents(maxStudentCount);
-
-		System.out.println("Groups of " + maxStudentCount + " or fewer students:");
-		for (Group group : groups) {
-			System.out.println(group.toString());
+		try {
+			runInUnitOfWork(() -> {
+				List<Group> groups = groupDao.findGroupsWithLessOrEqualStudents(maxStudentCount);
+				out.print("Groups of ").print(maxStudentCount).println(" or fewer students:");
+				for (Group group : groups) {
+					printGroup(group);
+				}
+			});
+		} finally {
+			out.flush();
 		}
 	}
 
 	public void printStudentsByCourseName(String courseName) {
-		List<Student> students = studentDao.findStudentsByCourseName(courseName);
-		if (students.isEmpty()) {
-			System.out.println("No students found for the course with name: " + courseName);
-		} else {
-			System.out.println("Students related to the course '" + courseName + "':");
-			for (Student student : students) {
-				System.out.println(student.firstName() + " " + student.lastName() + " (ID: " + student.id() + ")");
-			}
+		try {
+			runInUnitOfWork(() -> {
+				try (Stream<Student> students = studentDao.streamStudentsByCourseName(courseName)) {
+					Iterator<Student> iterator = students.iterator();
+					if (!iterator.hasNext()) {
+						out.print("No students found for the course with name: ").println(courseName);
+						return;
+					}
+					out.print("Students related to the course '").print(courseName).println("':");
+					iterator.forEachRemaining(this::printStudent);
+				}
+			});
+		} finally {
+			out.flush();
+		}
+	}
+
+	public void printStudentsByCourseNames(List<String> courseNames, boolean inAll) {
+		String courses = String.join(inAll ? "' and '" : "' or '", courseNames);
+		try {
+			runInUnitOfWork(() -> {
+				try (Stream<Student> students = inAll
+						? studentDao.streamStudentsInAllCourses(courseNames)
+						: studentDao.streamStudentsInAnyCourse(courseNames)) {
+					Iterator<Student> iterator = students.iterator();
+					if (!iterator.hasNext()) {
+						out.print("No students found for the courses '").print(courses).println("'");
+						return;
+					}
+					out.print("Students related to the courses '").print(courses).println("':");
+					iterator.forEachRemaining(this::printStudent);
+				}
+			});
+		} finally {
+			out.flush();
+		}
+	}
+
+	public Page<Student> printStudentsPage(int afterId, int pageSize) {
+		try {
+			return inUnitOfWork(() -> {
+				Page<Student> page = studentDao.findPage(afterId, pageSize);
+				if (page.items().isEmpty()) {
+					out.println("No more students");
+				}
+				for (Student student : page.items()) {
+					out.print(student.firstName()).print(' ').print(student.lastName())
+							.print(" (ID: ").print(student.id())
+							.print(", group: ").print(String.valueOf(student.group().name())).println(")");
+				}
+				return page;
+			});
+		} finally {
+			out.flush();
 		}
 	}
 
 	public void printAddStudent(String firstName, String lastName, int groupId, List<Integer> courseIds) {
-		Optional<Group> groupOptional = groupDao.findByID(groupId);
+		try {
+			runInUnitOfWork(() -> {
+				Optional<Group> groupOptional = groupDao.findByID(groupId);
 
-		if (groupOptional.isEmpty()) {
-			System.out.println("Error: Group not found for id: " + groupId);
-		} else {
-			List<Course> courseList = courseIds.stream()
-					.map(courseDao::findByID)
-					.flatMap(Optional::stream)
-					.collect(Collectors.toList());
-
-			boolean allCoursesFound = courseIds.stream()
-					.allMatch(courseId -> courseDao.findByID(courseId).isPresent());
-
-			if (allCoursesFound) {
-				Group group = groupOptional.get();
-				Student student = new Student(1, firstName, lastName, group, courseList);
-				studentDao.save(student);
-				System.out.println("Added student: " + student);
-			} else {
-				courseIds.stream()
-						.filter(courseId -> courseDao.findByID(courseId).isEmpty())
-						.forEach(courseId -> System.out.println("Warning: Course not found for id: " + courseId));
-			}
+				if (groupOptional.isEmpty()) {
+					out.print("Error: Group not found for id: ").print(groupId).println();
+				} else {
+					Map<Integer, Course> courses = courseDao.findAllByIds(courseIds);
+					List<Integer> missingCourseIds = courseIds.stream()
+							.filter(courseId -> !courses.containsKey(courseId))
+							.toList();
+
+					if (missingCourseIds.isEmpty()) {
+						List<Course> courseList = courseIds.stream()
+								.map(courses::get)
+								.collect(Collectors.toList());
+						Group group = groupOptional.get();
+						Student student = new Student(1, firstName, lastName, group, courseList);
+						studentDao.save(student);
+						out.print("Added student: ").print(student.firstName()).print(' ').print(student.lastName())
+								.print(" (group: ").print(String.valueOf(group.name())).print(", courses: ");
+						for (int i = 0; i < courseList.size(); i++) {
+							if (i > 0) {
+								out.print(", ");
+							}
+							out.print(String.valueOf(courseList.get(i).name()));
+						}
+						out.println(")");
+					} else {
+						missingCourseIds.forEach(courseId -> out.print("Warning: Course not found for id: ").print(courseId).println());
+					}
+				}
+			});
+		} finally {
+			out.flush();
 		}
 	}
 
 
 	public void printDeleteStudentById(int studentId) {
-		Optional<Student> studentOptional = studentDao.findByID(studentId);
+		try {
+			runInUnitOfWork(() -> {
+				Optional<Student> studentOptional = studentDao.findByID(studentId);
 
-		studentOptional.ifPresent(student -> {
-			studentDao.delete(student);
-			System.out.println("Deleted student with ID: " + studentId);
-		});
+				studentOptional.ifPresent(student -> {
+					studentDao.delete(student);
+					out.print("Deleted student with ID: ").print(studentId).println();
+				});
 
-		if (studentOptional.isEmpty()) {
-			System.out.println("Student not found with ID: " + studentId);
+				if (studentOptional.isEmpty()) {
+					out.print("Student not found with ID: ").print(studentId).println();
+				}
+			});
+		} finally {
+			out.flush();
 		}
 	}
 
 	public void printAddStudentsToCourse(List<Integer> studentsListID, int courseId) {
-		studentsListID.forEach(studentId -> {
-			Optional<Student> studentOptional = studentDao.findByID(studentId);
-			Optional<Course> courseOptional = courseDao.findByID(courseId);
-
-			if (studentOptional.isPresent() && courseOptional.isPresent()) {
-				Student student = studentOptional.get();
-				studentDao.addStudentToCourse(student, courseId);
-				System.out.println("Added student with ID " + student.id() + " to course with ID: " + courseId);
+		try {
+			runInUnitOfWork(() -> {
+				if (courseDao.findByID(courseId).isEmpty()) {
+					out.print("Error: Course not found for ID: ").print(courseId).println();
+					return;
+				}
+				Enrollment enrollment = studentDao.enrollStudents(courseId, studentsListID);
+				out.print("Added ").print(enrollment.accepted().size()).print(" students to course with ID: ").print(courseId).println();
+				printIds("Added", enrollment.accepted());
+				printIds("Already enrolled", enrollment.duplicates());
+				printIds("Students not found", enrollment.missing());
+			});
+		} finally {
+			out.flush();
+		}
+	}
+
+	public void printRemoveStudentFromCourse(int studentId, int courseId) {
+		try {
+			runInUnitOfWork(() -> {
+				Optional<Student> studentOptional = studentDao.findByID(studentId);
+				Optional<Course> courseOptional = courseDao.findByID(courseId);
+
+				if (studentOptional.isPresent() && courseOptional.isPresent()) {
+					Student student = studentOptional.get();
+					studentDao.removeStudentFromCourse(student, courseId);
+					out.print("Removed student with ID ").print(student.id()).print(" from course with ID: ").print(courseId).println();
+				} else {
+					printNotFound(studentId, courseId);
+				}
+			});
+		} finally {
+			out.flush();
+		}
+	}
+
+	/**
+	 * Prints latency percentiles, row and error counts per query, the most time-consuming first, followed by
+	 * the connection pool metrics.
+	 */
+	public void printStats() {
+		try {
+			if (metrics == null) {
+				out.println("Statistics are not enabled");
+				return;
+			}
+			List<QueryStats.QuerySnapshot> queries = metrics.queries().snapshot();
+			if (queries.isEmpty()) {
+				out.println("No queries executed yet");
 			} else {
-				System.out.println("Error: Student or course not found for IDs - StudentID: " + studentId + ", CourseID: " + courseId);
+				out.println(String.format("%-50s %8s %6s %10s %9s %9s %9s %9s",
+						"Query", "Calls", "Errors", "Rows", "p50 ms", "p99 ms", "p999 ms", "Max ms"));
+				for (QueryStats.QuerySnapshot query : queries) {
+					LatencyHistogram.Snapshot latency = query.latency();
+					out.println(String.format("%-50s %8d %6d %10d %9.3f %9.3f %9.3f %9.3f",
+							query.name(), latency.count(), query.errors(), query.rows(),
+							Metrics.millis(latency.percentileNanos(50)), Metrics.millis(latency.percentileNanos(99)),
+							Metrics.millis(latency.percentileNanos(99.9)), Metrics.millis(latency.maxNanos())));
+				}
+			}
+			if (metrics.pool() != null) {
+				PoolMetrics.PoolSnapshot pool = metrics.pool().snapshot();
+				out.println(String.format("Pool: active=%d, idle=%d, pending=%d, total=%d of %d, timeouts=%d",
+						pool.active(), pool.idle(), pool.pending(), pool.total(), pool.max(), pool.timeouts()));
+				out.println(String.format("Connection acquire: count=%d, p50=%.3f ms, p99=%.3f ms, max=%.3f ms",
+						pool.acquire().count(), Metrics.millis(pool.acquire().percentileNanos(50)),
+						Metrics.millis(pool.acquire().percentileNanos(99)), Metrics.millis(pool.acquire().maxNanos())));
+				out.println(String.format("Connection usage: p50=%.3f ms, p99=%.3f ms",
+						Metrics.millis(pool.usage().percentileNanos(50)), Metrics.millis(pool.usage().percentileNanos(99))));
 			}
-		});
+		} finally {
+			out.flush();
+		}
 	}
 
-	public void printRemoveStudentFromCourse(int studentId, int courseId) {
-		Optional<Student> studentOptional = studentDao.findByID(studentId);
-		Optional<Course> courseOptional = courseDao.findByID(courseId);
+	private <T, E extends Exception> T inUnitOfWork(TransactionalDataSource.Work<T, E> work) throws E {
+		return transactions == null ? work.run() : transactions.inTransaction(work);
+	}
 
-		if (studentOptional.isPresent() && courseOptional.isPresent()) {
-			Student student = studentOptional.get();
-			studentDao.removeStudentFromCourse(student, courseId);
-			System.out.println("Removed student with ID " + student.id() + " from course with ID: " + courseId);
+	private <E extends Exception> void runInUnitOfWork(TransactionalDataSource.Action<E> action) throws E {
+		if (transactions == null) {
+			action.run();
 		} else {
-			System.out.println("Error: Student or course not found for IDs - StudentID: " + studentId + ", CourseID: " + courseId);
+			transactions.runInTransaction(action);
 		}
 	}
-}
 
+	private void printGroup(Group group) {
+		out.print("Group[id=").print(group.id()).print(", name=").print(String.valueOf(group.name())).println("]");
+	}
+
+	private void printStudent(Student student) {
+		out.print(student.firstName()).print(' ').print(student.lastName()).print(" (ID: ").print(student.id()).println(")");
+	}
+
+	/**
+	 * Prints the ids with consecutive runs collapsed into ranges, for example {@code 1-5000, 5002}.
+	 */
+	private void printIds(String label, List<Integer> ids) {
+		if (ids.isEmpty()) {
+			return;
+		}
+		out.print(label).print(" (").print(ids.size()).print("): ");
+		int start = 0;
+		for (int i = 1; i <= ids.size(); i++) {
+			if (i < ids.size() && ids.get(i) == ids.get(i - 1) + 1) {
+				continue;
+			}
+			if (start > 0) {
+				out.print(", ");
+			}
+			out.print(ids.get(start));
+			if (i - 1 > start) {
+				out.print('-').print(ids.get(i - 1));
+			}
+			start = i;
+		}
+		out.println();
+	}
+
+	private void printNotFound(int studentId, int courseId) {
+		out.print("Error: Student or course not found for IDs - StudentID: ").print(studentId)
+				.print(", CourseID: ").print(courseId).println();
+	}
+}
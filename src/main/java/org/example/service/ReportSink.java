@@ -0,0 +1,177 @@
+package org.example.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Buffered destination for report text. Reports append their rows as they go and call {@link #flush} once at
+ * the end, so a report of any size costs one write per {@value #DEFAULT_BUFFER_SIZE} characters instead of
+ * one per line. Text is encoded as UTF-8.
+ */
+public abstract class ReportSink implements AutoCloseable {
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final CharBuffer chars;
+	private final ByteBuffer bytes;
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+	protected ReportSink(int bufferSize) {
+		if (bufferSize < 16) {
+			throw new IllegalArgumentException("Buffer size too small: " + bufferSize);
+		}
+		this.chars = CharBuffer.allocate(bufferSize);
+		this.bytes = ByteBuffer.allocate((int) Math.ceil(bufferSize * (double) encoder.maxBytesPerChar()));
+	}
+
+	/**
+	 * Writes to whatever {@link System#out} is at the time of each flush, so output redirected by the batch
+	 * runner keeps its order with the other console messages.
+	 */
+	public static ReportSink console() {
+		return new ReportSink(DEFAULT_BUFFER_SIZE) {
+			@Override
+			protected void write(ByteBuffer buffer) {
+				System.out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+				buffer.position(buffer.limit());
+			}
+		};
+	}
+
+	/**
+	 * Writes to a file through a {@link FileChannel}, replacing its previous contents.
+	 */
+	public static ReportSink file(Path path) throws IOException {
+		FileChannel channel = FileChannel.open(path,
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		return new ReportSink(DEFAULT_BUFFER_SIZE) {
+			@Override
+			protected void write(ByteBuffer buffer) throws IOException {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			@Override
+			public void close() {
+				try (channel) {
+					super.close();
+				} catch (IOException e) {
+					throw new UncheckedIOException("Failed to close report file " + path, e);
+				}
+			}
+		};
+	}
+
+	public static Memory memory() {
+		return new Memory();
+	}
+
+	/**
+	 * Writes the encoded bytes between the buffer's position and limit.
+	 */
+	protected abstract void write(ByteBuffer buffer) throws IOException;
+
+	public ReportSink print(CharSequence text) {
+		int offset = 0;
+		while (offset < text.length()) {
+			if (!chars.hasRemaining()) {
+				drain();
+			}
+			int count = Math.min(chars.remaining(), text.length() - offset);
+			chars.append(text, offset, offset + count);
+			offset += count;
+		}
+		return this;
+	}
+
+	public ReportSink print(char character) {
+		if (!chars.hasRemaining()) {
+			drain();
+		}
+		chars.put(character);
+		return this;
+	}
+
+	public ReportSink print(int number) {
+		return print(Integer.toString(number));
+	}
+
+	public ReportSink println() {
+		return print(LINE_SEPARATOR);
+	}
+
+	public ReportSink println(CharSequence text) {
+		return print(text).println();
+	}
+
+	/**
+	 * Encodes and writes everything buffered so far.
+	 */
+	public void flush() {
+		drain();
+	}
+
+	@Override
+	public void close() {
+		flush();
+	}
+
+	/**
+	 * A surrogate pair split by the end of the buffer stays behind and is encoded with the next characters.
+	 */
+	private void drain() {
+		chars.flip();
+		try {
+			CoderResult result;
+			do {
+				result = encoder.encode(chars, bytes, false);
+				if (result.isError()) {
+					result.throwException();
+				}
+				bytes.flip();
+				if (bytes.hasRemaining()) {
+					write(bytes);
+				}
+				bytes.clear();
+			} while (result.isOverflow());
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to write report output", e);
+		} finally {
+			chars.compact();
+		}
+	}
+
+	/**
+	 * Keeps the report text in memory, for tests and for callers that post-process a report.
+	 */
+	public static final class Memory extends ReportSink {
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		private Memory() {
+			super(DEFAULT_BUFFER_SIZE);
+		}
+
+		@Override
+		protected void write(ByteBuffer buffer) {
+			output.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			buffer.position(buffer.limit());
+		}
+
+		/**
+		 * Everything flushed so far.
+		 */
+		public String contents() {
+			return output.toString(StandardCharsets.UTF_8);
+		}
+	}
+}
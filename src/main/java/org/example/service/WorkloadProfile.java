@@ -0,0 +1,72 @@
+package org.example.service;
+
+import java.util.Locale;
+
+/**
+ * Shape of the generated data. Uniform data hides hot keys, so the skewed profiles reproduce the
+ * contention and cardinality seen in production: a few very popular courses, groups of very
+ * different sizes, or one course almost everybody takes.
+ */
+public enum WorkloadProfile {
+	UNIFORM {
+		@Override
+		IndexSampler courseSampler(int courses) {
+			return IndexSampler.uniform(courses);
+		}
+
+		@Override
+		IndexSampler groupSampler(int groups) {
+			return IndexSampler.roundRobin(groups);
+		}
+	},
+
+	ZIPFIAN_COURSES {
+		@Override
+		IndexSampler courseSampler(int courses) {
+			return IndexSampler.zipf(courses, ZIPF_EXPONENT);
+		}
+
+		@Override
+		IndexSampler groupSampler(int groups) {
+			return IndexSampler.roundRobin(groups);
+		}
+	},
+
+	LONG_TAIL_GROUPS {
+		@Override
+		IndexSampler courseSampler(int courses) {
+			return IndexSampler.uniform(courses);
+		}
+
+		@Override
+		IndexSampler groupSampler(int groups) {
+			return IndexSampler.zipf(groups, ZIPF_EXPONENT);
+		}
+	},
+
+	MEGA_COURSE {
+		@Override
+		IndexSampler courseSampler(int courses) {
+			return IndexSampler.hotSpot(courses, MEGA_COURSE_SHARE);
+		}
+
+		@Override
+		IndexSampler groupSampler(int groups) {
+			return IndexSampler.roundRobin(groups);
+		}
+	};
+
+	static final double ZIPF_EXPONENT = 1.1;
+	static final double MEGA_COURSE_SHARE = 0.9;
+
+	abstract IndexSampler courseSampler(int courses);
+
+	abstract IndexSampler groupSampler(int groups);
+
+	/**
+	 * Accepts the constant name in any case, with dashes in place of underscores, e.g. {@code zipfian-courses}.
+	 */
+	public static WorkloadProfile parse(String name) {
+		return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+	}
+}
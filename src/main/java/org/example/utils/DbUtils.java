@@ -2,6 +2,7 @@ package org.example.utils;
 
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
 
 import java.io.IOException;
 import java.io.UncheckedIOException;
@@ -15,9 +16,19 @@ public final class DbUtils {
 	}
 
 	public static HikariDataSource createDataSource() {
+		return createDataSource(null);
+	}
+
+	/**
+	 * @param metricsTrackerFactory optional receiver of the pool's connection acquire, usage and timeout metrics
+	 */
+	public static HikariDataSource createDataSource(MetricsTrackerFactory metricsTrackerFactory) {
 		Properties properties = loadProperties();
 		HikariConfig config = new HikariConfig(properties);
 		config.setMaximumPoolSize(10);
+		if (metricsTrackerFactory != null) {
+			config.setMetricsTrackerFactory(metricsTrackerFactory);
+		}
 		return new HikariDataSource(config);
 	}
 
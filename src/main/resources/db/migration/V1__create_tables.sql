@@ -1,11 +1,3 @@
-DROP TABLE IF EXISTS student_course;
-
-DROP TABLE IF EXISTS courses;
-
-DROP TABLE IF EXISTS students;
-
-DROP TABLE IF EXISTS groups;
-
 CREATE TABLE groups (
 	group_id SERIAL PRIMARY KEY,
 	group_name VARCHAR(255) NOT NULL
@@ -28,4 +20,4 @@ CREATE TABLE student_course (
 	student_courses_id SERIAL PRIMARY KEY,
 	student_id INTEGER NOT NULL REFERENCES students (student_id) ON DELETE CASCADE,
 	course_id INTEGER  NOT NULL REFERENCES courses (course_id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
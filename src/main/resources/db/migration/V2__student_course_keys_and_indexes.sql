@@ -0,0 +1,17 @@
+-- Keep one row per enrollment so that the composite key can be added.
+DELETE FROM student_course
+WHERE student_courses_id NOT IN (
+	SELECT MIN(student_courses_id) FROM student_course GROUP BY student_id, course_id
+);
+
+ALTER TABLE student_course DROP COLUMN student_courses_id;
+
+ALTER TABLE student_course ADD PRIMARY KEY (student_id, course_id);
+
+-- Course-to-students lookups and the ON DELETE CASCADE from courses.
+CREATE INDEX student_course_course_id_student_id_idx ON student_course (course_id, student_id);
+
+CREATE INDEX courses_course_name_idx ON courses (course_name);
+
+-- Group size aggregates and the foreign key check when a group is deleted.
+CREATE INDEX students_group_id_idx ON students (group_id);
@@ -0,0 +1,152 @@
+package org.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestReadThroughCache {
+	private final AtomicLong now = new AtomicLong();
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	public void testHitAfterLoad() {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10, Duration.ofMinutes(1), now::get);
+
+		assertEquals("v1", cache.get(1, this::load));
+		assertEquals("v1", cache.get(1, this::load));
+
+		CacheStats stats = cache.stats();
+		assertEquals(1, stats.hits());
+		assertEquals(1, stats.misses());
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	public void testEntriesExpireAfterTimeToLive() {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10, Duration.ofSeconds(5), now::get);
+		cache.get(1, this::load);
+
+		now.addAndGet(Duration.ofSeconds(4).toNanos());
+		cache.get(1, this::load);
+		assertEquals(1, loads.get());
+
+		now.addAndGet(Duration.ofSeconds(1).toNanos());
+		cache.get(1, this::load);
+		assertEquals(2, loads.get());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEntryIsEvicted() {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 2, Duration.ofMinutes(1), now::get);
+		cache.get(1, this::load);
+		cache.get(2, this::load);
+		cache.get(1, this::load);
+		cache.get(3, this::load);
+
+		assertNotNull(cache.getIfPresent(1));
+		assertNull(cache.getIfPresent(2));
+		assertEquals(1, cache.stats().evictions());
+		assertEquals(2, cache.stats().size());
+	}
+
+	@Test
+	public void testInvalidateForcesReload() {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10, Duration.ofMinutes(1), now::get);
+		cache.get(1, this::load);
+		cache.invalidate(1);
+		cache.get(1, this::load);
+		cache.invalidateAll();
+		cache.get(1, this::load);
+
+		assertEquals(3, loads.get());
+	}
+
+	@Test
+	public void testConcurrentMissesShareOneLoad() throws Exception {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10, Duration.ofMinutes(1), now::get);
+		CountDownLatch loadStarted = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<String> first = executor.submit(() -> cache.get(1, key -> {
+				loadStarted.countDown();
+				await(release);
+				return load(key);
+			}));
+			assertTrue(loadStarted.await(5, TimeUnit.SECONDS));
+			FutureTask<String> second = new FutureTask<>(() -> cache.get(1, this::load));
+			FutureTask<String> third = new FutureTask<>(() -> cache.get(1, this::load));
+			Thread secondThread = new Thread(second);
+			Thread thirdThread = new Thread(third);
+			secondThread.start();
+			thirdThread.start();
+			// Only joining the running load parks them; until then they could still start a load of their own
+			awaitWaiting(secondThread);
+			awaitWaiting(thirdThread);
+			release.countDown();
+
+			assertEquals("v1", first.get(5, TimeUnit.SECONDS));
+			assertEquals("v1", second.get(5, TimeUnit.SECONDS));
+			assertEquals("v1", third.get(5, TimeUnit.SECONDS));
+			assertEquals(1, loads.get());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testLoadOverlappingInvalidationIsNotStored() {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10, Duration.ofMinutes(1), now::get);
+		cache.get(1, key -> {
+			cache.invalidate(key);
+			return load(key);
+		});
+
+		assertNull(cache.getIfPresent(1));
+	}
+
+	@Test
+	public void testPutIfUnchangedSkipsValuesReadBeforeAnInvalidation() {
+		ReadThroughCache<Integer, String> cache = new ReadThroughCache<>("test", 10, Duration.ofMinutes(1), now::get);
+		long stamp = cache.stamp();
+		cache.invalidate(1);
+		cache.putIfUnchanged(1, "stale", stamp);
+		assertNull(cache.getIfPresent(1));
+
+		cache.putIfUnchanged(1, "fresh", cache.stamp());
+		assertEquals("fresh", cache.getIfPresent(1));
+	}
+
+	private String load(int key) {
+		loads.incrementAndGet();
+		return "v" + key;
+	}
+
+	private static void awaitWaiting(Thread thread) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (thread.getState() != Thread.State.WAITING) {
+			assertTrue(thread.isAlive() && System.nanoTime() < deadline, "Thread never joined the running load");
+			Thread.sleep(1);
+		}
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			assertTrue(latch.await(5, TimeUnit.SECONDS));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package org.example.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestTinyLfuCache {
+	private final AtomicLong now = new AtomicLong();
+
+	@Test
+	public void testHotEntriesSurviveInterleavedScan() {
+		TinyLfuCache<Integer, String> cache = newCache(100);
+		int hotKeys = 80;
+		long hotHits = 0;
+		for (int i = 0; i < 20_000; i++) {
+			int hot = i % hotKeys;
+			if (cache.getIfPresent(hot) != null) {
+				hotHits++;
+			} else {
+				cache.put(hot, "hot");
+			}
+			cache.get(1_000 + i, String::valueOf);
+		}
+
+		// Every hot key is reused after 160 distinct keys, so a plain LRU of 100 entries would never hit.
+		assertTrue(hotHits > 20_000 * 0.9, "hot hits: " + hotHits);
+		assertTrue(cache.stats().evictions() > 0);
+	}
+
+	@Test
+	public void testWeightStaysWithinBudget() {
+		TinyLfuCache<Integer, String> cache = new TinyLfuCache<>("test", 1_000, Duration.ofMinutes(1), String::length, now::get);
+		for (int key = 0; key < 500; key++) {
+			cache.get(key, k -> "x".repeat(1 + k % 40));
+			assertTrue(cache.weightedSize() <= 1_000);
+		}
+		cache.put(-1, "x".repeat(1_001));
+		assertNull(cache.getIfPresent(-1));
+	}
+
+	@Test
+	public void testNullLoadsAreNotCached() {
+		TinyLfuCache<Integer, String> cache = newCache(10);
+		assertNull(cache.get(1, key -> null));
+		assertNull(cache.get(1, key -> null));
+		assertEquals(2, cache.stats().loads());
+		assertEquals(0, cache.stats().size());
+	}
+
+	@Test
+	public void testWriteDiscardsOverlappingLoad() {
+		TinyLfuCache<Integer, String> cache = newCache(10);
+		String loaded = cache.get(1, key -> {
+			cache.put(key, "written");
+			return "stale";
+		});
+
+		assertEquals("stale", loaded);
+		assertEquals("written", cache.getIfPresent(1));
+	}
+
+	@Test
+	public void testPutIfUnchangedSkipsValuesReadBeforeAWrite() {
+		TinyLfuCache<Integer, String> cache = newCache(10);
+		long stamp = cache.stamp();
+		cache.invalidate(1);
+		cache.putIfUnchanged(1, "stale", stamp);
+		assertNull(cache.getIfPresent(1));
+
+		cache.putIfUnchanged(1, "fresh", cache.stamp());
+		assertEquals("fresh", cache.getIfPresent(1));
+	}
+
+	@Test
+	public void testComputeIfPresentOnlyTouchesCachedKeys() {
+		TinyLfuCache<Integer, String> cache = newCache(10);
+		cache.put(1, "a");
+		cache.computeIfPresent(1, value -> value + "b");
+		cache.computeIfPresent(2, value -> value + "b");
+		cache.computeIfPresent(1, value -> value + "c");
+
+		assertEquals("abc", cache.getIfPresent(1));
+		assertNull(cache.getIfPresent(2));
+
+		cache.computeIfPresent(1, value -> null);
+		assertNull(cache.getIfPresent(1));
+	}
+
+	@Test
+	public void testEntriesExpireAfterTimeToLive() {
+		TinyLfuCache<Integer, String> cache = newCache(10);
+		cache.put(1, "a");
+		now.addAndGet(Duration.ofMinutes(1).toNanos());
+
+		assertNull(cache.getIfPresent(1));
+		assertEquals(0, cache.weightedSize());
+	}
+
+	private TinyLfuCache<Integer, String> newCache(long maximumWeight) {
+		return new TinyLfuCache<>("test", maximumWeight, Duration.ofMinutes(1), value -> 1, now::get);
+	}
+}
@@ -0,0 +1,69 @@
+package org.example.dao;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Test helper that counts connection acquisitions and prepared statements issued through a {@link DataSource}.
+ */
+final class CountingDataSource {
+	private final AtomicInteger connections = new AtomicInteger();
+	private final AtomicInteger statements = new AtomicInteger();
+	private final DataSource dataSource;
+
+	CountingDataSource(DataSource delegate) {
+		this.dataSource = (DataSource) Proxy.newProxyInstance(
+				DataSource.class.getClassLoader(),
+				new Class<?>[]{DataSource.class},
+				(proxy, method, args) -> {
+					Object result = invoke(delegate, method, args);
+					if (method.getName().equals("getConnection")) {
+						connections.incrementAndGet();
+						return countStatements((Connection) result);
+					}
+					return result;
+				});
+	}
+
+	DataSource dataSource() {
+		return dataSource;
+	}
+
+	int connections() {
+		return connections.get();
+	}
+
+	int statements() {
+		return statements.get();
+	}
+
+	void reset() {
+		connections.set(0);
+		statements.set(0);
+	}
+
+	private Connection countStatements(Connection connection) {
+		return (Connection) Proxy.newProxyInstance(
+				Connection.class.getClassLoader(),
+				new Class<?>[]{Connection.class},
+				(proxy, method, args) -> {
+					String name = method.getName();
+					if (name.equals("prepareStatement") || name.equals("createStatement") || name.equals("prepareCall")) {
+						statements.incrementAndGet();
+					}
+					return invoke(connection, method, args);
+				});
+	}
+
+	private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(target, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package org.example.dao;
+
+import org.example.runner.SchemaMigrator;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Gives every test an empty database at the newest schema version.
+ */
+final class DatabaseFixture {
+	private DatabaseFixture() {
+	}
+
+	static void reset(DataSource dataSource) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("DROP ALL OBJECTS");
+		}
+		SchemaMigrator.migrate(dataSource);
+	}
+}
@@ -1,8 +1,11 @@
 package org.example.dao;
 
+import org.example.cache.ReadThroughCache;
+import org.example.cache.StudentCache;
 import org.example.exceptions.DbException;
 import org.example.model.Course;
-import org.example.runner.DbLoader;
+import org.example.model.Group;
+import org.example.model.Student;
 import org.h2.jdbcx.JdbcConnectionPool;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,32 +13,32 @@ import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 class TestCourseDao {
 	private CourseDao courseDao;
 	private Connection connection;
+	private DataSource dataSource;
 
 	@BeforeEach
 	public void setup() {
-		DataSource dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" +
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" +
 				"MODE=PostgreSQL;" +
 				"DATABASE_TO_UPPER=false;" +
 				"DB_CLOSE_ON_EXIT=FALSE", "sa", "");
 		try (Connection connection = dataSource.getConnection()) {
 			this.connection = connection;
-			executeSQLScript("create_table.sql");
+			DatabaseFixture.reset(dataSource);
 			courseDao = new CourseDao(dataSource);
 		} catch (Exception e) {
 			System.err.println("Error creating tables: " + e.getMessage());
@@ -107,24 +110,118 @@ class TestCourseDao {
 	}
 
 
-	private void executeSQLScript(String scriptFileName) throws IOException, SQLException {
-		try (Statement statement = connection.createStatement();
-			 InputStreamReader reader = new InputStreamReader(Objects.requireNonNull(DbLoader.class.getResourceAsStream("/" + scriptFileName)))) {
+	@Test
+	public void testStreamAll() {
+		List<Course> courseList = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			Course course = new Course(i, "Course" + i, "Description" + i);
+			courseList.add(course);
+			courseDao.save(course);
+		}
+		try (Stream<Course> courses = courseDao.streamAll(4)) {
+			assertEquals(courseList, courses.toList());
+		}
+	}
 
-			try (BufferedReader bufferedReader = new BufferedReader(reader)) {
-				String line;
-				StringBuilder script = new StringBuilder();
+	@Test
+	public void testFindPage() {
+		for (int i = 1; i <= 10; i++) {
+			courseDao.save(new Course(i, "Course" + i, "Description" + i));
+		}
+		Page<Course> firstPage = courseDao.findPage(Page.FIRST_KEY, 5);
+		assertEquals(List.of(1, 2, 3, 4, 5), firstPage.items().stream().map(Course::id).toList());
+		assertTrue(firstPage.hasNext());
 
-				while ((line = bufferedReader.readLine()) != null) {
-					script.append(line).append(" ");
-					if (line.endsWith(";")) {
-						String sqlCommand = script.toString();
-						statement.execute(sqlCommand);
-						script.setLength(0);
-					}
-				}
-			}
+		Page<Course> lastPage = courseDao.findPage(firstPage.nextKey(), 5);
+		assertEquals(List.of(6, 7, 8, 9, 10), lastPage.items().stream().map(Course::id).toList());
+		assertFalse(lastPage.hasNext());
+	}
+
+	@Test
+	public void testFindByIdThroughCache() {
+		ReadThroughCache<Integer, Optional<Course>> cache = new ReadThroughCache<>("courses", 10, Duration.ofMinutes(1));
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		CourseDao cachedDao = new CourseDao(counting.dataSource(), cache);
+		cachedDao.save(new Course(1, "Math", "Math"));
+		counting.reset();
+
+		assertEquals("Math", cachedDao.findByID(1).orElseThrow().name());
+		assertEquals("Math", cachedDao.findByID(1).orElseThrow().name());
+		assertEquals(1, counting.statements());
+		assertEquals(1, cache.stats().hits());
+
+		cachedDao.update(new Course(1, "Physics", "Physics"));
+		assertEquals("Physics", cachedDao.findByID(1).orElseThrow().name());
+
+		cachedDao.delete(new Course(1, "Physics", "Physics"));
+		assertTrue(cachedDao.findByID(1).isEmpty());
+	}
+
+	@Test
+	public void testSaveInvalidatesOnlyTheSavedCourse() {
+		ReadThroughCache<Integer, Optional<Course>> cache = new ReadThroughCache<>("courses", 10, Duration.ofMinutes(1));
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		CourseDao cachedDao = new CourseDao(counting.dataSource(), cache);
+		cachedDao.save(new Course(1, "Math", "Math"));
+		cachedDao.findByID(1);
+		assertTrue(cachedDao.findByID(2).isEmpty());
+
+		cachedDao.save(new Course(2, "Physics", "Physics"));
+		counting.reset();
+
+		assertEquals("Physics", cachedDao.findByID(2).orElseThrow().name());
+		assertEquals("Math", cachedDao.findByID(1).orElseThrow().name());
+		assertEquals(1, counting.statements());
+	}
+
+	@Test
+	public void testCourseAndGroupWritesInvalidateCachedStudents() {
+		new GroupDao(dataSource).save(new Group(1, "Group"));
+		courseDao.save(new Course(1, "Math", "Math"));
+		courseDao.save(new Course(2, "Physics", "Physics"));
+		StudentCache studentCache = new StudentCache(1024 * 1024, Duration.ofMinutes(1));
+		CourseStudentIndex courseIndex = CourseStudentIndex.load(dataSource);
+		StudentDao studentDao = new StudentDao(dataSource, studentCache, courseIndex);
+		CourseDao indexedCourseDao = new CourseDao(dataSource, null, courseIndex, studentCache);
+		GroupDao groupDao = new GroupDao(dataSource, null, null, studentCache);
+		studentDao.save(new Student(1, "Ann", "Lee", new Group(1, "Group"), new ArrayList<>()));
+		studentDao.save(new Student(2, "Bob", "Ray", new Group(1, "Group"), new ArrayList<>()));
+		studentDao.addStudentToCourse(studentDao.findByID(1).orElseThrow(), 1);
+		studentDao.addStudentToCourse(studentDao.findByID(2).orElseThrow(), 2);
+
+		indexedCourseDao.update(new Course(1, "Algebra", "Algebra"));
+		assertNull(studentCache.getIfPresent(1));
+		assertNotNull(studentCache.getIfPresent(2));
+		assertEquals("Algebra", studentDao.findByID(1).orElseThrow().courseList().get(0).name());
+
+		indexedCourseDao.delete(new Course(1, "Algebra", "Algebra"));
+		assertTrue(studentDao.findByID(1).orElseThrow().courseList().isEmpty());
+
+		groupDao.update(new Group(1, "Renamed"));
+		assertEquals("Renamed", studentDao.findByID(2).orElseThrow().group().name());
+	}
+
+	@Test
+	public void testFindAllByIdsThroughCache() {
+		ReadThroughCache<Integer, Optional<Course>> cache = new ReadThroughCache<>("courses", 10, Duration.ofMinutes(1));
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		CourseDao cachedDao = new CourseDao(counting.dataSource(), cache);
+		for (int i = 1; i <= 3; i++) {
+			cachedDao.save(new Course(i, "Course" + i, "Description" + i));
 		}
+		cachedDao.findByID(1);
+		counting.reset();
+
+		Map<Integer, Course> courses = cachedDao.findAllByIds(List.of(3, 99, 1, 2, 3));
+		assertEquals(List.of(3, 1, 2), List.copyOf(courses.keySet()));
+		assertEquals("Course2", courses.get(2).name());
+		assertEquals(1, counting.statements());
+
+		counting.reset();
+		assertEquals(courses, cachedDao.findAllByIds(List.of(3, 1, 2)));
+		assertEquals(0, counting.connections());
+		assertTrue(cachedDao.findAllByIds(List.of()).isEmpty());
+		assertEquals(0, counting.connections());
 	}
 
 	@AfterEach
@@ -0,0 +1,110 @@
+package org.example.dao;
+
+import org.example.model.Course;
+import org.example.model.Group;
+import org.example.model.Student;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestCourseStudentIndex {
+	private DataSource dataSource;
+	private StudentDao studentDao;
+	private CourseDao courseDao;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" + "MODE=PostgreSQL;" + "DATABASE_TO_UPPER=false;" + "DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		DatabaseFixture.reset(dataSource);
+		new GroupDao(dataSource).save(new Group(1, "Group"));
+		courseDao = new CourseDao(dataSource);
+		courseDao.save(new Course(1, "Math", "Math"));
+		courseDao.save(new Course(2, "Art", "Art"));
+		courseDao.save(new Course(3, "Math", "Applied math"));
+		studentDao = new StudentDao(dataSource);
+		for (int i = 1; i <= 6; i++) {
+			studentDao.save(new Student(i, "First" + i, "Last" + i, new Group(1, "Group"), new ArrayList<>()));
+		}
+		enroll(1, 1);
+		enroll(2, 1);
+		enroll(2, 2);
+		enroll(3, 2);
+		enroll(4, 3);
+		enroll(4, 2);
+	}
+
+	@Test
+	public void testLoadIndexesEnrollmentsByCourseAndName() {
+		CourseStudentIndex index = CourseStudentIndex.load(dataSource);
+
+		assertEquals(6, index.enrollments());
+		assertEquals(RoaringBitmap.bitmapOf(1, 2), index.studentsOfCourse(1));
+		assertEquals(RoaringBitmap.bitmapOf(1, 2, 4), index.studentsOfCourseName("Math"));
+		assertEquals(RoaringBitmap.bitmapOf(2, 4), index.studentsInAll(List.of("Math", "Art")));
+		assertEquals(RoaringBitmap.bitmapOf(1, 2, 3, 4), index.studentsInAny(List.of("Math", "Art")));
+		assertTrue(index.studentsInAll(List.of("Math", "History")).isEmpty());
+	}
+
+	@Test
+	public void testQueriesReturnCopies() {
+		CourseStudentIndex index = CourseStudentIndex.load(dataSource);
+		index.studentsOfCourse(1).add(99);
+		index.studentsOfCourseName("Math").add(99);
+
+		assertEquals(RoaringBitmap.bitmapOf(1, 2, 4), index.studentsOfCourseName("Math"));
+	}
+
+	@Test
+	public void testIndexedDaoMatchesSql() {
+		CourseStudentIndex index = CourseStudentIndex.load(dataSource);
+		StudentDao indexedDao = new StudentDao(dataSource, null, index);
+
+		assertEquals(studentDao.findStudentsByCourseName("Math"), indexedDao.findStudentsByCourseName("Math"));
+		assertEquals(studentDao.findStudentsInAllCourses(List.of("Math", "Art")), indexedDao.findStudentsInAllCourses(List.of("Math", "Art")));
+		assertEquals(studentDao.findStudentsInAnyCourse(List.of("Math", "Art")), indexedDao.findStudentsInAnyCourse(List.of("Math", "Art")));
+		assertEquals(List.of(2, 4), ids(studentDao.findStudentsInAllCourses(List.of("Math", "Art"))));
+		assertEquals(List.of(1, 2, 3, 4), ids(studentDao.findStudentsInAnyCourse(List.of("Art", "Math"))));
+	}
+
+	@Test
+	public void testIndexFollowsWritesThroughDaos() {
+		CourseStudentIndex index = CourseStudentIndex.load(dataSource);
+		StudentDao indexedStudentDao = new StudentDao(dataSource, null, index);
+		CourseDao indexedCourseDao = new CourseDao(dataSource, null, index);
+		Student fifth = indexedStudentDao.findByID(5).orElseThrow();
+
+		indexedStudentDao.addStudentToCourse(fifth, 2);
+		indexedStudentDao.removeStudentFromCourse(indexedStudentDao.findByID(3).orElseThrow(), 2);
+		indexedStudentDao.delete(indexedStudentDao.findByID(4).orElseThrow());
+		assertEquals(List.of(2, 5), ids(indexedStudentDao.findStudentsByCourseName("Art")));
+
+		indexedCourseDao.save(new Course(0, "History", "History"));
+		indexedStudentDao.addStudentToCourse(fifth, 4);
+		assertEquals(List.of(5), ids(indexedStudentDao.findStudentsInAllCourses(List.of("Art", "History"))));
+
+		indexedCourseDao.update(new Course(1, "Algebra", "Algebra"));
+		assertEquals(List.of(1, 2), ids(indexedStudentDao.findStudentsByCourseName("Algebra")));
+		assertTrue(indexedStudentDao.findStudentsByCourseName("Math").isEmpty());
+
+		indexedCourseDao.delete(new Course(2, "Art", "Art"));
+		assertTrue(indexedStudentDao.findStudentsByCourseName("Art").isEmpty());
+		assertEquals(studentDao.findStudentsInAnyCourse(List.of("Algebra", "History")),
+				indexedStudentDao.findStudentsInAnyCourse(List.of("Algebra", "History")));
+	}
+
+	private void enroll(int studentId, int courseId) {
+		studentDao.addStudentToCourse(new Student(studentId, "", "", null, List.of()), courseId);
+	}
+
+	private static List<Integer> ids(List<Student> students) {
+		return students.stream().map(Student::id).toList();
+	}
+}
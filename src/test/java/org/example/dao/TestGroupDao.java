@@ -3,36 +3,35 @@ package org.example.dao;
 import org.example.exceptions.DbException;
 
 import org.example.model.Group;
-import org.example.runner.DbLoader;
 import org.h2.jdbcx.JdbcConnectionPool;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TestGroupDao {
 	private GroupDao groupDao;
 	private Connection connection;
+	private DataSource dataSource;
 
 	@BeforeEach
 	public void setup() {
-		DataSource dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" + "MODE=PostgreSQL;" + "DATABASE_TO_UPPER=false;" + "DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" + "MODE=PostgreSQL;" + "DATABASE_TO_UPPER=false;" + "DB_CLOSE_ON_EXIT=FALSE", "sa", "");
 		try (Connection connection = dataSource.getConnection()) {
 			this.connection = connection;
-			executeSQLScript("create_table.sql");
+			DatabaseFixture.reset(dataSource);
 			groupDao = new GroupDao(dataSource);
 		} catch (Exception e) {
 			System.err.println("Error creating tables: " + e.getMessage());
@@ -115,21 +114,59 @@ public class TestGroupDao {
 		assertFalse(deletedGroupOptional.isPresent());
 	}
 
-	private void executeSQLScript(String scriptFileName) throws IOException, SQLException {
-		try (Statement statement = connection.createStatement(); InputStreamReader reader = new InputStreamReader(Objects.requireNonNull(DbLoader.class.getResourceAsStream("/" + scriptFileName)))) {
-			try (BufferedReader bufferedReader = new BufferedReader(reader)) {
-				String line;
-				StringBuilder script = new StringBuilder();
-				while ((line = bufferedReader.readLine()) != null) {
-					script.append(line).append(" ");
-					if (line.endsWith(";")) {
-						String sqlCommand = script.toString();
-						statement.execute(sqlCommand);
-						script.setLength(0);
-					}
-				}
+	@Test
+	public void testStreamAll() {
+		List<Group> groupList = new ArrayList<>();
+		for (int i = 1; i <= 10; i++) {
+			Group group = new Group(i, "Group" + i);
+			groupList.add(group);
+			groupDao.save(group);
+		}
+		try (Stream<Group> groups = groupDao.streamAll(4)) {
+			assertEquals(groupList, groups.toList());
+		}
+	}
+
+	@Test
+	public void testFindPage() {
+		for (int i = 1; i <= 10; i++) {
+			groupDao.save(new Group(i, "Group" + i));
+		}
+		Page<Group> firstPage = groupDao.findPage(Page.FIRST_KEY, 6);
+		assertEquals(6, firstPage.items().size());
+		assertTrue(firstPage.hasNext());
+
+		Page<Group> lastPage = groupDao.findPage(firstPage.nextKey(), 6);
+		assertEquals(List.of(7, 8, 9, 10), lastPage.items().stream().map(Group::id).toList());
+		assertFalse(lastPage.hasNext());
+	}
+
+	@Test
+	public void testFindAllByIdsBindsChunksOnOneConnection() throws SQLException {
+		int groups = Dao.ID_CHUNK_SIZE + 200;
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement preparedStatement = connection.prepareStatement("INSERT INTO groups (group_id, group_name) VALUES (?, ?)")) {
+			for (int i = 1; i <= groups; i++) {
+				preparedStatement.setInt(1, i);
+				preparedStatement.setString(2, "Group" + i);
+				preparedStatement.addBatch();
 			}
+			preparedStatement.executeBatch();
+		}
+		List<Integer> ids = new ArrayList<>();
+		for (int i = groups + 1; i >= 1; i--) {
+			ids.add(i);
 		}
+		CountingDataSource counting = new CountingDataSource(dataSource);
+
+		Map<Integer, Group> found = new GroupDao(counting.dataSource()).findAllByIds(ids);
+
+		assertEquals(groups, found.size());
+		assertFalse(found.containsKey(groups + 1));
+		assertEquals(groups, found.keySet().iterator().next());
+		assertEquals("Group7", found.get(7).name());
+		assertEquals(1, counting.connections());
+		assertEquals(1, counting.statements());
 	}
 
 	@AfterEach
@@ -0,0 +1,114 @@
+package org.example.dao;
+
+import org.example.model.Group;
+import org.example.model.Student;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestGroupSizeIndex {
+	private DataSource dataSource;
+	private GroupDao sqlGroupDao;
+	private GroupDao indexedGroupDao;
+	private StudentDao indexedStudentDao;
+	private GroupSizeIndex groupSizes;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" + "MODE=PostgreSQL;" + "DATABASE_TO_UPPER=false;" + "DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		DatabaseFixture.reset(dataSource);
+		sqlGroupDao = new GroupDao(dataSource);
+		for (int i = 1; i <= 4; i++) {
+			sqlGroupDao.save(new Group(i, "Group" + i));
+		}
+		StudentDao studentDao = new StudentDao(dataSource);
+		for (int i = 0; i < 6; i++) {
+			studentDao.save(student(0, i < 3 ? 1 : i < 5 ? 2 : 3));
+		}
+		groupSizes = GroupSizeIndex.load(dataSource);
+		indexedGroupDao = new GroupDao(dataSource, null, groupSizes);
+		indexedStudentDao = new StudentDao(dataSource, null, null, groupSizes);
+	}
+
+	@Test
+	public void testLoadMatchesAggregate() throws SQLException {
+		assertEquals(List.of(0, 1, 2, 3), List.of(groupSizes.size(4), groupSizes.size(3), groupSizes.size(2), groupSizes.size(1)));
+		assertSameGroups();
+		assertEquals(List.of(4, 3), indexedGroupDao.findGroupsWithLessOrEqualStudents(1).stream().map(Group::id).toList());
+	}
+
+	@Test
+	public void testStudentWritesKeepSizesCurrent() throws SQLException {
+		indexedStudentDao.save(student(0, 4));
+		indexedStudentDao.update(student(1, 3));
+		indexedStudentDao.delete(student(4, 2));
+		indexedStudentDao.delete(student(4, 2));
+
+		assertEquals(List.of(2, 1, 2, 1), List.of(groupSizes.size(1), groupSizes.size(2), groupSizes.size(3), groupSizes.size(4)));
+		assertSameGroups();
+		assertEquals(0, groupSizes.reconcile(dataSource));
+	}
+
+	@Test
+	public void testGroupWritesKeepGroupsCurrent() throws SQLException {
+		indexedGroupDao.save(new Group(5, "Group5"));
+		indexedGroupDao.update(new Group(4, "Renamed"));
+		indexedGroupDao.update(new Group(42, "Missing"));
+
+		assertEquals(List.of(new Group(4, "Renamed"), new Group(5, "Group5")), indexedGroupDao.findGroupsWithLessOrEqualStudents(0));
+		indexedGroupDao.delete(new Group(5, "Group5"));
+		assertSameGroups();
+	}
+
+	@Test
+	public void testReconcileCorrectsDrift() throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.executeUpdate("INSERT INTO students (group_id, first_name, last_name) VALUES (4, 'X', 'X')");
+			statement.executeUpdate("DELETE FROM students WHERE group_id = 1");
+		}
+
+		assertEquals(2, groupSizes.reconcile(dataSource));
+		assertEquals(1, groupSizes.size(4));
+		assertEquals(0, groupSizes.size(1));
+		assertSameGroups();
+	}
+
+	@Test
+	public void testReconcileBetweenCommitAndIndexUpdateDoesNotCountTwice() throws SQLException {
+		TransactionalDataSource transactions = new TransactionalDataSource(dataSource);
+		StudentDao studentDao = new StudentDao(transactions, null, null, groupSizes);
+		transactions.runInTransaction(() -> {
+			transactions.afterCommit(() -> assertEquals(0, groupSizes.reconcile(dataSource)));
+			studentDao.save(student(0, 4));
+		});
+
+		assertEquals(1, groupSizes.size(4));
+		assertSameGroups();
+		assertEquals(0, groupSizes.reconcile(dataSource));
+	}
+
+	private void assertSameGroups() throws SQLException {
+		for (int maxStudents = 0; maxStudents <= 4; maxStudents++) {
+			List<Group> expected = new ArrayList<>(sqlGroupDao.findGroupsWithLessOrEqualStudents(maxStudents));
+			List<Group> actual = new ArrayList<>(indexedGroupDao.findGroupsWithLessOrEqualStudents(maxStudents));
+			expected.sort(Comparator.comparingInt(Group::id));
+			actual.sort(Comparator.comparingInt(Group::id));
+			assertEquals(expected, actual, "at most " + maxStudents);
+		}
+	}
+
+	private static Student student(int id, int groupId) {
+		return new Student(id, "First" + id, "Last" + id, new Group(groupId, "Group" + groupId), new ArrayList<>());
+	}
+}
@@ -0,0 +1,85 @@
+package org.example.dao;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.exceptions.DbException;
+import org.example.metrics.Metrics;
+import org.example.metrics.PoolMetrics;
+import org.example.metrics.QueryStats;
+import org.example.model.Group;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestInstrumentedDataSource {
+	private HikariDataSource pool;
+	private PoolMetrics poolMetrics;
+	private QueryStats queryStats;
+	private GroupDao groupDao;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl("jdbc:h2:mem:metricsdb;MODE=PostgreSQL;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1");
+		config.setUsername("sa");
+		config.setPassword("");
+		config.setMaximumPoolSize(2);
+		poolMetrics = new PoolMetrics();
+		config.setMetricsTrackerFactory(poolMetrics);
+		pool = new HikariDataSource(config);
+		DatabaseFixture.reset(pool);
+		queryStats = QueryStats.namedAfterConstants(GroupDao.class);
+		groupDao = new GroupDao(new InstrumentedDataSource(pool, queryStats));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		pool.close();
+	}
+
+	@Test
+	public void testRecordsCallsRowsAndErrorsPerNamedQuery() {
+		for (int i = 1; i <= 3; i++) {
+			groupDao.save(new Group(i, "Group" + i));
+		}
+		assertThrows(DbException.class, () -> groupDao.save(new Group(1, "Duplicate")));
+		assertEquals(3, groupDao.findAll().size());
+		groupDao.findByID(42);
+
+		Map<String, QueryStats.QuerySnapshot> queries = queryStats.snapshot().stream()
+				.collect(Collectors.toMap(QueryStats.QuerySnapshot::name, Function.identity()));
+		QueryStats.QuerySnapshot insert = queries.get("GroupDao.INSERT_GROUP");
+		assertEquals(4, insert.latency().count());
+		assertEquals(1, insert.errors());
+		assertEquals(3, insert.rows());
+		assertEquals(3, queries.get("GroupDao.SELECT_ALL_GROUPS").rows());
+		assertEquals(1, queries.get("GroupDao.SELECT_GROUP_BY_ID").latency().count());
+		assertEquals(0, queries.get("GroupDao.SELECT_GROUP_BY_ID").rows());
+		assertTrue(queries.get("GroupDao.SELECT_ALL_GROUPS").latency().percentileNanos(99) > 0);
+	}
+
+	@Test
+	public void testMetricsArePublishedOverJmx() throws Exception {
+		groupDao.save(new Group(1, "Group"));
+		new Metrics(queryStats, poolMetrics).register();
+
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+		assertTrue((Integer) server.getAttribute(name, "TotalConnections") >= 1);
+		assertEquals(2, poolMetrics.snapshot().max());
+		assertEquals(0L, server.getAttribute(name, "ConnectionTimeouts"));
+		assertNotNull(server.getAttribute(name, "QueryP999Millis"));
+		assertTrue(poolMetrics.snapshot().acquire().count() > 0);
+		server.unregisterMBean(name);
+	}
+}
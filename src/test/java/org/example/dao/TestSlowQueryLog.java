@@ -0,0 +1,119 @@
+package org.example.dao;
+
+import org.example.exceptions.DbException;
+import org.example.metrics.QueryStats;
+import org.example.model.Group;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSlowQueryLog {
+	private JdbcConnectionPool pool;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		pool = JdbcConnectionPool.create("jdbc:h2:mem:slowquerydb;MODE=PostgreSQL;DATABASE_TO_UPPER=false", "sa", "");
+		DatabaseFixture.reset(pool);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		pool.dispose();
+	}
+
+	@Test
+	public void testLogsStatementsAtOrAboveTheThresholdAndFailures() {
+		try (SlowQueryLog slowQueries = new SlowQueryLog(pool, new SlowQueryLog.Options(Duration.ZERO, false, Duration.ofMinutes(1)))) {
+			GroupDao groupDao = new GroupDao(new InstrumentedDataSource(pool, new QueryStats(Map.of()), slowQueries));
+
+			groupDao.save(new Group(1, "Group1"));
+			assertEquals(1, slowQueries.logged());
+			groupDao.findByID(1);
+			assertEquals(2, slowQueries.logged());
+			assertThrows(DbException.class, () -> groupDao.save(new Group(1, "Duplicate")));
+			assertEquals(3, slowQueries.logged());
+			assertEquals(0, slowQueries.explained(), "plans are only captured on PostgreSQL");
+		}
+	}
+
+	@Test
+	public void testLogsQueryWhoseResultSetIsLeftOpenWhenItsStatementCloses() throws SQLException {
+		try (SlowQueryLog slowQueries = new SlowQueryLog(pool, new SlowQueryLog.Options(Duration.ZERO, false, Duration.ZERO))) {
+			InstrumentedDataSource dataSource = new InstrumentedDataSource(pool, new QueryStats(Map.of()), slowQueries);
+			new GroupDao(dataSource).save(new Group(1, "Group1"));
+			long before = slowQueries.logged();
+
+			try (Connection connection = dataSource.getConnection();
+				 PreparedStatement preparedStatement = connection.prepareStatement("SELECT * FROM groups")) {
+				ResultSet resultSet = preparedStatement.executeQuery();
+				assertTrue(resultSet.next());
+				assertEquals(before, slowQueries.logged(), "rows are not known until the result set is done");
+			}
+
+			assertEquals(before + 1, slowQueries.logged());
+		}
+	}
+
+	@Test
+	public void testBoxesBoundPrimitivesOnlyForTheEntry() throws SQLException {
+		List<List<Object>> entries = new ArrayList<>();
+		try (SlowQueryLog slowQueries = new SlowQueryLog(null, new SlowQueryLog.Options(Duration.ZERO, false, Duration.ZERO)) {
+			@Override
+			public void slow(String name, String sql, List<Object> parameters, long nanos, long rows) {
+				entries.add(parameters);
+			}
+		}) {
+			InstrumentedDataSource dataSource = new InstrumentedDataSource(pool, new QueryStats(Map.of()), slowQueries);
+			try (Connection connection = dataSource.getConnection();
+				 PreparedStatement preparedStatement = connection.prepareStatement(
+						 "SELECT CAST(? AS INTEGER), CAST(? AS BIGINT), CAST(? AS DOUBLE PRECISION), CAST(? AS BOOLEAN), CAST(? AS VARCHAR)")) {
+				preparedStatement.setInt(1, 70_000);
+				preparedStatement.setLong(2, Long.MIN_VALUE);
+				preparedStatement.setDouble(3, -1.5);
+				preparedStatement.setBoolean(4, true);
+				preparedStatement.setString(5, "Math");
+				preparedStatement.executeQuery().close();
+				preparedStatement.setNull(1, Types.INTEGER);
+				preparedStatement.executeQuery().close();
+			}
+		}
+
+		assertEquals(List.of(Arrays.asList(70_000, Long.MIN_VALUE, -1.5, true, "Math"),
+				Arrays.asList(null, Long.MIN_VALUE, -1.5, true, "Math")), entries);
+	}
+
+	@Test
+	public void testIgnoresStatementsBelowTheThreshold() {
+		try (SlowQueryLog slowQueries = new SlowQueryLog(pool, new SlowQueryLog.Options(Duration.ofHours(1), false, Duration.ZERO))) {
+			GroupDao groupDao = new GroupDao(new InstrumentedDataSource(pool, new QueryStats(Map.of()), slowQueries));
+
+			groupDao.save(new Group(1, "Group1"));
+			groupDao.findAll();
+
+			assertEquals(0, slowQueries.logged());
+		}
+	}
+
+	@Test
+	public void testDescribesOrHidesParameters() {
+		String longName = "x".repeat(150);
+
+		assertEquals("1=42, 2='Math', 3=null", SlowQueryLog.describe(Arrays.asList(42, "Math", null), false));
+		assertEquals("1=?, 2=?", SlowQueryLog.describe(Arrays.asList(42, "Math"), true));
+		assertEquals(104, SlowQueryLog.describe(Arrays.asList(longName), false).length());
+	}
+}
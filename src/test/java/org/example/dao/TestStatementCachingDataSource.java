@@ -0,0 +1,153 @@
+package org.example.dao;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.example.cache.CacheStats;
+import org.example.model.Group;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestStatementCachingDataSource {
+	private static final String URL = "jdbc:h2:mem:statementdb;MODE=PostgreSQL;DATABASE_TO_UPPER=false;DB_CLOSE_DELAY=-1";
+	private HikariDataSource pool;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		HikariConfig config = new HikariConfig();
+		config.setJdbcUrl(URL);
+		config.setUsername("sa");
+		config.setPassword("");
+		config.setMaximumPoolSize(1);
+		pool = new HikariDataSource(config);
+		DatabaseFixture.reset(pool);
+	}
+
+	@AfterEach
+	public void tearDown() {
+		pool.close();
+	}
+
+	@Test
+	public void testRepeatedDaoCallsReuseTheStatementAcrossCheckouts() {
+		StatementCachingDataSource dataSource = new StatementCachingDataSource(pool);
+		GroupDao groupDao = new GroupDao(dataSource);
+		groupDao.save(new Group(1, "First"));
+		groupDao.save(new Group(2, "Second"));
+
+		assertEquals("First", groupDao.findByID(1).orElseThrow().name());
+		assertEquals("Second", groupDao.findByID(2).orElseThrow().name());
+		assertTrue(groupDao.findByID(3).isEmpty());
+
+		CacheStats stats = dataSource.stats();
+		assertEquals(3, stats.hits());
+		assertEquals(2, stats.misses());
+		assertEquals(2, stats.size());
+	}
+
+	@Test
+	public void testSqlPreparedTwiceAtOnceIsNotShared() throws SQLException {
+		StatementCachingDataSource dataSource = new StatementCachingDataSource(pool);
+		new GroupDao(dataSource).save(new Group(1, "First"));
+		long cached = dataSource.stats().size();
+		String sql = "SELECT group_name FROM groups WHERE group_id = ?";
+
+		try (Connection connection = dataSource.getConnection();
+			 PreparedStatement outer = connection.prepareStatement(sql);
+			 PreparedStatement inner = connection.prepareStatement(sql)) {
+			assertNotSame(outer, inner);
+			outer.setInt(1, 1);
+			inner.setInt(1, 2);
+			try (ResultSet outerRows = outer.executeQuery();
+				 ResultSet innerRows = inner.executeQuery()) {
+				assertTrue(outerRows.next());
+				assertFalse(innerRows.next());
+			}
+		}
+
+		assertEquals(cached + 1, dataSource.stats().size());
+	}
+
+	@Test
+	public void testClosedStatementIsReturnedWithoutParameters() throws SQLException {
+		StatementCachingDataSource dataSource = new StatementCachingDataSource(pool);
+		String sql = "SELECT ?";
+
+		try (Connection connection = dataSource.getConnection()) {
+			PreparedStatement first = connection.prepareStatement(sql);
+			first.setInt(1, 1);
+			first.close();
+			assertTrue(first.isClosed());
+
+			try (PreparedStatement second = connection.prepareStatement(sql)) {
+				assertFalse(second.isClosed());
+				assertThrows(SQLException.class, second::executeQuery);
+			}
+		}
+		assertEquals(1, dataSource.stats().hits());
+	}
+
+	@Test
+	public void testConnectionClosedInTheMiddleOfATransactionIsRolledBack() throws SQLException {
+		StatementCachingDataSource dataSource = new StatementCachingDataSource(pool);
+		String sql = "INSERT INTO groups (group_id, group_name) VALUES (?, ?)";
+		try (Connection connection = dataSource.getConnection()) {
+			connection.prepareStatement(sql).close();
+		}
+
+		try (Connection connection = dataSource.getConnection()) {
+			connection.setAutoCommit(false);
+			try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
+				preparedStatement.setInt(1, 1);
+				preparedStatement.setString(2, "Uncommitted");
+				preparedStatement.executeUpdate();
+			}
+		}
+
+		assertEquals(1, dataSource.stats().hits());
+		assertTrue(new GroupDao(dataSource).findByID(1).isEmpty());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedStatementsAreEvicted() throws SQLException {
+		StatementCachingDataSource dataSource = new StatementCachingDataSource(pool, 2);
+
+		try (Connection connection = dataSource.getConnection()) {
+			for (String sql : new String[]{"SELECT 1", "SELECT 2", "SELECT 1", "SELECT 3", "SELECT 1", "SELECT 2"}) {
+				connection.prepareStatement(sql).close();
+			}
+		}
+
+		CacheStats stats = dataSource.stats();
+		assertEquals(2, stats.hits());
+		assertEquals(2, stats.evictions());
+		assertEquals(2, stats.size());
+	}
+
+	@Test
+	public void testStatementsOfRetiredConnectionsAreDropped() throws SQLException {
+		JdbcConnectionPool h2Pool = JdbcConnectionPool.create(URL, "sa", "");
+		try {
+			StatementCachingDataSource dataSource = new StatementCachingDataSource(h2Pool);
+			try (Connection connection = dataSource.getConnection()) {
+				connection.prepareStatement("SELECT 1").close();
+			}
+			assertEquals(1, dataSource.stats().size());
+
+			try (Connection ignored = dataSource.getConnection()) {
+				assertEquals(0, dataSource.stats().size());
+				assertEquals(1, dataSource.stats().evictions());
+			}
+		} finally {
+			h2Pool.dispose();
+		}
+	}
+}
@@ -1,24 +1,23 @@
 package org.example.dao;
 
+import org.example.cache.StudentCache;
 import org.example.exceptions.DbException;
 import org.example.model.Course;
 import org.example.model.Group;
 import org.example.model.Student;
-import org.example.runner.DbLoader;
 import org.h2.jdbcx.JdbcConnectionPool;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.sql.DataSource;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
 import java.sql.*;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -27,13 +26,14 @@ public class TestStudentDao {
 	private GroupDao groupDao;
 	private CourseDao courseDao;
 	private Connection connection;
+	private DataSource dataSource;
 
 	@BeforeEach
 	public void setup() {
-		DataSource dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" + "MODE=PostgreSQL;" + "DATABASE_TO_UPPER=false;" + "DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" + "MODE=PostgreSQL;" + "DATABASE_TO_UPPER=false;" + "DB_CLOSE_ON_EXIT=FALSE", "sa", "");
 		try (Connection connection = dataSource.getConnection()) {
 			this.connection = connection;
-			executeSQLScript("create_table.sql");
+			DatabaseFixture.reset(dataSource);
 			studentDao = new StudentDao(dataSource);
 			groupDao = new GroupDao(dataSource);
 			courseDao = new CourseDao(dataSource);
@@ -108,6 +108,24 @@ public class TestStudentDao {
 		assertTrue(loadedStudent.courseList().contains(course));
 	}
 
+	@Test
+	public void testAddStudentToCourseIsIdempotent() {
+		Group group = new Group(1, "Group");
+		Course course = new Course(1, "A", "A");
+		Student student = new Student(1, "A", "A", group, new ArrayList<>());
+		groupDao.save(group);
+		courseDao.save(course);
+		studentDao.save(student);
+		StudentDao cachedDao = new StudentDao(dataSource, new StudentCache(1024 * 1024, Duration.ofMinutes(1)));
+		cachedDao.findByID(student.id());
+
+		cachedDao.addStudentToCourse(student, course.id());
+		cachedDao.addStudentToCourse(student, course.id());
+
+		assertEquals(List.of(course), studentDao.findByID(student.id()).orElseThrow().courseList());
+		assertEquals(List.of(course), cachedDao.findByID(student.id()).orElseThrow().courseList());
+	}
+
 	@Test
 	public void testRemoveStudentToCourse() {
 		Group group = new Group(1, "Group");
@@ -150,6 +168,103 @@ public class TestStudentDao {
 		}
 	}
 
+	@Test
+	public void testFindAllLoadsGroupsAndCourses() {
+		Group group = new Group(1, "Group");
+		Course course = new Course(1, "Math", "Math");
+		groupDao.save(group);
+		courseDao.save(course);
+		for (int i = 1; i <= 20; i++) {
+			Student student = new Student(i, "A", "A", group, new ArrayList<>());
+			studentDao.save(student);
+			if (i % 2 == 0) {
+				studentDao.addStudentToCourse(student, course.id());
+			}
+		}
+		CountingDataSource counting = new CountingDataSource(dataSource);
+
+		List<Student> loadedStudents = new StudentDao(counting.dataSource()).findAll();
+		assertEquals(20, loadedStudents.size());
+		for (Student student : loadedStudents) {
+			assertEquals(group, student.group());
+			assertEquals(student.id() % 2 == 0 ? List.of(course) : List.of(), student.courseList());
+		}
+		assertEquals(1, counting.connections());
+		assertEquals(2, counting.statements());
+	}
+
+	@Test
+	public void testStreamAll() {
+		Group group = new Group(1, "Group");
+		Course math = new Course(1, "Math", "Math");
+		Course art = new Course(2, "Art", "Art");
+		groupDao.save(group);
+		courseDao.save(math);
+		courseDao.save(art);
+		for (int i = 1; i <= 5; i++) {
+			Student student = new Student(i, "A" + i, "B" + i, group, new ArrayList<>());
+			studentDao.save(student);
+			if (i != 3) {
+				studentDao.addStudentToCourse(student, math.id());
+			}
+			if (i % 2 == 0) {
+				studentDao.addStudentToCourse(student, art.id());
+			}
+		}
+
+		List<Student> streamed;
+		try (Stream<Student> students = studentDao.streamAll(2)) {
+			streamed = students.toList();
+		}
+		assertEquals(List.of(1, 2, 3, 4, 5), streamed.stream().map(Student::id).toList());
+		assertEquals(studentDao.findAll(), streamed);
+		assertEquals(0, ((JdbcConnectionPool) dataSource).getActiveConnections());
+	}
+
+	@Test
+	public void testStreamAllReleasesConnectionWhenClosedEarly() {
+		Group group = new Group(1, "Group");
+		groupDao.save(group);
+		for (int i = 1; i <= 10; i++) {
+			studentDao.save(new Student(i, "A", "A", group, new ArrayList<>()));
+		}
+
+		try (Stream<Student> students = studentDao.streamAll(3)) {
+			assertEquals(1, students.findFirst().orElseThrow().id());
+			assertEquals(1, ((JdbcConnectionPool) dataSource).getActiveConnections());
+		}
+		assertEquals(0, ((JdbcConnectionPool) dataSource).getActiveConnections());
+	}
+
+	@Test
+	public void testFindPage() {
+		Group group = new Group(1, "Group");
+		Course course = new Course(1, "Math", "Math");
+		groupDao.save(group);
+		courseDao.save(course);
+		for (int i = 1; i <= 25; i++) {
+			Student student = new Student(i, "A" + i, "B" + i, group, new ArrayList<>());
+			studentDao.save(student);
+			if (i % 5 == 0) {
+				studentDao.addStudentToCourse(student, course.id());
+			}
+		}
+
+		List<Student> pagedStudents = new ArrayList<>();
+		Page<Student> page = studentDao.findPage(Page.FIRST_KEY, 10);
+		pagedStudents.addAll(page.items());
+		while (page.hasNext()) {
+			assertEquals(10, page.items().size());
+			page = studentDao.findPage(page.nextKey(), 10);
+			pagedStudents.addAll(page.items());
+		}
+
+		assertEquals(5, page.items().size());
+		assertEquals(25, page.nextKey());
+		assertEquals(studentDao.findAll(), pagedStudents);
+		assertTrue(studentDao.findPage(page.nextKey(), 10).items().isEmpty());
+	}
+
 	@Test
 	public void testUpdate() {
 		Group group = new Group(1, "Group");
@@ -181,22 +296,196 @@ public class TestStudentDao {
 	}
 
 
-	private void executeSQLScript(String scriptFileName) throws IOException, SQLException {
-		try (Statement statement = connection.createStatement();
-			 InputStreamReader reader = new InputStreamReader(Objects.requireNonNull(DbLoader.class.getResourceAsStream("/" + scriptFileName)))) {
-			try (BufferedReader bufferedReader = new BufferedReader(reader)) {
-				String line;
-				StringBuilder script = new StringBuilder();
-				while ((line = bufferedReader.readLine()) != null) {
-					script.append(line).append(" ");
-					if (line.endsWith(";")) {
-						String sqlCommand = script.toString();
-						statement.execute(sqlCommand);
-						script.setLength(0);
-					}
-				}
+	@Test
+	public void testCachedFindByIdIsWrittenThrough() {
+		StudentCache cache = new StudentCache(1024 * 1024, Duration.ofMinutes(1));
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		StudentDao cachedDao = new StudentDao(counting.dataSource(), cache);
+		Group group = new Group(1, "Group");
+		Course math = new Course(1, "Math", "Math");
+		Course art = new Course(2, "Art", "Art");
+		groupDao.save(group);
+		courseDao.save(math);
+		courseDao.save(art);
+		cachedDao.save(new Student(0, "A", "A", group, new ArrayList<>()));
+		Student student = cachedDao.findByID(1).orElseThrow();
+		counting.reset();
+
+		cachedDao.findByID(1);
+		assertEquals(0, counting.statements());
+
+		cachedDao.addStudentToCourse(student, math.id());
+		cachedDao.addStudentToCourse(student, art.id());
+		cachedDao.removeStudentFromCourse(student, math.id());
+		cachedDao.update(new Student(1, "B", "B", group, new ArrayList<>()));
+		counting.reset();
+		Student cached = cachedDao.findByID(1).orElseThrow();
+		assertEquals(0, counting.statements());
+		assertEquals(studentDao.findByID(1).orElseThrow(), cached);
+		assertEquals(List.of(art), cached.courseList());
+		assertEquals("B", cached.firstName());
+
+		cachedDao.delete(cached);
+		assertTrue(cachedDao.findByID(1).isEmpty());
+		assertTrue(cache.stats().hits() >= 2);
+	}
+
+	@Test
+	public void testFindStudentsByCourseName() {
+		Group group = new Group(1, "Group");
+		Course math = new Course(1, "Math", "Math");
+		Course art = new Course(2, "Art", "Art");
+		groupDao.save(group);
+		courseDao.save(math);
+		courseDao.save(art);
+		Student first = new Student(1, "A", "A", group, new ArrayList<>());
+		Student second = new Student(2, "B", "B", group, new ArrayList<>());
+		studentDao.save(first);
+		studentDao.save(second);
+		studentDao.addStudentToCourse(first, math.id());
+		studentDao.addStudentToCourse(first, art.id());
+		studentDao.addStudentToCourse(second, art.id());
+
+		List<Student> mathStudents = studentDao.findStudentsByCourseName("Math");
+		assertEquals(1, mathStudents.size());
+		Student loaded = mathStudents.get(0);
+		assertEquals(first.id(), loaded.id());
+		assertEquals(group, loaded.group());
+		assertEquals(List.of(math, art), loaded.courseList());
+
+		List<Student> artStudents = studentDao.findStudentsByCourseName("Art");
+		assertEquals(List.of(1, 2), artStudents.stream().map(Student::id).toList());
+		assertTrue(studentDao.findStudentsByCourseName("Unknown").isEmpty());
+	}
+
+	@Test
+	public void testFindStudentsByCourseNameQueryCountIsConstant() {
+		Group group = new Group(1, "Group");
+		groupDao.save(group);
+		courseDao.save(new Course(1, "Small", "Small"));
+		courseDao.save(new Course(2, "Large", "Large"));
+		for (int i = 1; i <= 50; i++) {
+			Student student = new Student(i, "A" + i, "B" + i, group, new ArrayList<>());
+			studentDao.save(student);
+			studentDao.addStudentToCourse(student, 2);
+			if (i <= 2) {
+				studentDao.addStudentToCourse(student, 1);
+			}
+		}
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		StudentDao countedDao = new StudentDao(counting.dataSource());
+
+		assertEquals(2, countedDao.findStudentsByCourseName("Small").size());
+		int smallConnections = counting.connections();
+		int smallStatements = counting.statements();
+		counting.reset();
+
+		assertEquals(50, countedDao.findStudentsByCourseName("Large").size());
+		assertEquals(1, smallConnections);
+		assertEquals(smallConnections, counting.connections());
+		assertEquals(smallStatements, counting.statements());
+		assertTrue(counting.statements() <= 2);
+	}
+
+	@Test
+	public void testStreamStudentsByCourseNameLoadsChunksLazily() {
+		Group group = new Group(1, "Group");
+		groupDao.save(group);
+		courseDao.save(new Course(1, "Large", "Large"));
+		courseDao.save(new Course(2, "Other", "Other"));
+		int students = 2500;
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("INSERT INTO students (group_id, first_name, last_name) " +
+					"SELECT 1, 'First', 'Last' FROM SYSTEM_RANGE(1, " + students + ")");
+			statement.execute("INSERT INTO student_course (student_id, course_id) SELECT student_id, 1 FROM students");
+			statement.execute("INSERT INTO student_course (student_id, course_id) SELECT student_id, 2 FROM students WHERE MOD(student_id, 2) = 0");
+		} catch (SQLException e) {
+			throw new DbException(e);
+		}
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		StudentDao countedDao = new StudentDao(counting.dataSource());
+
+		try (Stream<Student> stream = countedDao.streamStudentsByCourseName("Large")) {
+			List<Student> firstChunk = stream.limit(10).toList();
+			assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8, 9, 10), firstChunk.stream().map(Student::id).toList());
+			assertEquals(2, firstChunk.get(1).courseList().size());
+		}
+		assertEquals(2, counting.connections());
+
+		assertEquals(studentDao.findStudentsByCourseName("Large"), studentDao.streamStudentsByCourseName("Large").toList());
+		assertEquals(studentDao.findStudentsInAllCourses(List.of("Large", "Other")),
+				studentDao.streamStudentsInAllCourses(List.of("Large", "Other")).toList());
+		assertEquals(students, studentDao.streamStudentsInAnyCourse(List.of("Large", "Other")).count());
+		assertEquals(0, studentDao.streamStudentsByCourseName("Unknown").count());
+	}
+
+	@Test
+	public void testFindAllByIdsLoadsCoursesAndSkipsMissingIds() {
+		Group group = new Group(1, "Group");
+		groupDao.save(group);
+		courseDao.save(new Course(1, "Math", "Math"));
+		for (int i = 1; i <= 5; i++) {
+			Student student = new Student(i, "A" + i, "B" + i, group, new ArrayList<>());
+			studentDao.save(student);
+			if (i % 2 == 1) {
+				studentDao.addStudentToCourse(student, 1);
 			}
 		}
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		StudentDao countedDao = new StudentDao(counting.dataSource(), new StudentCache(1024 * 1024, Duration.ofMinutes(1)));
+
+		Map<Integer, Student> students = countedDao.findAllByIds(List.of(5, 42, 2, 1));
+
+		assertEquals(List.of(5, 2, 1), List.copyOf(students.keySet()));
+		assertEquals(List.of(new Course(1, "Math", "Math")), students.get(5).courseList());
+		assertTrue(students.get(2).courseList().isEmpty());
+		assertEquals("Group", students.get(1).group().name());
+		assertEquals(1, counting.connections());
+
+		counting.reset();
+		assertEquals(students, countedDao.findAllByIds(List.of(1, 2, 5)));
+		assertEquals(0, counting.connections());
+	}
+
+	@Test
+	public void testEnrollStudentsReportsAcceptedDuplicateAndMissingIds() {
+		Group group = new Group(1, "Group");
+		groupDao.save(group);
+		courseDao.save(new Course(1, "Math", "Math"));
+		for (int i = 1; i <= 5; i++) {
+			studentDao.save(new Student(i, "A" + i, "B" + i, group, new ArrayList<>()));
+		}
+		studentDao.addStudentToCourse(studentDao.findByID(2).orElseThrow(), 1);
+		CourseStudentIndex courseIndex = CourseStudentIndex.load(dataSource);
+		CountingDataSource counting = new CountingDataSource(dataSource);
+		StudentDao countedDao = new StudentDao(counting.dataSource(), new StudentCache(1024 * 1024, Duration.ofMinutes(1)), courseIndex);
+		countedDao.findByID(3);
+		counting.reset();
+
+		Enrollment enrollment = countedDao.enrollStudents(1, List.of(4, 2, 42, 3, 4, 1));
+
+		assertEquals(List.of(4, 3, 1), enrollment.accepted());
+		assertEquals(List.of(2), enrollment.duplicates());
+		assertEquals(List.of(42), enrollment.missing());
+		assertEquals(1, counting.connections());
+		assertEquals(List.of(1, 2, 3, 4), studentDao.findStudentsByCourseName("Math").stream().map(Student::id).toList());
+		assertEquals(List.of(1, 2, 3, 4), courseIndex.studentsOfCourse(1).stream().boxed().toList());
+		assertEquals(List.of(new Course(1, "Math", "Math")), countedDao.findByID(3).orElseThrow().courseList());
+	}
+
+	@Test
+	public void testEnrollStudentsInMissingCourseRollsBack() {
+		Group group = new Group(1, "Group");
+		groupDao.save(group);
+		courseDao.save(new Course(1, "Math", "Math"));
+		for (int i = 1; i <= 3; i++) {
+			studentDao.save(new Student(i, "A" + i, "B" + i, group, new ArrayList<>()));
+		}
+
+		assertThrows(DbException.class, () -> studentDao.enrollStudents(99, List.of(1, 2, 3)));
+		assertEquals(List.of(2), studentDao.enrollStudents(1, List.of(2)).accepted());
+		assertEquals(1, studentDao.findAll().stream().mapToInt(student -> student.courseList().size()).sum());
 	}
 
 	@AfterEach
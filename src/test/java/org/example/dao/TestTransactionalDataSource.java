@@ -0,0 +1,200 @@
+package org.example.dao;
+
+import org.example.cache.ReadThroughCache;
+import org.example.cache.StudentCache;
+import org.example.model.Course;
+import org.example.model.Group;
+import org.example.model.Student;
+import org.example.service.ReportGenerator;
+import org.example.service.ReportSink;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestTransactionalDataSource {
+	private JdbcConnectionPool dataSource;
+	private CountingDataSource counting;
+	private TransactionalDataSource transactions;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:testdb;" +
+				"MODE=PostgreSQL;" +
+				"DATABASE_TO_UPPER=false;" +
+				"DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		DatabaseFixture.reset(dataSource);
+		counting = new CountingDataSource(dataSource);
+		transactions = new TransactionalDataSource(counting.dataSource());
+	}
+
+	@AfterEach
+	public void tearDown() {
+		dataSource.dispose();
+	}
+
+	@Test
+	public void testReportsBorrowOneConnectionPerCommand() {
+		GroupDao groupDao = new GroupDao(transactions);
+		CourseDao courseDao = new CourseDao(transactions);
+		StudentDao studentDao = new StudentDao(transactions);
+		groupDao.save(new Group(1, "Group"));
+		courseDao.save(new Course(1, "Math", "Math"));
+		courseDao.save(new Course(2, "Physics", "Physics"));
+		ReportSink.Memory out = ReportSink.memory();
+		ReportGenerator reportGenerator = new ReportGenerator(studentDao, groupDao, courseDao, out, transactions);
+		counting.reset();
+
+		reportGenerator.printAddStudent("Ann", "Lee", 1, List.of(1, 2));
+		assertEquals(1, counting.connections());
+		assertTrue(out.contents().contains("Added student: Ann Lee (group: Group, courses: Math, Physics)"));
+
+		counting.reset();
+		reportGenerator.printRemoveStudentFromCourse(1, 2);
+		assertEquals(1, counting.connections());
+
+		counting.reset();
+		reportGenerator.printDeleteStudentById(1);
+		assertEquals(1, counting.connections());
+		assertTrue(out.contents().contains("Deleted student with ID: 1"));
+		assertEquals(0, dataSource.getActiveConnections());
+	}
+
+	@Test
+	public void testWorkThatThrowsRollsBackEveryDaoCall() {
+		GroupDao groupDao = new GroupDao(transactions);
+		StudentDao studentDao = new StudentDao(transactions);
+
+		assertThrows(IllegalStateException.class, () -> transactions.runInTransaction(() -> {
+			groupDao.save(new Group(1, "Group"));
+			studentDao.save(new Student(1, "Ann", "Lee", new Group(1, "Group"), new ArrayList<>()));
+			throw new IllegalStateException("abort");
+		}));
+
+		assertTrue(groupDao.findByID(1).isEmpty());
+		assertTrue(studentDao.findAll().isEmpty());
+		assertEquals(0, dataSource.getActiveConnections());
+	}
+
+	@Test
+	public void testCachesAndIndexesFollowOnlyCommittedWork() {
+		new GroupDao(dataSource).save(new Group(1, "Group"));
+		new CourseDao(dataSource).save(new Course(1, "Math", "Math"));
+		new StudentDao(dataSource).save(new Student(1, "Ann", "Lee", new Group(1, "Group"), new ArrayList<>()));
+		StudentCache cache = new StudentCache(1024 * 1024, Duration.ofMinutes(1));
+		CourseStudentIndex courseIndex = CourseStudentIndex.load(dataSource);
+		GroupSizeIndex groupSizes = GroupSizeIndex.load(dataSource);
+		StudentDao studentDao = new StudentDao(transactions, cache, courseIndex, groupSizes);
+		Student student = studentDao.findByID(1).orElseThrow();
+
+		assertThrows(IllegalStateException.class, () -> transactions.runInTransaction(() -> {
+			studentDao.addStudentToCourse(student, 1);
+			studentDao.update(new Student(1, "Anna", "Lee", student.group(), student.courseList()));
+			studentDao.save(new Student(0, "Bob", "Ray", student.group(), new ArrayList<>()));
+			throw new IllegalStateException("abort");
+		}));
+
+		assertTrue(courseIndex.studentsOfCourse(1).isEmpty());
+		assertEquals(1, groupSizes.size(1));
+		assertEquals("Ann", cache.getIfPresent(1).firstName());
+		assertTrue(cache.getIfPresent(1).courseList().isEmpty());
+
+		transactions.runInTransaction(() -> {
+			studentDao.addStudentToCourse(student, 1);
+			studentDao.update(new Student(1, "Anna", "Lee", student.group(), student.courseList()));
+			studentDao.save(new Student(0, "Bob", "Ray", student.group(), new ArrayList<>()));
+		});
+
+		assertTrue(courseIndex.studentsOfCourse(1).contains(1));
+		assertEquals(2, groupSizes.size(1));
+		assertEquals("Anna", cache.getIfPresent(1).firstName());
+		assertEquals(List.of(1), cache.getIfPresent(1).courseList().stream().map(Course::id).toList());
+		assertEquals(0, groupSizes.reconcile(dataSource));
+	}
+
+	@Test
+	public void testBatchLoadsAreCachedOnlyOnceCommitted() {
+		new GroupDao(dataSource).save(new Group(1, "Group"));
+		new StudentDao(dataSource).save(new Student(1, "Ann", "Lee", new Group(1, "Group"), new ArrayList<>()));
+		StudentCache studentCache = new StudentCache(1024 * 1024, Duration.ofMinutes(1));
+		ReadThroughCache<Integer, Optional<Group>> groupCache = new ReadThroughCache<>("groups", 10, Duration.ofMinutes(1));
+		StudentDao studentDao = new StudentDao(transactions, studentCache);
+		GroupDao groupDao = new GroupDao(transactions, groupCache, null, studentCache);
+
+		assertThrows(IllegalStateException.class, () -> transactions.runInTransaction(() -> {
+			groupDao.update(new Group(1, "Uncommitted"));
+			studentDao.update(new Student(1, "Uncommitted", "Lee", new Group(1, "Group"), new ArrayList<>()));
+			assertEquals("Uncommitted", groupDao.findAllByIds(List.of(1)).get(1).name());
+			assertEquals("Uncommitted", studentDao.findAllByIds(List.of(1)).get(1).firstName());
+			throw new IllegalStateException("abort");
+		}));
+
+		assertNull(groupCache.getIfPresent(1));
+		assertNull(studentCache.getIfPresent(1));
+
+		transactions.runInTransaction(() -> {
+			groupDao.findAllByIds(List.of(1));
+			studentDao.findAllByIds(List.of(1));
+		});
+
+		assertEquals("Group", groupCache.getIfPresent(1).orElseThrow().name());
+		assertEquals("Ann", studentCache.getIfPresent(1).firstName());
+	}
+
+	@Test
+	public void testReadsAfterWritesAreCachedOnlyOnceCommitted() {
+		new GroupDao(dataSource).save(new Group(1, "Group"));
+		new StudentDao(dataSource).save(new Student(1, "Ann", "Lee", new Group(1, "Group"), new ArrayList<>()));
+		StudentCache studentCache = new StudentCache(1024 * 1024, Duration.ofMinutes(1));
+		ReadThroughCache<Integer, Optional<Group>> groupCache = new ReadThroughCache<>("groups", 10, Duration.ofMinutes(1));
+		StudentDao studentDao = new StudentDao(transactions, studentCache);
+		GroupDao groupDao = new GroupDao(transactions, groupCache, null, studentCache);
+
+		assertThrows(IllegalStateException.class, () -> transactions.runInTransaction(() -> {
+			groupDao.update(new Group(1, "Uncommitted"));
+			studentDao.update(new Student(1, "Uncommitted", "Lee", new Group(1, "Group"), new ArrayList<>()));
+			assertEquals("Uncommitted", groupDao.findByID(1).orElseThrow().name());
+			assertEquals("Uncommitted", studentDao.findByID(1).orElseThrow().firstName());
+			throw new IllegalStateException("abort");
+		}));
+
+		assertNull(groupCache.getIfPresent(1));
+		assertNull(studentCache.getIfPresent(1));
+		assertEquals("Group", groupDao.findByID(1).orElseThrow().name());
+		assertEquals("Ann", studentDao.findByID(1).orElseThrow().firstName());
+
+		groupCache.invalidateAll();
+		studentCache.invalidateAll();
+		transactions.runInTransaction(() -> {
+			groupDao.findByID(1);
+			studentDao.findByID(1);
+		});
+
+		assertEquals("Group", groupCache.getIfPresent(1).orElseThrow().name());
+		assertEquals("Ann", studentCache.getIfPresent(1).firstName());
+	}
+
+	@Test
+	public void testNestedWorkJoinsTheOuterTransaction() {
+		GroupDao groupDao = new GroupDao(transactions);
+		counting.reset();
+
+		int groups = transactions.inTransaction(() -> {
+			groupDao.save(new Group(1, "First"));
+			transactions.runInTransaction(() -> groupDao.save(new Group(2, "Second")));
+			return groupDao.findAll().size();
+		});
+
+		assertEquals(2, groups);
+		assertEquals(1, counting.connections());
+		assertEquals(2, new GroupDao(dataSource).findAll().size());
+	}
+}
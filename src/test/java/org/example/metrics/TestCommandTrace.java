@@ -0,0 +1,74 @@
+package org.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestCommandTrace {
+	@Test
+	public void testStatementsDifferingOnlyInValuesHaveTheSameShape() {
+		assertEquals("SELECT * FROM students WHERE student_id IN (?) AND last_name = ?",
+				QueryStats.shapeOf("SELECT *  FROM students\n WHERE student_id IN (1, 2,3) AND last_name = 'O''Brien'"));
+		assertEquals(QueryStats.shapeOf("SELECT * FROM groups WHERE group_id = ?"),
+				QueryStats.shapeOf("SELECT * FROM groups WHERE group_id = 42"));
+		assertNotEquals(QueryStats.shapeOf("SELECT * FROM groups WHERE group_id = ?"),
+				QueryStats.shapeOf("SELECT * FROM courses WHERE course_id = ?"));
+	}
+
+	@Test
+	public void testFlagsShapesRepeatedAtLeastTheThreshold() {
+		QueryStats stats = new QueryStats(Map.of("SELECT * FROM groups WHERE group_id = ?", "GroupDao.SELECT_GROUP"));
+		CommandTrace trace;
+		try (CommandTrace started = CommandTrace.start("test", 3)) {
+			trace = started;
+			assertSame(trace, CommandTrace.current());
+			trace.connectionAcquired();
+			for (int id = 1; id <= 3; id++) {
+				trace.statementPrepared();
+				trace.executed(stats.query("SELECT * FROM groups WHERE group_id = " + id), 0);
+				trace.rowsRead(stats.query("SELECT * FROM groups WHERE group_id = " + id), 1);
+			}
+			trace.statementPrepared();
+			trace.executed(stats.query("SELECT * FROM courses"), 10);
+		}
+
+		assertNull(CommandTrace.current());
+		assertEquals(1, trace.connections());
+		assertEquals(4, trace.statements());
+		assertEquals(4, trace.executions());
+		assertEquals(13, trace.rows());
+		assertEquals(3, trace.executionsOf("SELECT * FROM groups WHERE group_id = ?"));
+		assertEquals(1, trace.nPlusOne().size());
+		assertEquals(3, trace.nPlusOne().get(0).rows());
+		assertTrue(trace.elapsedNanos() >= 0);
+		assertTrue(trace.toString().contains("N+1: 3 x SELECT * FROM groups WHERE group_id = 1 (3 rows)"));
+	}
+
+	@Test
+	public void testDoesNotFlagExecutionsBindingAnArray() {
+		QueryStats stats = new QueryStats(Map.of());
+		CommandTrace trace;
+		try (CommandTrace started = CommandTrace.start("test", 3)) {
+			trace = started;
+			for (int chunk = 0; chunk < 5; chunk++) {
+				trace.executed(stats.query("SELECT * FROM students WHERE student_id = ANY (?)"), 1000, true);
+			}
+		}
+
+		assertEquals(5, trace.executionsOf("SELECT * FROM students WHERE student_id = ANY (?)"));
+		assertTrue(trace.nPlusOne().isEmpty(), trace::toString);
+	}
+
+	@Test
+	public void testNestedTraceHandsBackToTheEnclosingOne() {
+		try (CommandTrace outer = CommandTrace.start("outer")) {
+			try (CommandTrace inner = CommandTrace.start("inner")) {
+				assertSame(inner, CommandTrace.current());
+			}
+			assertSame(outer, CommandTrace.current());
+		}
+		assertNull(CommandTrace.current());
+	}
+}
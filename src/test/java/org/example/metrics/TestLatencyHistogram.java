@@ -0,0 +1,76 @@
+package org.example.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestLatencyHistogram {
+	@Test
+	public void testPercentilesStayWithinTheBucketPrecision() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long micros = 1; micros <= 100_000; micros++) {
+			histogram.record(micros * 1_000);
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals(100_000, snapshot.count());
+		assertEquals(100_000_000, snapshot.maxNanos());
+		assertEquals(50_000_500, snapshot.meanNanos(), 0.001);
+		assertWithin(50_000_000, snapshot.percentileNanos(50));
+		assertWithin(99_000_000, snapshot.percentileNanos(99));
+		assertWithin(99_900_000, snapshot.percentileNanos(99.9));
+		assertEquals(100_000_000, snapshot.percentileNanos(100));
+	}
+
+	@Test
+	public void testBucketsCoverEveryValueInOrder() {
+		assertEquals(0, LatencyHistogram.bucket(0));
+		assertEquals(15, LatencyHistogram.bucket(15));
+		long previousHighest = -1;
+		for (int bucket = 0; bucket <= LatencyHistogram.bucket(Long.MAX_VALUE); bucket++) {
+			long highest = LatencyHistogram.highestValue(bucket);
+			assertEquals(bucket, LatencyHistogram.bucket(previousHighest + 1));
+			assertEquals(bucket, LatencyHistogram.bucket(highest));
+			previousHighest = highest;
+		}
+		assertEquals(Long.MAX_VALUE, previousHighest);
+	}
+
+	@Test
+	public void testConcurrentRecordingLosesNothing() throws InterruptedException {
+		LatencyHistogram histogram = new LatencyHistogram();
+		int threads = 4;
+		int values = 100_000;
+		List<Thread> recorders = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			recorders.add(Thread.startVirtualThread(() -> {
+				for (int j = 0; j < values; j++) {
+					histogram.record(ThreadLocalRandom.current().nextLong(1, 10_000_000));
+				}
+			}));
+		}
+		for (Thread recorder : recorders) {
+			recorder.join();
+		}
+
+		LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+		assertEquals((long) threads * values, snapshot.count());
+		assertTrue(snapshot.percentileNanos(100) <= snapshot.maxNanos());
+	}
+
+	@Test
+	public void testEmptyHistogramReportsZero() {
+		LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+		assertEquals(0, snapshot.percentileNanos(99));
+		assertEquals(0, snapshot.meanNanos());
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		assertTrue(actual >= expected && actual <= expected * 17 / 16, "expected about " + expected + " but was " + actual);
+	}
+}
@@ -0,0 +1,213 @@
+package org.example.runner;
+
+import org.example.dao.CourseDao;
+import org.example.dao.GroupDao;
+import org.example.dao.InstrumentedDataSource;
+import org.example.dao.StudentDao;
+import org.example.dao.TransactionalDataSource;
+import org.example.metrics.CommandTrace;
+import org.example.metrics.QueryStats;
+import org.example.service.DatabaseManager;
+import org.example.service.ReportGenerator;
+import org.example.service.ReportSink;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestBatchRunner {
+	private JdbcConnectionPool dataSource;
+	private DatabaseManager databaseManager;
+	private BatchRunner runner;
+	private PrintStream console;
+	private ByteArrayOutputStream output;
+
+	@BeforeEach
+	public void setup() {
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:batchdb;" +
+				"MODE=PostgreSQL;" +
+				"DATABASE_TO_UPPER=false;" +
+				"DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		DbLoader.load(dataSource);
+		TransactionalDataSource transactions = new TransactionalDataSource(new InstrumentedDataSource(dataSource, new QueryStats(Map.of())));
+		ReportGenerator reportGenerator = new ReportGenerator(new StudentDao(transactions), new GroupDao(transactions),
+				new CourseDao(transactions), ReportSink.console(), transactions);
+		databaseManager = new DatabaseManager(reportGenerator, false);
+		runner = new BatchRunner(databaseManager);
+		console = System.out;
+		output = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+	}
+
+	@AfterEach
+	public void tearDown() {
+		System.setOut(console);
+		dataSource.dispose();
+	}
+
+	@Test
+	public void testRunsCommandsWithArgumentsOnTheSameLine() throws SQLException {
+		String script = """
+				# nightly enrollment
+				a 15
+				e 3 1,2,5
+
+				f 1 3
+				d 7
+				b Course that does not exist
+				g 100
+				q
+				d 8
+				""";
+
+		BatchRunner.BatchSummary summary = runner.run(new StringReader(script));
+
+		assertEquals(6, summary.commands());
+		assertEquals(0, summary.errors());
+		assertEquals(0, count("SELECT COUNT(*) FROM students WHERE student_id = 7"));
+		assertEquals(1, count("SELECT COUNT(*) FROM students WHERE student_id = 8"));
+		assertEquals(1, count("SELECT COUNT(*) FROM student_course WHERE student_id = 5 AND course_id = 3"));
+		assertEquals(0, count("SELECT COUNT(*) FROM student_course WHERE student_id = 1 AND course_id = 3"));
+		String printed = output.toString(StandardCharsets.UTF_8);
+		assertFalse(printed.contains("Enter"));
+		assertTrue(printed.contains("(ID: 300,"));
+		assertTrue(printed.endsWith(summary + System.lineSeparator()));
+	}
+
+	@Test
+	public void testCountsUnknownCommandsAndMissingArguments() {
+		BatchRunner.BatchSummary summary = runner.run(new StringReader("x 1\ne 3\na many\nd 9\n"));
+
+		assertEquals(4, summary.commands());
+		assertEquals(3, summary.errors());
+		String printed = output.toString(StandardCharsets.UTF_8);
+		assertTrue(printed.contains("Line 1: unknown command: x 1"));
+		assertTrue(printed.contains("Line 2: missing or invalid arguments: e 3"));
+		assertTrue(printed.contains("Line 3: missing or invalid arguments: a many"));
+	}
+
+	@Test
+	public void testEnrollsIdRangesInOneCommand() throws SQLException {
+		BatchRunner.BatchSummary summary = runner.run(new StringReader("e 3 1-200,250,1-5,999999\n"));
+
+		assertEquals(0, summary.errors());
+		assertEquals(201, count("SELECT COUNT(*) FROM student_course WHERE course_id = 3 AND (student_id <= 200 OR student_id = 250)"));
+		String printed = output.toString(StandardCharsets.UTF_8);
+		assertTrue(printed.contains("Students not found (1): 999999"));
+	}
+
+	@Test
+	public void testCommandsStayWithinTheirQueryBudget() throws SQLException {
+		String courseName = text("SELECT course_name FROM courses WHERE course_id = 1");
+
+		assertWithinBudget(trace("a", "15"), 1, 1);
+		assertWithinBudget(trace("b", courseName), 1, 3);
+		assertWithinBudget(trace("h", courseName + " | " + text("SELECT course_name FROM courses WHERE course_id = 2")), 1, 3);
+		assertWithinBudget(trace("d", "7"), 1, 3);
+		assertWithinBudget(trace("e", "3\n1-300"), 1, 3);
+		assertWithinBudget(trace("f", "1\n3"), 1, 4);
+		// one unit of work per page of 100
+		assertWithinBudget(trace("g", "100"), 3, 6);
+	}
+
+	@Test
+	public void testTraceFlagsQueriesRepeatedOncePerStudent() throws SQLException {
+		CommandTrace trace;
+		try (CommandTrace started = CommandTrace.start("per student", 10)) {
+			trace = started;
+			for (int id = 1; id <= 25; id++) {
+				databaseManager.deleteStudentById(new Scanner(id + "\n"));
+			}
+		}
+
+		assertFalse(trace.nPlusOne().isEmpty());
+		assertEquals(25, trace.nPlusOne().get(0).executions());
+		assertEquals(25, trace.connections(), "one unit of work per delete");
+		assertTrue(trace.toString().contains("N+1: 25 x "));
+	}
+
+	@Test
+	public void testRecordsFlightRecorderEvents(@TempDir Path directory) throws IOException {
+		Path file = directory.resolve("commands.jfr");
+		try (Recording recording = new Recording()) {
+			for (String event : List.of("org.example.Command", "org.example.Query", "org.example.QueryRows", "org.example.ConnectionAcquire")) {
+				recording.enable(event).withThreshold(Duration.ZERO);
+			}
+			recording.start();
+			trace("d", "7");
+			recording.stop();
+			recording.dump(file);
+		}
+
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+		List<RecordedEvent> commands = named(events, "org.example.Command");
+		assertEquals(1, commands.size());
+		assertEquals("DELETE_STUDENT", commands.get(0).getString("command"));
+		assertEquals(3, commands.get(0).getInt("statements"));
+		assertEquals(1, named(events, "org.example.ConnectionAcquire").size());
+		List<RecordedEvent> queries = named(events, "org.example.Query");
+		assertEquals(3, queries.size());
+		assertTrue(queries.stream().noneMatch(query -> query.getBoolean("failed")));
+		assertEquals(1, queries.stream().filter(query -> query.getString("query").startsWith("DELETE")).mapToLong(query -> query.getLong("rows")).sum());
+		List<RecordedEvent> selects = queries.stream().filter(query -> query.getString("query").startsWith("SELECT")).toList();
+		assertFalse(selects.isEmpty());
+		List<RecordedEvent> rowsRead = named(events, "org.example.QueryRows");
+		assertEquals(selects.size(), rowsRead.size());
+		assertTrue(selects.stream().allMatch(query -> query.getLong("rows") == 0), "a query's event ends when it is executed");
+		assertTrue(rowsRead.stream().allMatch(rows -> rows.getString("query").startsWith("SELECT")));
+	}
+
+	private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+		return events.stream().filter(event -> event.getEventType().getName().equals(name)).toList();
+	}
+
+	private CommandTrace trace(String code, String arguments) {
+		return Command.parse(code).run(databaseManager, new Scanner(arguments + "\n"));
+	}
+
+	private static void assertWithinBudget(CommandTrace trace, int connections, int statements) {
+		assertTrue(trace.connections() <= connections, trace::toString);
+		assertTrue(trace.statements() <= statements, trace::toString);
+		assertTrue(trace.executions() > 0, trace::toString);
+		assertTrue(trace.nPlusOne().isEmpty(), trace::toString);
+	}
+
+	private String text(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getString(1);
+		}
+	}
+
+	private int count(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+}
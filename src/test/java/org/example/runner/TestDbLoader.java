@@ -0,0 +1,103 @@
+package org.example.runner;
+
+import org.example.service.GeneratorConfig;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestDbLoader {
+	private JdbcConnectionPool dataSource;
+
+	@BeforeEach
+	public void setup() {
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:loaderdb;" +
+				"MODE=PostgreSQL;" +
+				"DATABASE_TO_UPPER=false;" +
+				"DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+	}
+
+	@Test
+	public void testLoad() throws SQLException {
+		DbLoader.load(dataSource);
+
+		assertEquals(10, count("SELECT COUNT(*) FROM groups"));
+		assertEquals(10, count("SELECT COUNT(*) FROM courses"));
+		assertEquals(300, count("SELECT COUNT(*) FROM students"));
+		assertTrue(count("SELECT COUNT(*) FROM student_course") >= 300);
+		assertEquals(0, count("SELECT COUNT(*) FROM students s LEFT JOIN groups g ON s.group_id = g.group_id WHERE g.group_id IS NULL"));
+	}
+
+	@Test
+	public void testParallelLoad() throws SQLException {
+		DbLoader.load(dataSource, new SeedOptions(3, GeneratorConfig.defaults()));
+
+		assertEquals(300, count("SELECT COUNT(*) FROM students"));
+		assertEquals(300, count("SELECT MAX(student_id) FROM students"));
+		assertEquals(0, count("SELECT COUNT(*) FROM student_course sc LEFT JOIN students s ON sc.student_id = s.student_id WHERE s.student_id IS NULL"));
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.executeUpdate("INSERT INTO students (group_id, first_name, last_name) VALUES (1, 'New', 'Student')");
+		}
+		assertEquals(301, count("SELECT student_id FROM students WHERE first_name = 'New'"));
+	}
+
+	@Test
+	public void testBatchTableWriterFlushesPartialStatements() throws SQLException {
+		int rows = BatchTableWriter.ROWS_PER_STATEMENT * BatchTableWriter.STATEMENTS_PER_BATCH + 42;
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE IF EXISTS bulk_rows");
+			statement.execute("CREATE TABLE bulk_rows (id INTEGER NOT NULL, name VARCHAR(255) NOT NULL)");
+			try (TableWriter writer = new BatchTableWriter(connection, "bulk_rows", "id", "name")) {
+				for (int i = 0; i < rows; i++) {
+					writer.writeInt(i);
+					writer.writeText("name\t" + i);
+					writer.endRow();
+				}
+				writer.finish();
+				assertEquals(rows, writer.rows());
+			}
+		}
+		assertEquals(rows, count("SELECT COUNT(DISTINCT id) FROM bulk_rows"));
+		assertEquals(1, count("SELECT COUNT(*) FROM bulk_rows WHERE name = 'name\t42'"));
+	}
+
+	@Test
+	public void testBatchTableWriterClosedUnfinishedDropsBufferedRows() throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE IF EXISTS bulk_rows");
+			statement.execute("CREATE TABLE bulk_rows (id INTEGER NOT NULL, name VARCHAR(255) NOT NULL)");
+			try (TableWriter writer = new BatchTableWriter(connection, "bulk_rows", "id", "name")) {
+				for (int i = 0; i < 42; i++) {
+					writer.writeInt(i);
+					writer.writeText("name" + i);
+					writer.endRow();
+				}
+			}
+		}
+		assertEquals(0, count("SELECT COUNT(*) FROM bulk_rows"));
+	}
+
+	private int count(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+
+	@AfterEach
+	public void cleanup() {
+		dataSource.dispose();
+	}
+}
@@ -0,0 +1,93 @@
+package org.example.runner;
+
+import org.example.exceptions.DbException;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestSchemaMigrator {
+	private JdbcConnectionPool dataSource;
+
+	@BeforeEach
+	public void setup() throws SQLException {
+		dataSource = JdbcConnectionPool.create("jdbc:h2:mem:migratordb;" +
+				"MODE=PostgreSQL;" +
+				"DATABASE_TO_UPPER=false;" +
+				"DB_CLOSE_ON_EXIT=FALSE", "sa", "");
+		execute("DROP ALL OBJECTS");
+	}
+
+	@Test
+	public void testMigrateCreatesSchemaOnce() throws SQLException {
+		int version = SchemaMigrator.migrate(dataSource);
+		execute("INSERT INTO groups (group_name) VALUES ('Kept')");
+
+		assertEquals(version, SchemaMigrator.migrate(dataSource));
+		assertEquals(version, count("SELECT COUNT(*) FROM schema_version"));
+		assertEquals(version, count("SELECT MAX(version) FROM schema_version"));
+		assertEquals(1, count("SELECT COUNT(*) FROM groups WHERE group_name = 'Kept'"));
+	}
+
+	@Test
+	public void testExistingSchemaIsBaselined() throws SQLException {
+		execute("CREATE TABLE groups (group_id SERIAL PRIMARY KEY, group_name VARCHAR(255) NOT NULL)");
+		execute("CREATE TABLE students (student_id SERIAL PRIMARY KEY, group_id INTEGER REFERENCES groups (group_id), " +
+				"first_name VARCHAR(255) NOT NULL, last_name VARCHAR(255) NOT NULL)");
+		execute("CREATE TABLE courses (course_id SERIAL PRIMARY KEY, course_name VARCHAR(255) NOT NULL, course_description VARCHAR(255) NOT NULL)");
+		execute("CREATE TABLE student_course (student_courses_id SERIAL PRIMARY KEY, " +
+				"student_id INTEGER NOT NULL REFERENCES students (student_id) ON DELETE CASCADE, " +
+				"course_id INTEGER NOT NULL REFERENCES courses (course_id) ON DELETE CASCADE)");
+		execute("INSERT INTO groups (group_name) VALUES ('Existing')");
+		execute("INSERT INTO students (group_id, first_name, last_name) VALUES (1, 'A', 'A')");
+		execute("INSERT INTO courses (course_name, course_description) VALUES ('Math', 'Math')");
+		execute("INSERT INTO student_course (student_id, course_id) VALUES (1, 1), (1, 1)");
+
+		SchemaMigrator.migrate(dataSource);
+
+		assertEquals(0, count("SELECT execution_ms FROM schema_version WHERE version = 1"));
+		assertEquals(1, count("SELECT COUNT(*) FROM groups"));
+		assertEquals(1, count("SELECT COUNT(*) FROM student_course"));
+		assertThrows(SQLException.class, () -> execute("INSERT INTO student_course (student_id, course_id) VALUES (1, 1)"));
+	}
+
+	@Test
+	public void testChangedMigrationIsRejected() throws SQLException {
+		SchemaMigrator.migrate(dataSource);
+		execute("UPDATE schema_version SET checksum = 0 WHERE version = 1");
+
+		assertThrows(DbException.class, () -> SchemaMigrator.migrate(dataSource));
+	}
+
+	@Test
+	public void testSeedingKeepsSchemaVersion() throws SQLException {
+		int version = SchemaMigrator.migrate(dataSource);
+		DbLoader.load(dataSource);
+		DbLoader.load(dataSource);
+
+		assertEquals(version, count("SELECT COUNT(*) FROM schema_version"));
+		assertEquals(300, count("SELECT COUNT(*) FROM students"));
+	}
+
+	private void execute(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement()) {
+			statement.execute(sql);
+		}
+	}
+
+	private int count(String sql) throws SQLException {
+		try (Connection connection = dataSource.getConnection();
+			 Statement statement = connection.createStatement();
+			 ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.example.service;
+
+import org.example.model.Course;
+import org.example.model.Student;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestDataGenerator {
+	private static final GeneratorConfig CONFIG = new GeneratorConfig(20, 50, 1_000, 5, 42L, WorkloadProfile.UNIFORM);
+
+	@Test
+	public void testSameSeedProducesSameData() {
+		DataGenerator first = new DataGenerator(CONFIG);
+		DataGenerator second = new DataGenerator(CONFIG);
+
+		assertEquals(first.getGroups(), second.getGroups());
+		assertEquals(first.getCourses(), second.getCourses());
+		assertEquals(first.students().toList(), second.students().toList());
+	}
+
+	@Test
+	public void testStudentRangesMatchFullStream() {
+		DataGenerator generator = new DataGenerator(CONFIG);
+		List<Student> students = generator.students().toList();
+
+		assertEquals(CONFIG.students(), students.size());
+		assertEquals(students.subList(99, 350), generator.students(100, 351).toList());
+		assertEquals(students.get(499), generator.student(500));
+	}
+
+	@Test
+	public void testEachStudentGetsOwnDistinctCourses() {
+		DataGenerator generator = new DataGenerator(CONFIG);
+		Set<List<Course>> courseLists = new HashSet<>();
+
+		for (Student student : generator.students().toList()) {
+			List<Course> courses = student.courseList();
+			assertTrue(courses.size() >= 1 && courses.size() <= CONFIG.maxCoursesPerStudent());
+			assertEquals(courses.size(), new HashSet<>(courses).size());
+			courseLists.add(courses);
+		}
+		assertTrue(courseLists.size() > 1);
+	}
+
+	@Test
+	public void testZipfianCoursesAreSkewed() {
+		int[] enrollments = enrollmentsPerCourse(WorkloadProfile.ZIPFIAN_COURSES);
+		assertTrue(enrollments[0] > 10 * enrollments[enrollments.length - 1]);
+	}
+
+	@Test
+	public void testMegaCourseHoldsMostStudents() {
+		int[] enrollments = enrollmentsPerCourse(WorkloadProfile.MEGA_COURSE);
+		assertTrue(enrollments[0] > CONFIG.students() * 0.8);
+	}
+
+	@Test
+	public void testLongTailGroupsVaryInSize() {
+		GeneratorConfig config = withProfile(WorkloadProfile.LONG_TAIL_GROUPS);
+		int[] groupSizes = new int[config.groups()];
+		new DataGenerator(config).students().forEach(student -> groupSizes[student.group().id() - 1]++);
+		assertTrue(groupSizes[0] > 10 * groupSizes[groupSizes.length - 1]);
+	}
+
+	@Test
+	public void testParseProfile() {
+		assertEquals(WorkloadProfile.MEGA_COURSE, WorkloadProfile.parse("mega-course"));
+		assertEquals(WorkloadProfile.ZIPFIAN_COURSES, WorkloadProfile.parse("Zipfian_Courses"));
+		assertThrows(IllegalArgumentException.class, () -> WorkloadProfile.parse("unknown"));
+	}
+
+	private static int[] enrollmentsPerCourse(WorkloadProfile profile) {
+		GeneratorConfig config = withProfile(profile);
+		int[] enrollments = new int[config.courses()];
+		new DataGenerator(config).students()
+				.flatMap(student -> student.courseList().stream())
+				.forEach(course -> enrollments[course.id() - 1]++);
+		return enrollments;
+	}
+
+	private static GeneratorConfig withProfile(WorkloadProfile profile) {
+		return new GeneratorConfig(CONFIG.groups(), CONFIG.courses(), 5_000, CONFIG.maxCoursesPerStudent(),
+				CONFIG.randomSeed(), profile);
+	}
+}
@@ -0,0 +1,73 @@
+package org.example.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TestReportSink {
+	private static final String NL = System.lineSeparator();
+
+	@Test
+	public void testNothingIsWrittenUntilFlush() {
+		ReportSink.Memory sink = ReportSink.memory();
+
+		sink.print("Groups of ").print(5).println(" or fewer students:").print('x');
+		assertEquals("", sink.contents());
+
+		sink.flush();
+		assertEquals("Groups of 5 or fewer students:" + NL + "x", sink.contents());
+	}
+
+	@Test
+	public void testTextLargerThanTheBufferKeepsSurrogatePairsWhole() {
+		ReportSink.Memory sink = ReportSink.memory();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < ReportSink.DEFAULT_BUFFER_SIZE; i++) {
+			expected.append(i % 3 == 0 ? "😀" : "é");
+		}
+
+		sink.print(expected);
+		sink.flush();
+
+		assertEquals(expected.toString(), sink.contents());
+	}
+
+	@Test
+	public void testFileSinkReplacesTheFile(@TempDir Path directory) throws IOException {
+		Path file = directory.resolve("report.txt");
+		Files.writeString(file, "previous report that is longer");
+
+		try (ReportSink sink = ReportSink.file(file)) {
+			sink.println("Students related to the course 'Math':");
+			sink.flush();
+			sink.println("Ann Lee (ID: 1)");
+		}
+
+		assertEquals("Students related to the course 'Math':" + NL + "Ann Lee (ID: 1)" + NL, Files.readString(file));
+	}
+
+	@Test
+	public void testConsoleSinkWritesToTheCurrentSystemOut() {
+		PrintStream console = System.out;
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ReportSink sink = ReportSink.console();
+		try {
+			System.setOut(new PrintStream(output, false, StandardCharsets.UTF_8));
+			sink.println("Deleted student with ID: 7");
+			sink.flush();
+			System.out.flush();
+		} finally {
+			System.setOut(console);
+		}
+
+		assertEquals("Deleted student with ID: 7" + NL, output.toString(StandardCharsets.UTF_8));
+	}
+}